@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.util.GFileUtils;
+
+import java.io.File;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores entries in the remote build cache in the background, so that slow uploads do not hold up task execution.
+ *
+ * <p>The total size of the entries waiting to be uploaded or being uploaded is bounded. When another entry would exceed the bound,
+ * the caller blocks until enough uploads have completed. {@link #stop()} waits for all pending uploads to complete.</p>
+ */
+class AsyncRemoteBuildCacheStore implements Stoppable {
+
+    private static final Logger LOGGER = Logging.getLogger(AsyncRemoteBuildCacheStore.class);
+
+    static final int MAX_CONCURRENT_UPLOADS = 2;
+
+    private final BuildCacheServiceHandle remote;
+    private final ManagedExecutor executor;
+    private final long maxInFlightBytes;
+    private final Lock lock = new ReentrantLock();
+    private final Condition uploadCompleted = lock.newCondition();
+    private long inFlightBytes;
+
+    AsyncRemoteBuildCacheStore(BuildCacheServiceHandle remote, ExecutorFactory executorFactory, long maxInFlightBytes) {
+        this.remote = remote;
+        this.executor = executorFactory.create("Build cache remote store", MAX_CONCURRENT_UPLOADS);
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    /**
+     * Uploads the given file, and deletes it afterwards.
+     */
+    void storeFile(final BuildCacheKey key, final File file) {
+        final long size = file.length();
+        submit(size, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    remote.store(key, new StoreTarget(file));
+                } finally {
+                    GFileUtils.deleteQuietly(file);
+                }
+            }
+        });
+    }
+
+    private void submit(final long size, final Runnable upload) {
+        reserve(size);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        upload.run();
+                    } catch (Exception e) {
+                        LOGGER.warn("Could not store entry in remote build cache: " + e.getMessage());
+                    } finally {
+                        release(size);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            release(size);
+            throw e;
+        }
+    }
+
+    private void reserve(long size) {
+        lock.lock();
+        try {
+            // Always accept an entry when nothing else is in flight, so that entries larger than the limit can be stored, too
+            while (inFlightBytes > 0 && inFlightBytes + size > maxInFlightBytes) {
+                uploadCompleted.awaitUninterruptibly();
+            }
+            inFlightBytes += size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long size) {
+        lock.lock();
+        try {
+            inFlightBytes -= size;
+            uploadCompleted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stop() {
+        LOGGER.debug("Waiting for pending uploads to remote build cache");
+        executor.stop();
+    }
+}
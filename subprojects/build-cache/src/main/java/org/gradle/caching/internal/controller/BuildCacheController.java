@@ -16,6 +16,7 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
@@ -35,8 +36,19 @@ public interface BuildCacheController extends Closeable {
     @Nullable
     <T> T load(BuildCacheLoadCommand<T> command);
 
+    /**
+     * Starts loading the given entry from the remote build cache in the background, so that a later {@link #load(BuildCacheLoadCommand)} of the entry does not need to wait for it.
+     * Does nothing when prefetching is not enabled.
+     */
+    void prefetch(BuildCacheKey key);
+
     void store(BuildCacheStoreCommand command);
 
+    /**
+     * Returns true when stored entries only go to the local directory build cache, so that they can use a format that is only suitable for local use.
+     */
+    boolean isStoringToLocalCacheOnly();
+
     @Override
     void close();
 
@@ -29,6 +29,7 @@ import org.gradle.caching.internal.FinalizeBuildCacheConfigurationBuildOperation
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -48,6 +49,11 @@ public final class BuildCacheControllerFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
+    private static final String ASYNC_REMOTE_STORE_PROPERTY = "org.gradle.internal.build-cache.async-remote-store";
+    private static final String ASYNC_REMOTE_STORE_MAX_BYTES_PROPERTY = "org.gradle.internal.build-cache.async-remote-store.max-in-flight-bytes";
+    private static final long DEFAULT_ASYNC_REMOTE_STORE_MAX_BYTES = 256L * 1024 * 1024;
+    public static final String PREFETCH_PROPERTY = "org.gradle.internal.build-cache.prefetch";
+
     public enum BuildCacheMode {
         ENABLED, DISABLED
     }
@@ -65,7 +71,8 @@ public final class BuildCacheControllerFactory {
         final RemoteAccessMode remoteAccessMode,
         final boolean logStackTraces,
         final boolean emitDebugLogging,
-        final Instantiator instantiator
+        final Instantiator instantiator,
+        final ExecutorFactory executorFactory
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -111,12 +118,16 @@ public final class BuildCacheControllerFactory {
                         remote, remoteDescribedService == null ? null : remoteDescribedService.service
                     );
 
+                    boolean asyncRemoteStore = Boolean.getBoolean(ASYNC_REMOTE_STORE_PROPERTY);
                     return new DefaultBuildCacheController(
                         config,
                         buildOperationExecutor,
                         gradleUserHomeDir,
                         logStackTraces,
-                        emitDebugLogging
+                        emitDebugLogging,
+                        executorFactory,
+                        asyncRemoteStore ? Long.getLong(ASYNC_REMOTE_STORE_MAX_BYTES_PROPERTY, DEFAULT_ASYNC_REMOTE_STORE_MAX_BYTES) : 0,
+                        Boolean.getBoolean(PREFETCH_PROPERTY)
                     );
                 }
             }
@@ -17,10 +17,13 @@
 package org.gradle.caching.internal.controller;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.internal.controller.operations.PackOperationDetails;
@@ -43,6 +46,7 @@ import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -58,6 +62,8 @@ import java.io.InputStream;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final Logger LOGGER = Logging.getLogger(DefaultBuildCacheController.class);
+
     @VisibleForTesting
     final BuildCacheServiceHandle legacyLocal;
 
@@ -70,6 +76,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
+    private final AsyncRemoteBuildCacheStore asyncRemote;
+    private final RemoteBuildCachePrefetcher prefetcher;
 
     private boolean closed;
 
@@ -79,6 +87,24 @@ public class DefaultBuildCacheController implements BuildCacheController {
         File gradleUserHomeDir,
         boolean logStackTraces,
         boolean emitDebugLogging
+    ) {
+        this(config, buildOperationExecutor, gradleUserHomeDir, logStackTraces, emitDebugLogging, null, 0, false);
+    }
+
+    /**
+     * @param executorFactory Used for storing entries in the remote build cache in the background, when {@code maxAsyncRemoteStoreBytes} is positive,
+     * and for prefetching entries from the remote build cache, when {@code prefetchRemote} is true.
+     * @param maxAsyncRemoteStoreBytes The maximum total size of entries being stored in the background, or 0 to store entries synchronously.
+     */
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        File gradleUserHomeDir,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        @Nullable ExecutorFactory executorFactory,
+        long maxAsyncRemoteStoreBytes,
+        boolean prefetchRemote
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.emitDebugLogging = emitDebugLogging;
@@ -95,6 +121,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
 
         this.remote = toHandle(config.remote, config.remotePush, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        this.asyncRemote = executorFactory != null && maxAsyncRemoteStoreBytes > 0 && remote.canStore()
+            ? new AsyncRemoteBuildCacheStore(remote, executorFactory, maxAsyncRemoteStoreBytes)
+            : null;
+        // Prefetched entries are staged in the local build cache
+        this.prefetcher = executorFactory != null && prefetchRemote && remote.canLoad() && local.canStore()
+            ? new RemoteBuildCachePrefetcher(remote, local, tmp, executorFactory)
+            : null;
     }
 
     @Override
@@ -111,6 +144,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
     @Override
     public <T> T load(final BuildCacheLoadCommand<T> command) {
         final Unpack<T> unpack = new Unpack<T>(command);
+        final boolean knownRemoteMiss = prefetcher != null && Boolean.FALSE.equals(prefetcher.await(command.getKey()));
 
         if (local.canLoad()) {
             try {
@@ -124,7 +158,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
             }
         }
 
-        if (legacyLocal.canLoad() || remote.canLoad()) {
+        if (legacyLocal.canLoad() || (remote.canLoad() && !knownRemoteMiss)) {
             tmp.withTempFile(command.getKey(), new Action<File>() {
                 @Override
                 public void execute(File file) {
@@ -135,7 +169,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
                         legacyLocal.load(command.getKey(), loadTarget);
                     }
 
-                    if (remote.canLoad() && !loadTarget.isLoaded()) {
+                    if (remote.canLoad() && !knownRemoteMiss && !loadTarget.isLoaded()) {
                         loadedRole = BuildCacheServiceRole.REMOTE;
                         remote.load(command.getKey(), loadTarget);
                     }
@@ -208,6 +242,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
 
     }
 
+    @Override
+    public void prefetch(BuildCacheKey key) {
+        if (prefetcher != null) {
+            prefetcher.prefetch(key);
+        }
+    }
+
     @Override
     public void store(final BuildCacheStoreCommand command) {
         boolean anyStore = local.canStore() || legacyLocal.canStore() || remote.canStore();
@@ -227,17 +268,50 @@ public class DefaultBuildCacheController implements BuildCacheController {
                     legacyLocal.store(key, new StoreTarget(file));
                 }
 
-                if (remote.canStore()) {
+                if (remote.canStore() && asyncRemote == null) {
                     remote.store(key, new StoreTarget(file));
                 }
 
                 if (local.canStore()) {
+                    // The local entry may be evicted before it is uploaded, so upload a copy of it instead
+                    if (remote.canStore() && asyncRemote != null) {
+                        storeAsync(key, file, true);
+                    }
                     local.store(key, file);
+                } else if (remote.canStore() && asyncRemote != null) {
+                    storeAsync(key, file, false);
                 }
             }
         });
     }
 
+    @Override
+    public boolean isStoringToLocalCacheOnly() {
+        return local.canStore() && !legacyLocal.canStore() && !remote.canStore();
+    }
+
+    /**
+     * Hands the packed entry over to the background store, copying or moving it out of the way of the temp file store.
+     * Uploads the entry straight away when this is not possible.
+     */
+    private void storeAsync(BuildCacheKey key, File file, boolean copy) {
+        File uploadFile = new File(file.getParentFile(), file.getName() + ".upload");
+        if (copy) {
+            try {
+                FileUtils.copyFile(file, uploadFile);
+            } catch (IOException e) {
+                LOGGER.debug("Could not copy build cache entry {} for storing in the background, storing it now.", key, e);
+                FileUtils.deleteQuietly(uploadFile);
+                remote.store(key, new StoreTarget(file));
+                return;
+            }
+        } else if (!file.renameTo(uploadFile)) {
+            remote.store(key, new StoreTarget(file));
+            return;
+        }
+        asyncRemote.storeFile(key, uploadFile);
+    }
+
     private class Pack implements Action<File> {
 
         private final BuildCacheStoreCommand command;
@@ -276,7 +350,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     public void close() {
         if (!closed) {
             closed = true;
-            CompositeStoppable.stoppable(legacyLocal, local, remote).stop();
+            // Wait for pending downloads and uploads before closing the services they use
+            CompositeStoppable.stoppable(prefetcher, asyncRemote, legacyLocal, local, remote).stop();
         }
     }
 
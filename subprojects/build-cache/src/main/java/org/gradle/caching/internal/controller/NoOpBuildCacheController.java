@@ -16,6 +16,8 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
+
 public class NoOpBuildCacheController implements BuildCacheController {
 
     public static final BuildCacheController INSTANCE = new NoOpBuildCacheController();
@@ -38,11 +40,21 @@ public class NoOpBuildCacheController implements BuildCacheController {
         return null;
     }
 
+    @Override
+    public void prefetch(BuildCacheKey key) {
+
+    }
+
     @Override
     public void store(BuildCacheStoreCommand command) {
 
     }
 
+    @Override
+    public boolean isStoringToLocalCacheOnly() {
+        return false;
+    }
+
     @Override
     public void close() {
 
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.Action;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.LoadTarget;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads entries from the remote build cache into the local build cache in the background, ahead of the tasks that need them.
+ *
+ * <p>Several entries are requested concurrently, reusing the connections of the remote build cache. The outcome of each prefetch is kept until
+ * the entry is loaded, so that a load can be served from the local build cache, and entries known to be missing are not requested again.</p>
+ */
+class RemoteBuildCachePrefetcher implements Stoppable {
+
+    private static final Logger LOGGER = Logging.getLogger(RemoteBuildCachePrefetcher.class);
+
+    static final int MAX_CONCURRENT_REQUESTS = 8;
+
+    private final BuildCacheServiceHandle remote;
+    private final LocalBuildCacheServiceHandle local;
+    private final BuildCacheTempFileStore tmp;
+    private final ManagedExecutor executor;
+    private final ConcurrentMap<String, Future<Boolean>> prefetches = new ConcurrentHashMap<String, Future<Boolean>>();
+
+    RemoteBuildCachePrefetcher(BuildCacheServiceHandle remote, LocalBuildCacheServiceHandle local, BuildCacheTempFileStore tmp, ExecutorFactory executorFactory) {
+        this.remote = remote;
+        this.local = local;
+        this.tmp = tmp;
+        this.executor = executorFactory.create("Build cache prefetch", MAX_CONCURRENT_REQUESTS);
+    }
+
+    void prefetch(final BuildCacheKey key) {
+        FutureTask<Boolean> prefetch = new FutureTask<Boolean>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return fetch(key);
+            }
+        });
+        if (prefetches.putIfAbsent(key.getHashCode(), prefetch) == null) {
+            executor.execute(prefetch);
+        }
+    }
+
+    private boolean fetch(final BuildCacheKey key) {
+        final AtomicBoolean available = new AtomicBoolean();
+        local.load(key, new Action<File>() {
+            @Override
+            public void execute(File file) {
+                available.set(true);
+            }
+        });
+        if (available.get() || !remote.canLoad()) {
+            return available.get();
+        }
+        tmp.withTempFile(key, new Action<File>() {
+            @Override
+            public void execute(File file) {
+                LoadTarget loadTarget = new LoadTarget(file);
+                remote.load(key, loadTarget);
+                if (loadTarget.isLoaded()) {
+                    local.store(key, file);
+                    available.set(true);
+                }
+            }
+        });
+        LOGGER.debug("Prefetched entry {} from remote build cache: {}", key.getHashCode(), available.get() ? "hit" : "miss");
+        return available.get();
+    }
+
+    /**
+     * Waits for the prefetch of the given entry to complete.
+     *
+     * @return true when the entry is available in the local build cache, false when the remote build cache does not have the entry, or null when the entry has not been prefetched.
+     */
+    @Nullable
+    Boolean await(BuildCacheKey key) {
+        Future<Boolean> prefetch = prefetches.remove(key.getHashCode());
+        if (prefetch == null) {
+            return null;
+        }
+        try {
+            return prefetch.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            LOGGER.debug("Could not prefetch entry {} from remote build cache", key.getHashCode(), e.getCause());
+            return null;
+        }
+    }
+
+    @Override
+    public void stop() {
+        // Entries not loaded by now are not needed by this build
+        for (Future<Boolean> prefetch : prefetches.values()) {
+            prefetch.cancel(false);
+        }
+        executor.stop();
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
+
 import javax.annotation.Nullable;
 
 public class RootBuildCacheControllerRef {
@@ -64,11 +66,21 @@ public class RootBuildCacheControllerRef {
             return delegate.load(command);
         }
 
+        @Override
+        public void prefetch(BuildCacheKey key) {
+            delegate.prefetch(key);
+        }
+
         @Override
         public void store(BuildCacheStoreCommand command) {
             delegate.store(command);
         }
 
+        @Override
+        public boolean isStoringToLocalCacheOnly() {
+            return delegate.isStoringToLocalCacheOnly();
+        }
+
         @Override
         public void close() {
         }
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the size and the last access time of the entries of a directory build cache, so that the least recently used entries can be
+ * evicted without listing and inspecting all the entries in the cache directory.
+ *
+ * <p>The index is persisted as a journal in the cache directory, which all processes using the cache append to. Each process reads the records
+ * appended by other processes before using the index, and the journal is rewritten when it contains too many outdated records. The directory
+ * is only scanned once, when the journal does not exist yet.</p>
+ *
+ * <p>Accesses are appended to the journal in batches, so other processes may see them late. This only affects the order in which entries are evicted.</p>
+ *
+ * <p>Once the cache is larger than its maximum size, entries are evicted until it is somewhat smaller than the maximum size, so that storing the
+ * next entries does not evict entries again straight away.</p>
+ *
+ * <p>The methods of this class must be called while holding the file lock of the cache.</p>
+ */
+public class BuildCacheAccessIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheAccessIndex.class);
+
+    public static final String FILE_NAME = "access-index.bin";
+
+    private static final int MAGIC = 0x47424149;
+    private static final int HEADER_SIZE = 12;
+    private static final byte ACCESSED = 1;
+    private static final byte REMOVED = 2;
+    private static final int MIN_RECORDS_BEFORE_REWRITE = 1000;
+    private static final int MAX_PENDING_ACCESSES = 100;
+    private static final int EVICTION_HEADROOM_PERCENT = 10;
+
+    private final File baseDir;
+    private final File journalFile;
+    private final long maxSizeBytes;
+    // Ordered from the least recently to the most recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    // Accesses not yet appended to the journal
+    private final LinkedHashMap<String, Entry> pendingAccesses = new LinkedHashMap<String, Entry>();
+    private long totalSize;
+    private long generation = -1;
+    private long position;
+    private int recordCount;
+
+    public BuildCacheAccessIndex(File baseDir, long maxSizeBytes) {
+        this.baseDir = baseDir;
+        this.journalFile = new File(baseDir, FILE_NAME);
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    public synchronized long getTotalSize() {
+        sync();
+        return totalSize;
+    }
+
+    /**
+     * Returns the keys of the indexed entries, from the least recently to the most recently used one.
+     */
+    synchronized Collection<String> getKeys() {
+        sync();
+        return Lists.newArrayList(entries.keySet());
+    }
+
+    /**
+     * Records that the given entry has been stored or loaded.
+     */
+    public synchronized void recordAccess(String key, File entry) {
+        sync();
+        long size = entry.length();
+        long timestamp = System.currentTimeMillis();
+        applyAccess(key, size, timestamp);
+        pendingAccesses.remove(key);
+        pendingAccesses.put(key, new Entry(size, timestamp));
+        if (pendingAccesses.size() >= MAX_PENDING_ACCESSES) {
+            appendPendingAccesses();
+            rewriteIfNecessary();
+        }
+    }
+
+    /**
+     * Appends the recorded accesses that have not been appended to the journal yet.
+     */
+    public synchronized void flush() {
+        if (pendingAccesses.isEmpty()) {
+            return;
+        }
+        sync();
+        appendPendingAccesses();
+        rewriteIfNecessary();
+    }
+
+    /**
+     * Records that the given entry has been removed from the cache.
+     */
+    public synchronized void recordRemoval(String key) {
+        sync();
+        pendingAccesses.remove(key);
+        if (applyRemoval(key)) {
+            append(removalRecord(key));
+        }
+    }
+
+    public synchronized boolean exceedsMaxSize() {
+        sync();
+        return totalSize > maxSizeBytes;
+    }
+
+    /**
+     * Deletes the entries that have not been used since the given time. When the cache is larger than the maximum size, also deletes the least recently used entries
+     * until the cache is somewhat smaller than the maximum size.
+     */
+    public synchronized void evict(long minimumTimestamp) {
+        sync();
+        appendPendingAccesses();
+        List<String> keysForDeletion = Lists.newArrayList();
+        long remainingSize = totalSize;
+        long targetSize = totalSize > maxSizeBytes ? maxSizeBytes - maxSizeBytes / 100 * EVICTION_HEADROOM_PERCENT : Long.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (remainingSize <= targetSize && entry.getValue().timestamp >= minimumTimestamp) {
+                break;
+            }
+            keysForDeletion.add(entry.getKey());
+            remainingSize -= entry.getValue().size;
+        }
+        if (keysForDeletion.isEmpty()) {
+            return;
+        }
+
+        long removedSize = 0;
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (String key : keysForDeletion) {
+            File file = new File(baseDir, key);
+            long size = entries.get(key).size;
+            if (!file.exists() || GFileUtils.deleteQuietly(file)) {
+                removedSize += size;
+                applyRemoval(key);
+                writeTo(records, removalRecord(key));
+            }
+        }
+        append(records.toByteArray());
+        LOGGER.info("Build cache in {} removing {} least recently used cache entries ({} reclaimed).", baseDir, keysForDeletion.size(), FileUtils.byteCountToDisplaySize(removedSize));
+        rewriteIfNecessary();
+    }
+
+    /**
+     * Must be called right after {@link #sync()}, so that the records are appended at the end of the journal.
+     */
+    private void appendPendingAccesses() {
+        if (pendingAccesses.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream(pendingAccesses.size() * 64);
+        for (Map.Entry<String, Entry> entry : pendingAccesses.entrySet()) {
+            writeTo(records, accessRecord(entry.getKey(), entry.getValue().size, entry.getValue().timestamp));
+        }
+        pendingAccesses.clear();
+        append(records.toByteArray());
+    }
+
+    private void rewriteIfNecessary() {
+        if (recordCount > MIN_RECORDS_BEFORE_REWRITE && recordCount > 2 * entries.size()) {
+            rewrite();
+        }
+    }
+
+    private void applyAccess(String key, long size, long timestamp) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalSize -= previous.size;
+        }
+        entries.put(key, new Entry(size, timestamp));
+        totalSize += size;
+        recordCount++;
+    }
+
+    private boolean applyRemoval(String key) {
+        Entry previous = entries.remove(key);
+        recordCount++;
+        if (previous == null) {
+            return false;
+        }
+        totalSize -= previous.size;
+        return true;
+    }
+
+    /**
+     * Reads the records appended by other processes since the journal has last been read.
+     */
+    private void sync() {
+        if (!journalFile.isFile()) {
+            initializeFromDirectory();
+            return;
+        }
+        try {
+            RandomAccessFile journal = new RandomAccessFile(journalFile, "rw");
+            try {
+                if (journal.length() < HEADER_SIZE || journal.readInt() != MAGIC) {
+                    throw new IOException("Unexpected header");
+                }
+                long currentGeneration = journal.readLong();
+                if (currentGeneration != generation) {
+                    // Rewritten by another process
+                    entries.clear();
+                    totalSize = 0;
+                    recordCount = 0;
+                    generation = currentGeneration;
+                    position = HEADER_SIZE;
+                    journal.seek(position);
+                    readRecords(journal);
+                    reapplyPendingAccesses();
+                } else {
+                    journal.seek(position);
+                    readRecords(journal);
+                }
+            } finally {
+                journal.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read build cache access index {}, recreating it.", journalFile, e);
+            initializeFromDirectory();
+        }
+    }
+
+    private void readRecords(RandomAccessFile journal) throws IOException {
+        long length = journal.length();
+        while (position < length) {
+            try {
+                byte type = journal.readByte();
+                String key = journal.readUTF();
+                if (type == ACCESSED) {
+                    long size = journal.readLong();
+                    long timestamp = journal.readLong();
+                    applyAccess(key, size, timestamp);
+                } else if (type == REMOVED) {
+                    applyRemoval(key);
+                } else {
+                    throw new IOException("Unexpected record type " + type);
+                }
+                position = journal.getFilePointer();
+            } catch (EOFException e) {
+                // A process stopped while appending a record
+                journal.setLength(position);
+                return;
+            }
+        }
+    }
+
+    private void reapplyPendingAccesses() {
+        for (Map.Entry<String, Entry> entry : pendingAccesses.entrySet()) {
+            applyAccess(entry.getKey(), entry.getValue().size, entry.getValue().timestamp);
+        }
+    }
+
+    private void initializeFromDirectory() {
+        entries.clear();
+        totalSize = 0;
+        File[] files = baseDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                // Entries are named after their key, everything else in the cache directory has an extension
+                return file.isFile() && file.getName().indexOf('.') < 0;
+            }
+        });
+        if (files != null) {
+            final long[] timestamps = new long[files.length];
+            Integer[] order = new Integer[files.length];
+            for (int i = 0; i < files.length; i++) {
+                timestamps[i] = files[i].lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer left, Integer right) {
+                    return Long.compare(timestamps[left], timestamps[right]);
+                }
+            });
+            for (Integer index : order) {
+                File file = files[index];
+                applyAccess(file.getName(), file.length(), timestamps[index]);
+            }
+        }
+        reapplyPendingAccesses();
+        rewrite();
+    }
+
+    /**
+     * Replaces the journal with one that only contains the current entries.
+     */
+    private void rewrite() {
+        long newGeneration = Math.max(generation + 1, System.currentTimeMillis());
+        File tempFile = new File(baseDir, FILE_NAME + ".tmp");
+        ByteArrayOutputStream journal = new ByteArrayOutputStream(HEADER_SIZE + entries.size() * 64);
+        try {
+            DataOutputStream output = new DataOutputStream(journal);
+            output.writeInt(MAGIC);
+            output.writeLong(newGeneration);
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                output.write(accessRecord(entry.getKey(), entry.getValue().size, entry.getValue().timestamp));
+            }
+            output.flush();
+            FileOutputStream fileOutput = new FileOutputStream(tempFile);
+            try {
+                journal.writeTo(fileOutput);
+            } finally {
+                fileOutput.close();
+            }
+            GFileUtils.deleteQuietly(journalFile);
+            if (!tempFile.renameTo(journalFile)) {
+                throw new IOException("Could not rename " + tempFile + " to " + journalFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        generation = newGeneration;
+        position = journal.size();
+        recordCount = entries.size();
+        // The journal now contains all the entries, including those accessed recently
+        pendingAccesses.clear();
+    }
+
+    private void append(byte[] records) {
+        if (records.length == 0) {
+            return;
+        }
+        try {
+            FileOutputStream output = new FileOutputStream(journalFile, true);
+            try {
+                output.write(records);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position += records.length;
+    }
+
+    private static byte[] accessRecord(String key, long size, long timestamp) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        try {
+            DataOutputStream output = new DataOutputStream(record);
+            output.writeByte(ACCESSED);
+            output.writeUTF(key);
+            output.writeLong(size);
+            output.writeLong(timestamp);
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return record.toByteArray();
+    }
+
+    private static byte[] removalRecord(String key) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(48);
+        try {
+            DataOutputStream output = new DataOutputStream(record);
+            output.writeByte(REMOVED);
+            output.writeUTF(key);
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return record.toByteArray();
+    }
+
+    private static void writeTo(ByteArrayOutputStream output, byte[] record) {
+        output.write(record, 0, record.length);
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long timestamp;
+
+        private Entry(long size, long timestamp) {
+            this.size = size;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -46,13 +47,22 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
     private final String failedFileSuffix;
+    private final BuildCacheAccessIndex accessIndex;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, failedFileSuffix, null);
+    }
+
+    /**
+     * @param accessIndex the index to keep up to date and to evict entries from when the cache grows larger than its maximum size, or null when the size of the cache is not bounded.
+     */
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix, @Nullable BuildCacheAccessIndex accessIndex) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.failedFileSuffix = failedFileSuffix;
+        this.accessIndex = accessIndex;
     }
 
     private static class LoadAction implements Action<File> {
@@ -114,10 +124,17 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
 
         File file = resource.getFile();
         touch(file);
+        if (accessIndex != null) {
+            accessIndex.recordAccess(key.getHashCode(), file);
+        }
 
         try {
             reader.execute(file);
         } catch (Exception e) {
+            if (accessIndex != null) {
+                accessIndex.recordRemoval(key.getHashCode());
+            }
+
             // Try to move the file out of the way in case its permanently corrupt
             // Don't delete, so that it can be potentially used for debugging
             File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
@@ -168,7 +185,14 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     }
 
     private void storeInsideLock(BuildCacheKey key, File file) {
-        fileStore.move(key.getHashCode(), file);
+        LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
+        if (accessIndex != null) {
+            accessIndex.recordAccess(key.getHashCode(), resource.getFile());
+            // Evict right away instead of waiting for the periodic cleanup, so that the cache does not grow much beyond its maximum size
+            if (accessIndex.exceedsMaxSize()) {
+                accessIndex.evict(0);
+            }
+        }
     }
 
     @Override
@@ -183,6 +207,14 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
 
     @Override
     public void close() {
+        if (accessIndex != null) {
+            persistentCache.withFileLock(new Runnable() {
+                @Override
+                public void run() {
+                    accessIndex.flush();
+                }
+            });
+        }
         persistentCache.close();
     }
 
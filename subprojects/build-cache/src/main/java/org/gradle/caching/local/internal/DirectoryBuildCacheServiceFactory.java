@@ -16,9 +16,11 @@
 
 package org.gradle.caching.local.internal;
 
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.CleanupAction;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CleanupActionFactory;
@@ -38,6 +40,10 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
+    /**
+     * Maximum size of the cache in bytes. When set, the least recently used entries are evicted based on an access index instead of scanning the cache directory for old entries.
+     */
+    public static final String MAX_SIZE_PROPERTY = "org.gradle.internal.build-cache.local.max-size-bytes";
 
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
@@ -70,21 +76,32 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         checkDirectory(target);
 
         int removeUnusedEntriesAfterDays = configuration.getRemoveUnusedEntriesAfterDays();
+        Long maxSizeBytes = Long.getLong(MAX_SIZE_PROPERTY);
         describer.type(DIRECTORY_BUILD_CACHE_TYPE).
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
+        BuildCacheAccessIndex accessIndex = null;
+        CleanupAction cleanupAction;
+        if (maxSizeBytes != null && maxSizeBytes > 0) {
+            describer.config("maxSize", FileUtils.byteCountToDisplaySize(maxSizeBytes));
+            accessIndex = new BuildCacheAccessIndex(target, maxSizeBytes);
+            cleanupAction = new LeastRecentlyUsedCacheCleanup(accessIndex, removeUnusedEntriesAfterDays);
+        } else {
+            cleanupAction = new FixedAgeOldestCacheCleanup(removeUnusedEntriesAfterDays);
+        }
+
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionFactory.create(new FixedAgeOldestCacheCleanup(removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionFactory.create(cleanupAction))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX, accessIndex);
     }
 
     private static void checkDirectory(File directory) {
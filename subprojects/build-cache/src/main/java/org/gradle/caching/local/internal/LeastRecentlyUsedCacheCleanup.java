@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.PersistentCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the least recently used cache entries when the cache is larger than its maximum size, as well as any cache entries older than a given age,
+ * based on a {@link BuildCacheAccessIndex}.
+ */
+public class LeastRecentlyUsedCacheCleanup implements CleanupAction {
+    private final BuildCacheAccessIndex accessIndex;
+    private final long ageInDays;
+
+    public LeastRecentlyUsedCacheCleanup(BuildCacheAccessIndex accessIndex, long ageInDays) {
+        this.accessIndex = accessIndex;
+        this.ageInDays = ageInDays;
+    }
+
+    @Override
+    public void clean(PersistentCache persistentCache) {
+        long minimumTimestamp = Math.max(0, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ageInDays));
+        accessIndex.evict(minimumTimestamp);
+    }
+}
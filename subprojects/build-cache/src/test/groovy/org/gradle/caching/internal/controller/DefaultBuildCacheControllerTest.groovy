@@ -23,6 +23,7 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
@@ -96,6 +97,23 @@ class DefaultBuildCacheControllerTest extends Specification {
         )
     }
 
+    def "stores to local cache only when remote cache does not accept stores"() {
+        expect:
+        !controller.storingToLocalCacheOnly
+
+        when:
+        remotePush = false
+
+        then:
+        controller.storingToLocalCacheOnly
+
+        when:
+        localPush = false
+
+        then:
+        !controller.storingToLocalCacheOnly
+    }
+
     def "does suppress exceptions from load"() {
         given:
         1 * remote.load(key, _) >> { throw new RuntimeException() }
@@ -237,6 +255,88 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * remote.store(key, _)
     }
 
+    def "stores to remote in the background and waits for the upload on close"() {
+        given:
+        localPush = false
+        def controller = asyncController()
+
+        when:
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _)
+        0 * local.storeLocally(key, _)
+        !tmpDir.file("file.upload").exists()
+    }
+
+    def "stores a copy of the entry to remote in the background when storing to the local cache"() {
+        given:
+        def controller = asyncController()
+
+        when:
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        // The local entry is evicted straight away
+        1 * local.storeLocally(key, _) >> { BuildCacheKey k, File file -> file.delete() }
+        0 * local.loadLocally(key, _)
+        1 * remote.store(key, _)
+        !tmpDir.file("file.upload").exists()
+    }
+
+    private BuildCacheController asyncController() {
+        new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false, false,
+            new DefaultExecutorFactory(), 1024, false
+        )
+    }
+
+    def "does not request entry from remote again when prefetching found no entry"() {
+        given:
+        def controller = prefetchingController()
+
+        when:
+        controller.prefetch(key)
+        controller.load(loadCommand)
+        controller.close()
+
+        then:
+        1 * remote.load(key, _) >> false
+        0 * local.storeLocally(key, _)
+    }
+
+    def "stores prefetched entries in local cache"() {
+        given:
+        def controller = prefetchingController()
+
+        when:
+        controller.prefetch(key)
+        controller.load(loadCommand)
+        controller.close()
+
+        then:
+        (1.._) * remote.load(key, _) >> { BuildCacheKey k, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("entry".bytes))
+            true
+        }
+        (1.._) * local.storeLocally(key, _)
+    }
+
+    private BuildCacheController prefetchingController() {
+        new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false, false,
+            new DefaultExecutorFactory(), 0, true
+        )
+    }
+
     def "close only closes once"() {
         when:
         def controller = getController()
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.Executors
+import java.util.zip.Deflater
+import java.util.zip.GZIPInputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    def executor = Executors.newFixedThreadPool(3)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    @Unroll
+    def "output of #size bytes can be read as gzip"() {
+        def random = new Random(size)
+        def data = new byte[size]
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (random.nextInt(16) + i % 7)
+        }
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def gzipOutput = new ParallelGZipOutputStream(output, executor, Deflater.DEFAULT_COMPRESSION, 1024, 2)
+        int offset = 0
+        while (offset < size) {
+            int length = Math.min(size - offset, random.nextInt(3000) + 1)
+            gzipOutput.write(data, offset, length)
+            offset += length
+        }
+        gzipOutput.close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == data
+
+        where:
+        size << [0, 1, 1023, 1024, 1025, 100000]
+    }
+
+    def "can write single bytes"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def gzipOutput = new ParallelGZipOutputStream(output, executor, Deflater.BEST_SPEED, 16, 2)
+        "Hello, parallel compression!".bytes.each { gzipOutput.write(it) }
+        gzipOutput.close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).text == "Hello, parallel compression!"
+    }
+}
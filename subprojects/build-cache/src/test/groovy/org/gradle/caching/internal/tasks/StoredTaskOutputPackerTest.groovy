@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.DirContentSnapshot
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.Factory
+import org.gradle.internal.hash.DefaultStreamHasher
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.nativeplatform.filesystem.FileSystem
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.gradle.api.internal.tasks.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.OutputType.FILE
+
+@CleanupTestDirectory
+class StoredTaskOutputPackerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def readOrigin = Stub(TaskOutputOriginReader)
+    def writeOrigin = Stub(TaskOutputOriginWriter)
+    def fileSystem = Stub(FileSystem) {
+        getUnixMode(_) >> 0644
+    }
+    def stringInterner = new StringInterner()
+    def streamHasher = new DefaultStreamHasher({ Hashing.md5().newHasher() })
+    def tarPacker = new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner))
+    def packStored = { true } as Factory<Boolean>
+
+    @Unroll
+    def "unpacks files with the recorded hashes when reading from #source"() {
+        def packer = new StoredTaskOutputPacker(tarPacker, packStored, fileSystem, stringInterner)
+        def sourceDir = temporaryFolder.createDir("source")
+        sourceDir.createFile("sub/data.txt") << "output"
+        sourceDir.createFile("empty.txt")
+        def sourceFile = temporaryFolder.file("single.txt") << "single"
+        def targetDir = temporaryFolder.file("target")
+        def targetFile = temporaryFolder.file("target.txt")
+        def entry = temporaryFolder.file("entry.bin")
+        def recordedHash = TestFile.md5(sourceFile)
+
+        when:
+        entry.withOutputStream { output ->
+            packer.pack(
+                [new ResolvedTaskOutputFilePropertySpec("dir", DIRECTORY, sourceDir), new ResolvedTaskOutputFilePropertySpec("file", FILE, sourceFile)] as SortedSet,
+                [dir: directorySnapshots(sourceDir), file: [(sourceFile.absolutePath): new FileHashSnapshot(recordedHash)]],
+                output, writeOrigin)
+        }
+        def result = readFrom(entry, source).withCloseable { input ->
+            packer.unpack(
+                [new ResolvedTaskOutputFilePropertySpec("dir", DIRECTORY, targetDir), new ResolvedTaskOutputFilePropertySpec("file", FILE, targetFile)] as SortedSet,
+                input, readOrigin)
+        }
+
+        then:
+        targetDir.file("sub/data.txt").text == "output"
+        targetDir.file("empty.txt").length() == 0
+        targetFile.text == "single"
+        result.entries == 6
+        result.snapshots.get("file")*.content*.contentMd5 == [recordedHash]
+        result.snapshots.get("dir").find { it.path == targetDir.file("sub/data.txt").absolutePath }.content.contentMd5 == TestFile.md5(sourceDir.file("sub/data.txt"))
+
+        where:
+        source << ["file", "stream"]
+    }
+
+    def "uses recorded hash without hashing unpacked file again"() {
+        def packer = new StoredTaskOutputPacker(tarPacker, packStored, fileSystem, stringInterner)
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def entry = temporaryFolder.file("entry.bin")
+        def recordedHash = HashCode.fromString("0123456789abcdef0123456789abcdef")
+
+        given:
+        entry.withOutputStream { output ->
+            packer.pack(property(sourceFile), [file: [(sourceFile.absolutePath): new FileHashSnapshot(recordedHash)]], output, writeOrigin)
+        }
+
+        when:
+        def result = new FileInputStream(entry).withCloseable { input ->
+            packer.unpack(property(targetFile), input, readOrigin)
+        }
+
+        then:
+        targetFile.text == "output"
+        result.snapshots.get("file")*.content*.contentMd5 == [recordedHash]
+    }
+
+    @Unroll
+    def "fails to unpack entry whose header does not match its checksum when reading from #source"() {
+        def packer = new StoredTaskOutputPacker(tarPacker, packStored, fileSystem, stringInterner)
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def entry = temporaryFolder.file("entry.bin")
+
+        given:
+        entry.withOutputStream { output ->
+            packer.pack(property(sourceFile), [file: [(sourceFile.absolutePath): new FileHashSnapshot(TestFile.md5(sourceFile))]], output, writeOrigin)
+        }
+        def bytes = entry.bytes
+        // Corrupt the last byte of the recorded hash, which is the last byte of the header
+        def headerEnd = 12 + (((bytes[8] & 0xff) << 24) | ((bytes[9] & 0xff) << 16) | ((bytes[10] & 0xff) << 8) | (bytes[11] & 0xff))
+        bytes[headerEnd - 1]++
+        entry.bytes = bytes
+
+        when:
+        readFrom(entry, source).withCloseable { input ->
+            packer.unpack(property(targetFile), input, readOrigin)
+        }
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message.contains("does not match its checksum")
+
+        where:
+        source << ["file", "stream"]
+    }
+
+    def "fails to unpack entry with missing file content"() {
+        def packer = new StoredTaskOutputPacker(tarPacker, packStored, fileSystem, stringInterner)
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def entry = temporaryFolder.file("entry.bin")
+
+        given:
+        entry.withOutputStream { output ->
+            packer.pack(property(sourceFile), [file: [(sourceFile.absolutePath): new FileHashSnapshot(TestFile.md5(sourceFile))]], output, writeOrigin)
+        }
+        entry.bytes = entry.bytes[0..-2] as byte[]
+
+        when:
+        new FileInputStream(entry).withCloseable { input ->
+            packer.unpack(property(targetFile), input, readOrigin)
+        }
+
+        then:
+        thrown(EOFException)
+    }
+
+    def "unpacks entries packed by delegate"() {
+        def sourceFile = temporaryFolder.file("source.txt") << "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def entry = temporaryFolder.file("entry.bin")
+
+        when:
+        entry.withOutputStream { output ->
+            new StoredTaskOutputPacker(tarPacker, { false } as Factory<Boolean>, fileSystem, stringInterner).pack(property(sourceFile), [file: [(sourceFile.absolutePath): new FileHashSnapshot(TestFile.md5(sourceFile))]], output, writeOrigin)
+        }
+        new FileInputStream(entry).withCloseable { input ->
+            new StoredTaskOutputPacker(tarPacker, packStored, fileSystem, stringInterner).unpack(property(targetFile), input, readOrigin)
+        }
+
+        then:
+        entry.bytes[0] == (byte) 0x1f
+        targetFile.text == "output"
+    }
+
+    private static SortedSet<ResolvedTaskOutputFilePropertySpec> property(File file) {
+        [new ResolvedTaskOutputFilePropertySpec("file", FILE, file)] as SortedSet
+    }
+
+    private static InputStream readFrom(File entry, String source) {
+        source == "file" ? new FileInputStream(entry) : new ByteArrayInputStream(entry.bytes)
+    }
+
+    private static Map directorySnapshots(File root) {
+        def snapshots = [(root.absolutePath): DirContentSnapshot.INSTANCE]
+        root.eachFileRecurse { file ->
+            snapshots.put(file.absolutePath, file.directory ? DirContentSnapshot.INSTANCE : new FileHashSnapshot(TestFile.md5(file)))
+        }
+        snapshots
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class BuildCacheAccessIndexTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+
+    def "evicts least recently used entries until somewhat smaller than maximum size when larger than maximum size"() {
+        def index = new BuildCacheAccessIndex(cacheDir, 300)
+
+        when:
+        ["a", "b", "c"].each { index.recordAccess(it, entry(it, 100)) }
+        index.evict(0)
+
+        then:
+        index.keys == ["a", "b", "c"]
+
+        when:
+        index.recordAccess("a", cacheDir.file("a"))
+        index.recordAccess("d", entry("d", 100))
+        index.evict(0)
+
+        then:
+        index.keys == ["a", "d"]
+        index.totalSize == 200
+        !cacheDir.file("b").exists()
+        !cacheDir.file("c").exists()
+        cacheDir.file("a").exists()
+    }
+
+    def "evicts entries not used since the given time"() {
+        def index = new BuildCacheAccessIndex(cacheDir, 1000)
+        index.recordAccess("a", entry("a", 100))
+        def minimumTimestamp = System.currentTimeMillis() + 1
+
+        when:
+        index.evict(minimumTimestamp)
+
+        then:
+        index.keys.empty
+        !cacheDir.file("a").exists()
+    }
+
+    def "sees entries recorded by other processes"() {
+        def index = new BuildCacheAccessIndex(cacheDir, 1000)
+        def other = new BuildCacheAccessIndex(cacheDir, 1000)
+        index.recordAccess("a", entry("a", 100))
+        index.flush()
+
+        when:
+        other.recordAccess("b", entry("b", 200))
+        other.recordRemoval("a")
+        other.flush()
+
+        then:
+        index.keys == ["b"]
+        index.totalSize == 200
+    }
+
+    def "appends accesses to the journal in batches"() {
+        def index = new BuildCacheAccessIndex(cacheDir, 100000)
+        def other = new BuildCacheAccessIndex(cacheDir, 100000)
+
+        expect:
+        other.keys.empty
+
+        when:
+        index.recordAccess("a", entry("a", 10))
+
+        then:
+        other.keys.empty
+
+        when:
+        index.flush()
+
+        then:
+        other.keys == ["a"]
+
+        when:
+        (1..100).each { index.recordAccess("e$it", entry("e$it", 10)) }
+
+        then:
+        other.keys.size() == 101
+    }
+
+    def "indexes existing entries when journal does not exist"() {
+        entry("old", 10).lastModified = 1000
+        entry("new", 20).lastModified = 2000
+        cacheDir.file("other.part") << "ignored"
+
+        when:
+        def index = new BuildCacheAccessIndex(cacheDir, 1000)
+
+        then:
+        index.keys == ["old", "new"]
+        index.totalSize == 30
+        index.journalFile.exists()
+    }
+
+    def "ignores incomplete record at the end of the journal"() {
+        def index = new BuildCacheAccessIndex(cacheDir, 1000)
+        index.recordAccess("a", entry("a", 100))
+        index.flush()
+        index.journalFile << ([1, 0, 1] as byte[])
+
+        when:
+        def other = new BuildCacheAccessIndex(cacheDir, 1000)
+        other.recordAccess("b", entry("b", 100))
+        other.flush()
+
+        then:
+        other.keys == ["a", "b"]
+        index.keys == ["a", "b"]
+    }
+
+    private File entry(String key, int size) {
+        def file = cacheDir.file(key)
+        file.bytes = new byte[size]
+        file
+    }
+}
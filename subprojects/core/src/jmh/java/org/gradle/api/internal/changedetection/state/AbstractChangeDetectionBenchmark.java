@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.tasks.util.internal.PatternSets;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.services.NativeServices;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.testfixtures.internal.InMemoryIndexedCache;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Provides the services used to snapshot files, backed by a temporary directory.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public abstract class AbstractChangeDetectionBenchmark {
+    File tempDir;
+
+    StringInterner stringInterner;
+    FileSystem fileSystem;
+    DirectoryFileTreeFactory directoryFileTreeFactory;
+    FileHasher uncachedHasher;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = File.createTempFile("change-detection-benchmark-", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+        NativeServices.initialize(new File(tempDir, "native"));
+        fileSystem = NativeServices.getInstance().get(FileSystem.class);
+        stringInterner = new StringInterner();
+        directoryFileTreeFactory = new DefaultDirectoryFileTreeFactory(PatternSets.getNonCachingPatternSetFactory(), fileSystem);
+        uncachedHasher = new DefaultFileHasher(new DefaultStreamHasher(new DefaultContentHasherFactory()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        FileUtils.forceDelete(tempDir);
+    }
+
+    FileSystemSnapshotter createSnapshotter(FileHasher hasher) {
+        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory, new DefaultFileSystemMirror(new WellKnownFileLocations() {
+            @Override
+            public boolean isImmutable(String path) {
+                return false;
+            }
+        }));
+    }
+
+    /**
+     * A {@link CachingFileHasher} backed by an in-memory store, which models a build with a warm file hash cache.
+     */
+    FileHasher createCachingHasher() {
+        TaskHistoryStore store = new TaskHistoryStore() {
+            @Override
+            public <K, V> PersistentIndexedCache<K, V> createCache(String name, Class<K> keyType, Serializer<V> valueSerializer, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+                return new InMemoryIndexedCache<K, V>(valueSerializer);
+            }
+        };
+        FileTimeStampInspector timeStampInspector = new FileTimeStampInspector(new File(tempDir, "file-changes")) {
+        };
+        return new CachingFileHasher(uncachedHasher, store, stringInterner, timeStampInspector, "fileHashes", fileSystem);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates a synthetic source tree with the given shape.
+ */
+public abstract class AbstractFileTreeBenchmark extends AbstractChangeDetectionBenchmark {
+    @Param({"1000", "10000"})
+    int fileCount;
+
+    @Param({"1", "5"})
+    int depth;
+
+    @Param({"1024", "65536"})
+    int fileSize;
+
+    File root;
+    List<File> files;
+    Random random = new Random(1234L);
+
+    @Setup(Level.Trial)
+    public void setupTree() throws IOException {
+        root = new File(tempDir, "tree");
+        files = createTree(root, fileCount, depth, fileSize);
+    }
+
+    /**
+     * Distributes the files evenly over a directory hierarchy of the given depth, with a fan-out of 10 directories per level.
+     */
+    private List<File> createTree(File root, int fileCount, int depth, int fileSize) throws IOException {
+        List<File> files = Lists.newArrayListWithCapacity(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            File dir = root;
+            int remainder = i;
+            for (int level = 1; level < depth; level++) {
+                dir = new File(dir, "dir" + (remainder % 10));
+                remainder /= 10;
+            }
+            dir.mkdirs();
+            File file = new File(dir, "file" + i + ".txt");
+            writeRandomContent(file, fileSize);
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Rewrites the contents of the given ratio of files, chosen at random.
+     */
+    void modifyFiles(double changeRatio) throws IOException {
+        int changes = (int) (files.size() * changeRatio);
+        for (int i = 0; i < changes; i++) {
+            writeRandomContent(files.get(random.nextInt(files.size())), fileSize);
+        }
+    }
+
+    private void writeRandomContent(File file, int size) throws IOException {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
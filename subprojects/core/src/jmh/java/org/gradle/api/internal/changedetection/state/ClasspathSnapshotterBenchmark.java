@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.file.collections.ImmutableFileCollection;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.normalization.internal.InputNormalizationStrategy;
+import org.gradle.testfixtures.internal.InMemoryIndexedCache;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures snapshotting a classpath of jars, generated with the given number of classes each, as a runtime classpath and as a compile classpath.
+ */
+public class ClasspathSnapshotterBenchmark extends AbstractChangeDetectionBenchmark {
+    @Param({"runtime", "compile"})
+    String classpathType;
+
+    @Param({"20"})
+    int jarCount;
+
+    @Param({"200"})
+    int classesPerJar;
+
+    /**
+     * Whether the hashes of the jars and their entries are already known from a previous build.
+     */
+    @Param({"cold", "warm"})
+    String resourceCache;
+
+    FileCollection classpath;
+    ResourceSnapshotterCacheService warmCacheService;
+
+    @Setup(Level.Trial)
+    public void setupClasspath() throws IOException {
+        List<File> jars = Lists.newArrayList();
+        for (int i = 0; i < jarCount; i++) {
+            File jar = new File(tempDir, "lib" + i + ".jar");
+            writeJar(jar, "lib" + i, classesPerJar);
+            jars.add(jar);
+        }
+        classpath = ImmutableFileCollection.of(jars);
+        warmCacheService = createCacheService();
+        snapshot(warmCacheService);
+    }
+
+    @Benchmark
+    public FileCollectionSnapshot snapshot() {
+        ResourceSnapshotterCacheService cacheService = resourceCache.equals("warm") ? warmCacheService : createCacheService();
+        return snapshot(cacheService);
+    }
+
+    private FileCollectionSnapshot snapshot(ResourceSnapshotterCacheService cacheService) {
+        FileSystemSnapshotter fileSystemSnapshotter = createSnapshotter(uncachedHasher);
+        FileCollectionSnapshotter snapshotter = classpathType.equals("compile")
+            ? new DefaultCompileClasspathSnapshotter(cacheService, directoryFileTreeFactory, fileSystemSnapshotter, stringInterner)
+            : new DefaultClasspathSnapshotter(cacheService, directoryFileTreeFactory, fileSystemSnapshotter, stringInterner);
+        return snapshotter.snapshot(classpath, InputPathNormalizationStrategy.NONE, InputNormalizationStrategy.NOT_CONFIGURED);
+    }
+
+    private static ResourceSnapshotterCacheService createCacheService() {
+        return new DefaultResourceSnapshotterCacheService(new InMemoryIndexedCache<HashCode, HashCode>(new HashCodeSerializer()));
+    }
+
+    private static void writeJar(File jar, String packageName, int classCount) throws IOException {
+        ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            for (int i = 0; i < classCount; i++) {
+                String className = packageName + "/Class" + i;
+                outputStream.putNextEntry(new ZipEntry(className + ".class"));
+                outputStream.write(generateClass(className));
+                outputStream.closeEntry();
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static byte[] generateClass(String className) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        for (int i = 0; i < 5; i++) {
+            MethodVisitor method = classWriter.visitMethod(i % 2 == 0 ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PRIVATE, "method" + i, "()I", null, null);
+            method.visitCode();
+            method.visitLdcInsn(i);
+            method.visitInsn(Opcodes.IRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+}
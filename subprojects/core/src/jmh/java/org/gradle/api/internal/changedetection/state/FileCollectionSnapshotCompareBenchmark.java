@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Maps;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.rules.TaskStateChange;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures up-to-date checks between two snapshots of a file collection, and the serialization of a snapshot into the task history.
+ * Does not touch the file system.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileCollectionSnapshotCompareBenchmark {
+    @Param({"1000", "100000"})
+    int fileCount;
+
+    @Param({"0", "0.01", "0.5"})
+    double changeRatio;
+
+    @Param({"UNORDERED", "ORDERED"})
+    String compareStrategy;
+
+    DefaultFileCollectionSnapshot previous;
+    DefaultFileCollectionSnapshot current;
+    DefaultFileCollectionSnapshot.SerializerImpl serializer;
+    byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Random random = new Random(1234L);
+        TaskFilePropertyCompareStrategy strategy = TaskFilePropertyCompareStrategy.valueOf(compareStrategy);
+        Map<String, NormalizedFileSnapshot> previousSnapshots = Maps.newLinkedHashMap();
+        Map<String, NormalizedFileSnapshot> currentSnapshots = Maps.newLinkedHashMap();
+        for (int i = 0; i < fileCount; i++) {
+            String path = "/root/project/src/main/java/dir" + (i % 100) + "/File" + i + ".java";
+            HashCode hash = HashCode.fromInt(random.nextInt());
+            previousSnapshots.put(path, new NonNormalizedFileSnapshot(path, new FileHashSnapshot(hash)));
+            if (random.nextDouble() < changeRatio) {
+                hash = HashCode.fromInt(random.nextInt());
+            }
+            currentSnapshots.put(path, new NonNormalizedFileSnapshot(path, new FileHashSnapshot(hash)));
+        }
+        previous = new DefaultFileCollectionSnapshot(previousSnapshots, strategy, true);
+        current = new DefaultFileCollectionSnapshot(currentSnapshots, strategy, true);
+        serializer = new DefaultFileCollectionSnapshot.SerializerImpl(new StringInterner());
+        serialized = serialize(current);
+    }
+
+    @Benchmark
+    public void iterateChanges(Blackhole blackhole) {
+        Iterator<TaskStateChange> changes = current.iterateContentChangesSince(previous, "Input", true);
+        while (changes.hasNext()) {
+            blackhole.consume(changes.next());
+        }
+    }
+
+    @Benchmark
+    public HashCode hash() {
+        DefaultFileCollectionSnapshot snapshot = new DefaultFileCollectionSnapshot(current.getSnapshots(), TaskFilePropertyCompareStrategy.valueOf(compareStrategy), true);
+        return snapshot.getHash();
+    }
+
+    @Benchmark
+    public byte[] write() throws Exception {
+        return serialize(current);
+    }
+
+    @Benchmark
+    public DefaultFileCollectionSnapshot read() throws Exception {
+        return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(serialized)));
+    }
+
+    private byte[] serialize(DefaultFileCollectionSnapshot snapshot) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        serializer.write(encoder, snapshot);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+}
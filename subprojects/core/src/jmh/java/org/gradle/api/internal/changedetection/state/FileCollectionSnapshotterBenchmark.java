@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.file.collections.ImmutableFileCollection;
+import org.gradle.normalization.internal.InputNormalizationStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures creating a normalized {@link FileCollectionSnapshot} from a directory tree that is already known to the file system mirror,
+ * as happens when the outputs of one task are the inputs of another.
+ */
+public class FileCollectionSnapshotterBenchmark extends AbstractFileTreeBenchmark {
+    @Param({"ABSOLUTE", "RELATIVE", "NAME_ONLY", "NONE"})
+    String normalization;
+
+    GenericFileCollectionSnapshotter snapshotter;
+    FileCollection input;
+    InputPathNormalizationStrategy normalizationStrategy;
+
+    @Setup(Level.Trial)
+    public void setupSnapshotter() {
+        FileSystemSnapshotter fileSystemSnapshotter = createSnapshotter(uncachedHasher);
+        snapshotter = new DefaultGenericFileCollectionSnapshotter(stringInterner, directoryFileTreeFactory, fileSystemSnapshotter);
+        input = ImmutableFileCollection.of(root);
+        normalizationStrategy = InputPathNormalizationStrategy.valueOf(normalization);
+        // Populate the file system mirror
+        fileSystemSnapshotter.snapshotDirectoryTree(root);
+    }
+
+    @Benchmark
+    public FileCollectionSnapshot snapshot() {
+        return snapshotter.snapshot(input, normalizationStrategy, InputNormalizationStrategy.NOT_CONFIGURED);
+    }
+}
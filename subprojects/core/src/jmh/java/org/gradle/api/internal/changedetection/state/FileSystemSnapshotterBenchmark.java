@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.hash.FileHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.io.IOException;
+
+/**
+ * Measures walking and hashing a directory tree with {@link DefaultFileSystemSnapshotter}, with an empty file system mirror.
+ */
+public class FileSystemSnapshotterBenchmark extends AbstractFileTreeBenchmark {
+    /**
+     * The ratio of files changed before each iteration, which need to be hashed again by the caching hasher.
+     */
+    @Param({"0", "0.1"})
+    double changeRatio;
+
+    FileHasher cachingHasher;
+
+    @Setup(Level.Trial)
+    public void setupHasher() {
+        cachingHasher = createCachingHasher();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws IOException {
+        modifyFiles(changeRatio);
+    }
+
+    @Benchmark
+    public FileTreeSnapshot snapshotWithoutHashCache() {
+        return createSnapshotter(uncachedHasher).snapshotDirectoryTree(root);
+    }
+
+    @Benchmark
+    public FileTreeSnapshot snapshotWithHashCache() {
+        return createSnapshotter(cachingHasher).snapshotDirectoryTree(root);
+    }
+}
@@ -20,6 +20,7 @@ import com.google.common.base.Objects;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.internal.BoundedSizeSerializer;
 import org.gradle.internal.file.FileMetadataSnapshot;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
@@ -91,6 +92,17 @@ public class CachingFileHasher implements FileHasher {
         return info;
     }
 
+    /**
+     * Records the hash of a file whose content was hashed while the file was written, so that the file does not need to be read again to hash it.
+     */
+    public void recordHash(File file, HashCode hash) {
+        FileMetadataSnapshot fileMetadata = fileSystem.stat(file);
+        String absolutePath = file.getAbsolutePath();
+        if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, fileMetadata.getLastModified())) {
+            cache.put(stringInterner.intern(absolutePath), new FileInfo(hash, fileMetadata.getLength(), fileMetadata.getLastModified()));
+        }
+    }
+
     public void discard(String path) {
         cache.remove(path);
     }
@@ -112,9 +124,16 @@ public class CachingFileHasher implements FileHasher {
         }
     }
 
-    private static class FileInfoSerializer extends AbstractSerializer<FileInfo> {
+    private static class FileInfoSerializer extends AbstractSerializer<FileInfo> implements BoundedSizeSerializer<FileInfo> {
+        // Hash length, a hash of up to 256 bits, timestamp and length
+        private static final int MAX_ENCODED_SIZE = 1 + 32 + 8 + 8;
         private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
 
+        @Override
+        public int getMaxEncodedSize() {
+            return MAX_ENCODED_SIZE;
+        }
+
         public FileInfo read(Decoder decoder) throws Exception {
             HashCode hash = hashCodeSerializer.read(decoder);
             long timestamp = decoder.readLong();
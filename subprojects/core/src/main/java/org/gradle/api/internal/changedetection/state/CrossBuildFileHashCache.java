@@ -22,18 +22,29 @@ import org.gradle.cache.FileLockManager;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.BoundedSizeSerializer;
+import org.gradle.cache.internal.MappedHashIndexedCache;
+import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.serialize.Serializer;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
+    private static final String MAPPED_INDEX_PROPERTY = "org.gradle.internal.mapped-file-hashes";
+    // How many times larger than its initial size a mapped index may grow, before it starts replacing entries
+    private static final int MAX_MAPPED_INDEX_GROWTH = 16;
+
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private final boolean useMappedIndex = Boolean.getBoolean(MAPPED_INDEX_PROPERTY);
+    private final List<MappedHashIndexedCache<?, ?>> mappedCaches = new CopyOnWriteArrayList<MappedHashIndexedCache<?, ?>>();
 
     public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
@@ -44,15 +55,28 @@ public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
             .open();
     }
 
+    /**
+     * When enabled, caches with values of bounded size are stored in a {@link MappedHashIndexedCache}, which does not require the cache lock to be held.
+     * Falls back to the default implementation when the index is in use by another process. This is safe as long as the cached values are validated
+     * before being used, as the file hashes are, because the two stores do not see each other's updates.
+     */
     @Override
     public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Serializer<V> valueSerializer, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
-        PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
-                .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
-        return cache.createCache(parameters);
+        PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer);
+        if (useMappedIndex && valueSerializer instanceof BoundedSizeSerializer) {
+            int bucketCount = Integer.highestOneBit(Math.max(maxEntriesToKeepInMemory, 1024)) / 8;
+            File indexFile = new File(cache.getBaseDir(), cacheName + ".idx");
+            MappedHashIndexedCache<K, V> mappedCache = MappedHashIndexedCache.tryOpen(indexFile, parameters.getKeySerializer(), (BoundedSizeSerializer<V>) valueSerializer, bucketCount, bucketCount * MAX_MAPPED_INDEX_GROWTH);
+            if (mappedCache != null) {
+                mappedCaches.add(mappedCache);
+                return inMemoryCacheDecoratorFactory.decorateExclusive(indexFile.getPath(), mappedCache, maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+            }
+        }
+        return cache.createCache(parameters.cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses)));
     }
 
     @Override
     public void close() throws IOException {
-        cache.close();
+        CompositeStoppable.stoppable(mappedCaches).add(cache).stop();
     }
 }
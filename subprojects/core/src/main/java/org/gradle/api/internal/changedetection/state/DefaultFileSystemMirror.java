@@ -20,6 +20,8 @@ import org.gradle.api.internal.tasks.execution.TaskOutputChangesListener;
 import org.gradle.initialization.RootBuildLifecycleListener;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -37,9 +39,16 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputChan
     private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
     private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
     private final WellKnownFileLocations wellKnownFileLocations;
+    // Optional store of directory trees that outlives the daemon
+    private final PersistentFileTreeSnapshotStore treeStore;
 
     public DefaultFileSystemMirror(WellKnownFileLocations wellKnownFileLocations) {
+        this(wellKnownFileLocations, null);
+    }
+
+    public DefaultFileSystemMirror(WellKnownFileLocations wellKnownFileLocations, @Nullable PersistentFileTreeSnapshotStore treeStore) {
         this.wellKnownFileLocations = wellKnownFileLocations;
+        this.treeStore = treeStore;
     }
 
     @Nullable
@@ -87,11 +96,15 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputChan
     public FileTreeSnapshot getDirectoryTree(String path) {
         // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly also short-circuit some scanning if we have details for some sub trees
-        if (wellKnownFileLocations.isImmutable(path)) {
-            return cacheTrees.get(path);
-        } else {
-            return trees.get(path);
+        Map<String, FileTreeSnapshot> treesForPath = wellKnownFileLocations.isImmutable(path) ? cacheTrees : trees;
+        FileTreeSnapshot snapshot = treesForPath.get(path);
+        if (snapshot == null && treeStore != null) {
+            snapshot = treeStore.load(path);
+            if (snapshot != null) {
+                treesForPath.put(path, snapshot);
+            }
         }
+        return snapshot;
     }
 
     @Override
@@ -114,10 +127,18 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputChan
 
     @Override
     public void afterStart() {
+        if (treeStore != null) {
+            treeStore.open();
+        }
     }
 
     @Override
     public void beforeComplete() {
+        if (treeStore != null) {
+            List<FileTreeSnapshot> knownTrees = new ArrayList<FileTreeSnapshot>(trees.values());
+            knownTrees.addAll(cacheTrees.values());
+            treeStore.store(knownTrees);
+        }
         // We throw away all state between builds
         files.clear();
         cacheFiles.clear();
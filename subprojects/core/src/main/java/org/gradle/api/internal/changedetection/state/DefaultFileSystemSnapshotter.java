@@ -35,6 +35,7 @@ import org.gradle.cache.internal.ProducerGuard;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.file.FileMetadataSnapshot;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.hash.FileHasher;
@@ -42,9 +43,14 @@ import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.normalization.internal.InputNormalizationStrategy;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Responsible for snapshotting various aspects of the file system.
@@ -56,8 +62,15 @@ import java.util.List;
  * the same as before (e.g. don't scan the output directory of a task a bunch of times).
  *
  * The implementations are currently intentionally very, very simple, and so there are a number of ways in which they can be made much more efficient. This can happen over time.
+ *
+ * When given an executor, the regular files of a large directory tree are hashed concurrently. The tree is still walked by the calling thread, so the order of the
+ * elements of the resulting snapshot is the same as when hashing serially.
  */
 public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
+    // Trees with fewer files than this are hashed by the calling thread
+    private static final int PARALLEL_HASHING_THRESHOLD = 1000;
+    private static final int FILES_PER_HASHING_TASK = 250;
+
     private final FileHasher hasher;
     private final StringInterner stringInterner;
     private final FileSystem fileSystem;
@@ -67,9 +80,18 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final ProducerGuard<String> producingTrees = ProducerGuard.striped();
     private final ProducerGuard<String> producingAllSnapshots = ProducerGuard.striped();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
+    private final ExecutorService hashingExecutor;
 
     public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        this(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, null);
+    }
+
+    /**
+     * @param hashingExecutor The executor used to hash the files of large trees, or null to hash all files on the calling thread.
+     */
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, @Nullable ExecutorService hashingExecutor) {
         this.hasher = hasher;
+        this.hashingExecutor = hashingExecutor;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
@@ -188,9 +210,7 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
     private FileTreeSnapshot snapshotAndCache(DirectoryFileTree directoryTree) {
         String path = internPath(directoryTree.getDir());
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
-        ImmutableList<FileSnapshot> descendants = ImmutableList.copyOf(elements);
+        ImmutableList<FileSnapshot> descendants = ImmutableList.copyOf(snapshotDescendants(directoryTree));
         DirectoryTreeDetails snapshot = new DirectoryTreeDetails(path, descendants);
         fileSystemMirror.putDirectory(snapshot);
         return snapshot;
@@ -202,9 +222,18 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
      */
     private FileTreeSnapshot snapshotWithoutCaching(DirectoryFileTree directoryTree) {
         String path = directoryTree.getDir().getAbsolutePath();
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
-        return new DirectoryTreeDetails(path, elements);
+        return new DirectoryTreeDetails(path, snapshotDescendants(directoryTree));
+    }
+
+    private List<FileSnapshot> snapshotDescendants(DirectoryFileTree directoryTree) {
+        if (hashingExecutor == null) {
+            List<FileSnapshot> elements = Lists.newArrayList();
+            directoryTree.visit(new FileVisitorImpl(elements));
+            return elements;
+        }
+        DeferredHashingFileVisitor visitor = new DeferredHashingFileVisitor();
+        directoryTree.visit(visitor);
+        return visitor.complete();
     }
 
     private FileTreeSnapshot filterSnapshot(FileTreeSnapshot snapshot, PatternSet patterns) {
@@ -241,11 +270,11 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     }
 
     private FileHashSnapshot fileSnapshot(FileTreeElement fileDetails) {
-        return new FileHashSnapshot(hasher.hash(fileDetails), fileDetails.getLastModified());
+        return new FileHashSnapshot(hasher.hash(fileDetails), fileDetails.getLastModified(), fileDetails.getSize());
     }
 
     private FileHashSnapshot fileSnapshot(File file, FileMetadataSnapshot fileDetails) {
-        return new FileHashSnapshot(hasher.hash(file, fileDetails), fileDetails.getLastModified());
+        return new FileHashSnapshot(hasher.hash(file, fileDetails), fileDetails.getLastModified(), fileDetails.getLength());
     }
 
     private static class HashBackedSnapshot implements Snapshot {
@@ -297,4 +326,75 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
             fileTreeElements.add(new RegularFileSnapshot(internPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
         }
     }
+
+    /**
+     * Collects the elements of a tree in visiting order, deferring the hashing of regular files until the walk has completed.
+     */
+    private class DeferredHashingFileVisitor implements FileVisitor {
+        private final List<FileSnapshot> elements = Lists.newArrayList();
+        private final List<Integer> pendingIndexes = Lists.newArrayList();
+        private final List<FileVisitDetails> pendingFiles = Lists.newArrayList();
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            elements.add(new DirectoryFileSnapshot(internPath(dirDetails.getFile()), dirDetails.getRelativePath(), false));
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            pendingIndexes.add(elements.size());
+            pendingFiles.add(fileDetails);
+            elements.add(null);
+        }
+
+        List<FileSnapshot> complete() {
+            FileSnapshot[] hashed = new FileSnapshot[pendingFiles.size()];
+            if (pendingFiles.size() < PARALLEL_HASHING_THRESHOLD) {
+                hashRange(hashed, 0, hashed.length);
+            } else {
+                hashConcurrently(hashed);
+            }
+            for (int i = 0; i < hashed.length; i++) {
+                elements.set(pendingIndexes.get(i), hashed[i]);
+            }
+            return elements;
+        }
+
+        private void hashConcurrently(final FileSnapshot[] hashed) {
+            List<Future<?>> results = Lists.newArrayList();
+            // Submit all but the first range, which is hashed by this thread while the others are in progress
+            for (int start = FILES_PER_HASHING_TASK; start < hashed.length; start += FILES_PER_HASHING_TASK) {
+                final int rangeStart = start;
+                final int rangeEnd = Math.min(start + FILES_PER_HASHING_TASK, hashed.length);
+                results.add(hashingExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        hashRange(hashed, rangeStart, rangeEnd);
+                        return null;
+                    }
+                }));
+            }
+            try {
+                hashRange(hashed, 0, Math.min(FILES_PER_HASHING_TASK, hashed.length));
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } finally {
+                for (Future<?> result : results) {
+                    result.cancel(false);
+                }
+            }
+        }
+
+        private void hashRange(FileSnapshot[] hashed, int start, int end) {
+            for (int i = start; i < end; i++) {
+                FileVisitDetails fileDetails = pendingFiles.get(i);
+                hashed[i] = new RegularFileSnapshot(internPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails));
+            }
+        }
+    }
 }
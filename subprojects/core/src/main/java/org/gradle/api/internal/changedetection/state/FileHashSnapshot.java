@@ -23,14 +23,28 @@ import org.gradle.internal.hash.HashCode;
 public class FileHashSnapshot implements FileContentSnapshot {
     private final HashCode hash;
     private final transient long lastModified; // Currently not persisted
+    private final transient long length; // Currently not persisted, -1 when not known
 
     public FileHashSnapshot(HashCode hash) {
         this(hash, 0L);
     }
 
     public FileHashSnapshot(HashCode hash, long lastModified) {
+        this(hash, lastModified, -1L);
+    }
+
+    public FileHashSnapshot(HashCode hash, long lastModified, long length) {
         this.hash = hash;
         this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getLength() {
+        return length;
     }
 
     public boolean isContentUpToDate(FileContentSnapshot snapshot) {
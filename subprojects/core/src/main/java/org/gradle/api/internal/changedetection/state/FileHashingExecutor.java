@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.ThreadFactoryImpl;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes the files of large directory trees for all {@link DefaultFileSystemSnapshotter} instances, so that the number of hashing threads is bounded
+ * regardless of how many snapshotters there are. Threads are only started while there are files to hash, and finish once they have been idle for a while.
+ */
+public class FileHashingExecutor extends ThreadPoolExecutor implements Stoppable {
+    private static final long IDLE_TIMEOUT_SECONDS = 10;
+
+    public FileHashingExecutor(int maxThreads) {
+        super(maxThreads, maxThreads, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactoryImpl("File hashing"));
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void stop() {
+        shutdownNow();
+    }
+}
@@ -26,6 +26,7 @@ import org.gradle.cache.CacheDecorator;
 import org.gradle.cache.CrossProcessCacheAccess;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.internal.AsyncCacheAccessDecoratedCache;
 import org.gradle.cache.internal.CrossBuildInMemoryCache;
 import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
@@ -56,6 +57,17 @@ public class InMemoryCacheDecoratorFactory {
         return new InMemoryCacheDecorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
     }
 
+    /**
+     * Wraps a cache that is only ever changed by this process with an in-memory cache. The in-memory cache is discarded along with the backing cache.
+     */
+    public <K, V> PersistentIndexedCache<K, V> decorateExclusive(String cacheId, PersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+        if (!longLivingProcess && !cacheInMemoryForShortLivedProcesses) {
+            LOG.debug("Creating cache {} without in-memory store.", cacheId);
+            return backingCache;
+        }
+        return new InMemoryExclusiveCache<K, V>(backingCache, createInMemoryCache(cacheId, cacheSizer.scaleCacheSize(maxEntriesToKeepInMemory)));
+    }
+
     private <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         if (!longLivingProcess && !cacheInMemoryForShortLivedProcesses) {
             // Short lived process, don't cache in memory
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.gradle.api.Transformer;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.UncheckedException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Short-circuits reads from a backing cache that is only ever changed by this process, so the in-memory cache never needs to be invalidated.
+ */
+class InMemoryExclusiveCache<K, V> implements PersistentIndexedCache<K, V> {
+    private final static Object NULL = new Object();
+    private final PersistentIndexedCache<K, V> delegate;
+    private final Cache<Object, Object> inMemoryCache;
+
+    InMemoryExclusiveCache(PersistentIndexedCache<K, V> delegate, Cache<Object, Object> inMemoryCache) {
+        this.delegate = delegate;
+        this.inMemoryCache = inMemoryCache;
+    }
+
+    @Override
+    public String toString() {
+        return "{in-memory-cache cache: " + delegate + "}";
+    }
+
+    @Override
+    public V get(final K key) {
+        Object value;
+        try {
+            value = inMemoryCache.get(key, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Object out = delegate.get(key);
+                    return out == null ? NULL : out;
+                }
+            });
+        } catch (UncheckedExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        if (value == NULL) {
+            return null;
+        } else {
+            return (V) value;
+        }
+    }
+
+    @Override
+    public V get(K key, Transformer<? extends V, ? super K> producer) {
+        V value = get(key);
+        if (value == null) {
+            value = producer.transform(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        inMemoryCache.put(key, value);
+        delegate.put(key, value);
+    }
+
+    @Override
+    public void remove(K key) {
+        inMemoryCache.put(key, NULL);
+        delegate.remove(key);
+    }
+}
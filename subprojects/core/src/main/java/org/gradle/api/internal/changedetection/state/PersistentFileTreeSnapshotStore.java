@@ -0,0 +1,525 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.io.MappedByteBuffers;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A memory-mapped, on-disk store of directory tree snapshots that survives the daemon, used by {@link DefaultFileSystemMirror} to avoid walking and hashing
+ * a directory tree whose contents have not changed since the end of a previous build.
+ *
+ * The store is a single file, consisting of the encoded trees followed by an index from interned root path to the location of the encoded tree. The index
+ * is read when the store is opened and trees are decoded lazily from the mapped file. A tree is only returned when the type, timestamp and length of every element
+ * still matches what was recorded. Directory timestamps are also recorded and checked, so that files added to or removed from a directory are detected.
+ * This also detects a file that is replaced by renaming another file over it, so the file key (inode) of each file is not recorded. Reading it would
+ * require a second stat of every file, as {@link FileSystem#stat(File)} does not provide it.
+ *
+ * At the end of a build, trees that have changed are appended to the file, followed by a new index. The space used by replaced trees and earlier indexes
+ * is reclaimed by rewriting the file once more than half of it is no longer referenced by the index.
+ *
+ * Similar to {@link FileTimeStampInspector}, any element whose timestamp is not older than the start of the build that recorded it is not trusted,
+ * as it may have been modified again without a visible change to its timestamp.
+ *
+ * The mapped file is explicitly unmapped before it is replaced, as some platforms do not allow a mapped file to be deleted or renamed.
+ */
+public class PersistentFileTreeSnapshotStore {
+    private static final Logger LOGGER = Logging.getLogger(PersistentFileTreeSnapshotStore.class);
+    private static final int MAGIC = 0x46545353;
+    private static final int VERSION = 1;
+    private static final byte DIRECTORY = 1;
+    private static final byte REGULAR_FILE = 2;
+    private static final byte MISSING = 3;
+    private static final long MAX_STORE_SIZE = Integer.MAX_VALUE / 2;
+
+    private final File storeFile;
+    private final FileSystem fileSystem;
+    private final StringInterner stringInterner;
+    private final FileTimeStampInspector timeStampInspector;
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<String, IndexEntry>();
+    // Guards the mapped buffer, so that it is not unmapped while a tree is being decoded
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private MappedByteBuffer buffer;
+    private int storedEntryCount;
+    private long buildStartTimestamp;
+
+    public PersistentFileTreeSnapshotStore(File storeFile, FileSystem fileSystem, StringInterner stringInterner, FileTimeStampInspector timeStampInspector) {
+        this.storeFile = storeFile;
+        this.fileSystem = fileSystem;
+        this.stringInterner = stringInterner;
+        this.timeStampInspector = timeStampInspector;
+    }
+
+    /**
+     * Maps the store file and reads its index. Called at the start of each build.
+     */
+    public void open() {
+        bufferLock.writeLock().lock();
+        try {
+            release();
+            buildStartTimestamp = currentTimestamp();
+            if (!storeFile.isFile()) {
+                return;
+            }
+            try {
+                RandomAccessFile file = new RandomAccessFile(storeFile, "r");
+                try {
+                    buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                } finally {
+                    file.close();
+                }
+                readIndex(buffer);
+            } catch (Exception e) {
+                LOGGER.debug("Could not read file system mirror store {}. Ignoring.", storeFile, e);
+                release();
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the stored snapshot of the given directory tree, if present and still up-to-date. Does not walk the directory tree.
+     */
+    @Nullable
+    public FileTreeSnapshot load(String path) {
+        IndexEntry entry = index.get(path);
+        if (entry == null) {
+            return null;
+        }
+        FileTreeSnapshot snapshot;
+        bufferLock.readLock().lock();
+        try {
+            if (buffer == null) {
+                return null;
+            }
+            snapshot = decodeIfUpToDate(path, entry);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not read {} from file system mirror store {}. Ignoring.", path, storeFile, e);
+            snapshot = null;
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        if (snapshot == null) {
+            index.remove(path);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the given trees to the store, along with those trees of the previous store that were not invalidated during this build.
+     * Called at the end of each build.
+     */
+    public void store(Collection<FileTreeSnapshot> trees) {
+        Map<String, byte[]> encodedTrees = new LinkedHashMap<String, byte[]>();
+        for (FileTreeSnapshot tree : trees) {
+            encodedTrees.put(tree.getPath(), encode(tree));
+        }
+
+        Map<String, IndexEntry> keptTrees = new LinkedHashMap<String, IndexEntry>();
+        Map<String, byte[]> changedTrees = new LinkedHashMap<String, byte[]>();
+        Map<String, byte[]> compactedTrees = null;
+        long storeLength;
+        bufferLock.writeLock().lock();
+        try {
+            storeLength = buffer == null ? 0 : buffer.capacity();
+            boolean changed = buffer == null || index.size() != storedEntryCount;
+            keptTrees.putAll(index);
+            for (Map.Entry<String, byte[]> entry : encodedTrees.entrySet()) {
+                byte[] bytes = entry.getValue();
+                IndexEntry existing = keptTrees.remove(entry.getKey());
+                if (bytes == null) {
+                    changed |= existing != null;
+                } else if (existing != null && isStored(existing, bytes)) {
+                    keptTrees.put(entry.getKey(), existing);
+                } else {
+                    changedTrees.put(entry.getKey(), bytes);
+                }
+            }
+            if (!changed && changedTrees.isEmpty()) {
+                release();
+                return;
+            }
+
+            long keptBytes = 0;
+            for (IndexEntry entry : keptTrees.values()) {
+                keptBytes += entry.length;
+            }
+            long changedBytes = 0;
+            for (byte[] bytes : changedTrees.values()) {
+                changedBytes += bytes.length;
+            }
+            long deadBytes = storeLength - keptBytes;
+            if (buffer == null || deadBytes > keptBytes + changedBytes || storeLength + changedBytes > MAX_STORE_SIZE) {
+                compactedTrees = new LinkedHashMap<String, byte[]>();
+                for (Map.Entry<String, IndexEntry> entry : keptTrees.entrySet()) {
+                    compactedTrees.put(entry.getKey(), read(entry.getValue()));
+                }
+                compactedTrees.putAll(changedTrees);
+            }
+            release();
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+
+        try {
+            if (compactedTrees != null) {
+                write(compactedTrees);
+            } else {
+                append(storeLength, keptTrees, changedTrees);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not write file system mirror store {}. Ignoring.", storeFile, e);
+        }
+    }
+
+    private void readIndex(ByteBuffer buffer) {
+        ByteBuffer source = buffer.duplicate();
+        source.position(source.limit() - 12);
+        int indexOffset = (int) source.getLong();
+        if (source.getInt() != MAGIC) {
+            return;
+        }
+        source.position(indexOffset);
+        if (source.getInt() != VERSION) {
+            return;
+        }
+        int count = source.getInt();
+        storedEntryCount = count;
+        for (int i = 0; i < count; i++) {
+            String path = stringInterner.intern(readString(source));
+            int offset = source.getInt();
+            int length = source.getInt();
+            if (offset < 0 || length < 0 || (long) offset + length > indexOffset) {
+                throw new IllegalStateException("Invalid index entry for " + path);
+            }
+            index.put(path, new IndexEntry(offset, length));
+        }
+    }
+
+    /**
+     * Discards the index and unmaps the store file. Must be called while holding the write lock.
+     */
+    private void release() {
+        index.clear();
+        storedEntryCount = 0;
+        if (buffer != null) {
+            unmap(buffer);
+            buffer = null;
+        }
+    }
+
+    private byte[] read(IndexEntry entry) {
+        byte[] bytes = new byte[entry.length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(entry.offset);
+        source.get(bytes);
+        return bytes;
+    }
+
+    private boolean isStored(IndexEntry entry, byte[] bytes) {
+        if (entry.length != bytes.length) {
+            return false;
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.position(entry.offset);
+        for (byte b : bytes) {
+            if (source.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private FileTreeSnapshot decodeIfUpToDate(String rootPath, IndexEntry entry) {
+        ByteBuffer source = buffer.duplicate();
+        source.position(entry.offset);
+        File root = new File(rootPath);
+        byte rootType = source.get();
+        long rootTimestamp = source.getLong();
+        if (!isUpToDate(root, rootType, rootTimestamp, 0)) {
+            return null;
+        }
+        int count = source.getInt();
+        ImmutableList.Builder<FileSnapshot> descendants = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            byte type = source.get();
+            String relativePath = readString(source);
+            long timestamp = source.getLong();
+            String path = stringInterner.intern(rootPath + File.separatorChar + relativePath.replace('/', File.separatorChar));
+            if (type == DIRECTORY) {
+                if (!isUpToDate(new File(path), type, timestamp, 0)) {
+                    return null;
+                }
+                descendants.add(new DirectoryFileSnapshot(path, RelativePath.parse(false, relativePath), false));
+            } else {
+                long length = source.getLong();
+                byte[] hash = new byte[source.get()];
+                source.get(hash);
+                if (!isUpToDate(new File(path), type, timestamp, length)) {
+                    return null;
+                }
+                descendants.add(new RegularFileSnapshot(path, RelativePath.parse(true, relativePath), false, new FileHashSnapshot(HashCode.fromBytes(hash), timestamp, length)));
+            }
+        }
+        return new DirectoryTreeDetails(rootPath, descendants.build());
+    }
+
+    private boolean isUpToDate(File file, byte type, long timestamp, long length) {
+        switch (type) {
+            case MISSING:
+                return !file.exists();
+            case DIRECTORY:
+                return timestamp < buildStartTimestamp && file.isDirectory() && file.lastModified() == timestamp;
+            case REGULAR_FILE:
+                FileMetadataSnapshot stat = fileSystem.stat(file);
+                return timestamp < buildStartTimestamp && stat.getType() == FileType.RegularFile && stat.getLastModified() == timestamp && stat.getLength() == length;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns null when the tree cannot be reliably recorded, for example because it was modified during this build.
+     */
+    @Nullable
+    private byte[] encode(FileTreeSnapshot tree) {
+        TreeEncoder encoder = new TreeEncoder();
+        try {
+            File root = new File(tree.getPath());
+            if (!root.exists()) {
+                encoder.output.writeByte(MISSING);
+                encoder.output.writeLong(0);
+            } else if (root.isDirectory() && isReliable(root.lastModified())) {
+                encoder.output.writeByte(DIRECTORY);
+                encoder.output.writeLong(root.lastModified());
+            } else {
+                return null;
+            }
+            encoder.output.writeInt(tree.getDescendants().size());
+            for (FileSnapshot descendant : tree.getDescendants()) {
+                if (!encoder.write(descendant)) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return encoder.bytes.toByteArray();
+    }
+
+    private boolean isReliable(long timestamp) {
+        return timestamp < buildStartTimestamp;
+    }
+
+    private void write(Map<String, byte[]> encodedTrees) throws IOException {
+        File parentDir = storeFile.getParentFile();
+        parentDir.mkdirs();
+        File tempFile = File.createTempFile(storeFile.getName(), ".tmp", parentDir);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                Map<String, IndexEntry> written = new LinkedHashMap<String, IndexEntry>();
+                int offset = 0;
+                for (Map.Entry<String, byte[]> entry : encodedTrees.entrySet()) {
+                    byte[] bytes = entry.getValue();
+                    if ((long) offset + bytes.length > MAX_STORE_SIZE) {
+                        break;
+                    }
+                    output.write(bytes);
+                    written.put(entry.getKey(), new IndexEntry(offset, bytes.length));
+                    offset += bytes.length;
+                }
+                writeIndex(output, written, offset);
+            } finally {
+                output.close();
+            }
+            if (storeFile.exists() && !storeFile.delete()) {
+                throw new IOException("Could not delete " + storeFile);
+            }
+            if (!tempFile.renameTo(storeFile)) {
+                throw new IOException("Could not rename " + tempFile + " to " + storeFile);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Appends the changed trees and a new index to the existing store file, leaving the trees that are still referenced in place.
+     */
+    private void append(long storeLength, Map<String, IndexEntry> keptTrees, Map<String, byte[]> changedTrees) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(storeFile, "rw");
+        try {
+            // Guard against other processes updating the store at the same time
+            file.getChannel().lock();
+            if (file.length() != storeLength) {
+                LOGGER.debug("File system mirror store {} was updated by another process. Not updating.", storeFile);
+                return;
+            }
+            file.seek(storeLength);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file.getChannel())));
+            Map<String, IndexEntry> written = new LinkedHashMap<String, IndexEntry>(keptTrees);
+            int offset = (int) storeLength;
+            for (Map.Entry<String, byte[]> entry : changedTrees.entrySet()) {
+                byte[] bytes = entry.getValue();
+                output.write(bytes);
+                written.put(entry.getKey(), new IndexEntry(offset, bytes.length));
+                offset += bytes.length;
+            }
+            writeIndex(output, written, offset);
+            output.flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void writeIndex(DataOutputStream output, Map<String, IndexEntry> entries, long indexOffset) throws IOException {
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+        for (Map.Entry<String, IndexEntry> entry : entries.entrySet()) {
+            writeString(output, entry.getKey());
+            output.writeInt(entry.getValue().offset);
+            output.writeInt(entry.getValue().length);
+        }
+        output.writeLong(indexOffset);
+        output.writeInt(MAGIC);
+    }
+
+    private long currentTimestamp() {
+        try {
+            return timeStampInspector.currentTimestamp();
+        } catch (UncheckedIOException e) {
+            // Nothing recorded by the previous build is trusted
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Releases the mapping eagerly, rather than when the buffer is garbage collected. When this is not possible, the mapping is left to the garbage collector.
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            MappedByteBuffers.unmap(buffer);
+        } catch (Exception e) {
+            LOGGER.debug("Could not unmap file system mirror store {}.", storeFile, e);
+        }
+    }
+
+    private static String readString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0 || length > source.remaining()) {
+            throw new IllegalStateException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private class TreeEncoder {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+
+        boolean write(FileSnapshot snapshot) throws IOException {
+            File file = new File(snapshot.getPath());
+            switch (snapshot.getType()) {
+                case Directory:
+                    long dirTimestamp = file.lastModified();
+                    if (!file.isDirectory() || !isReliable(dirTimestamp)) {
+                        return false;
+                    }
+                    output.writeByte(DIRECTORY);
+                    writeString(output, snapshot.getRelativePath().getPathString());
+                    output.writeLong(dirTimestamp);
+                    return true;
+                case RegularFile:
+                    if (!(snapshot.getContent() instanceof FileHashSnapshot)) {
+                        return false;
+                    }
+                    FileHashSnapshot content = (FileHashSnapshot) snapshot.getContent();
+                    if (!isReliable(content.getLastModified())) {
+                        return false;
+                    }
+                    // The length is usually known from when the file was snapshotted. Any later change to the file is detected when the tree is loaded
+                    long length = content.getLength();
+                    if (length < 0) {
+                        FileMetadataSnapshot stat = fileSystem.stat(file);
+                        if (stat.getType() != FileType.RegularFile || stat.getLastModified() != content.getLastModified()) {
+                            return false;
+                        }
+                        length = stat.getLength();
+                    }
+                    byte[] hash = content.getContentMd5().toByteArray();
+                    output.writeByte(REGULAR_FILE);
+                    writeString(output, snapshot.getRelativePath().getPathString());
+                    output.writeLong(content.getLastModified());
+                    output.writeLong(length);
+                    output.writeByte(hash.length);
+                    output.write(hash);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static class IndexEntry {
+        final int offset;
+        final int length;
+
+        IndexEntry(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
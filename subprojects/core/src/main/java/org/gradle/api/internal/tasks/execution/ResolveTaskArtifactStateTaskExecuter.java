@@ -25,12 +25,15 @@ import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
 import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.internal.tasks.properties.PropertyWalker;
+import org.gradle.caching.internal.tasks.BuildCacheEntryPrefetcher;
 import org.gradle.internal.file.PathToFileResolver;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.time.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 @NonNullApi
 public class ResolveTaskArtifactStateTaskExecuter implements TaskExecuter {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResolveTaskArtifactStateTaskExecuter.class);
@@ -39,20 +42,35 @@ public class ResolveTaskArtifactStateTaskExecuter implements TaskExecuter {
     private final PathToFileResolver resolver;
     private final TaskExecuter executer;
     private final TaskArtifactStateRepository repository;
+    private final BuildCacheEntryPrefetcher prefetcher;
 
     public ResolveTaskArtifactStateTaskExecuter(TaskArtifactStateRepository repository, PathToFileResolver resolver, PropertyWalker propertyWalker, TaskExecuter executer) {
+        this(repository, resolver, propertyWalker, null, executer);
+    }
+
+    public ResolveTaskArtifactStateTaskExecuter(TaskArtifactStateRepository repository, PathToFileResolver resolver, PropertyWalker propertyWalker, @Nullable BuildCacheEntryPrefetcher prefetcher, TaskExecuter executer) {
         this.propertyWalker = propertyWalker;
         this.resolver = resolver;
         this.executer = executer;
         this.repository = repository;
+        this.prefetcher = prefetcher;
     }
 
     @Override
     public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         Timer clock = Time.startTimer();
-        TaskProperties taskProperties = DefaultTaskProperties.resolve(propertyWalker, resolver, task);
+        BuildCacheEntryPrefetcher.CalculatedState prefetchedState = prefetcher == null ? null : prefetcher.takeCalculatedState(task);
+        TaskProperties taskProperties;
+        TaskArtifactState taskArtifactState;
+        if (prefetchedState != null) {
+            // Reuse the input snapshots taken while prefetching the build cache entry of the task
+            taskProperties = prefetchedState.getTaskProperties();
+            taskArtifactState = prefetchedState.getTaskArtifactState();
+        } else {
+            taskProperties = DefaultTaskProperties.resolve(propertyWalker, resolver, task);
+            taskArtifactState = repository.getStateFor(task, taskProperties);
+        }
         context.setTaskProperties(taskProperties);
-        TaskArtifactState taskArtifactState = repository.getStateFor(task, taskProperties);
         TaskOutputsInternal outputs = task.getOutputs();
 
         context.setTaskArtifactState(taskArtifactState);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Owns the threads that compress build cache entries in parallel. The threads are only started when the executor is first used, and are stopped along with the services of the build.
+ */
+public class BuildCacheEntryCompressionExecutor implements Stoppable {
+    private final ExecutorFactory executorFactory;
+    private final int threads;
+    private ManagedExecutor executor;
+
+    public BuildCacheEntryCompressionExecutor(ExecutorFactory executorFactory, int threads) {
+        this.executorFactory = executorFactory;
+        this.threads = threads;
+    }
+
+    /**
+     * The number of threads to compress entries with. Entries are compressed on the calling thread when this is 1 or less.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Build cache entry compression", threads);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.TaskArtifactState;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.api.internal.tasks.execution.DefaultTaskProperties;
+import org.gradle.api.internal.tasks.execution.TaskOutputChangesListener;
+import org.gradle.api.internal.tasks.execution.TaskProperties;
+import org.gradle.api.internal.tasks.properties.PropertyWalker;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.controller.BuildCacheControllerFactory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.file.PathToFileResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Prefetches the build cache entries of cacheable tasks whose inputs are known ahead of their execution. These are the tasks without dependencies in the task graph,
+ * and the tasks whose dependencies have all been up-to-date or skipped, so that none of them changed their outputs.
+ *
+ * <p>The cache keys are calculated in the background. A task that starts to execute while its key is being calculated waits for the calculation, and a task
+ * that starts before the calculation does not calculate its key twice.</p>
+ *
+ * <p>The artifact states calculated here, including the snapshots of the task inputs, are reused when the task is executed, as long as the outputs of
+ * no task have changed since the calculation started. Otherwise the inputs are snapshotted again, and a task whose inputs have changed simply does not use the prefetched entry.</p>
+ */
+public class BuildCacheEntryPrefetcher implements TaskExecutionGraphListener, TaskExecutionListener, TaskOutputChangesListener, Stoppable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheEntryPrefetcher.class);
+
+    private static final int MAX_CONCURRENT_CALCULATIONS = 4;
+
+    private final BuildCacheController buildCacheController;
+    private final TaskArtifactStateRepository repository;
+    private final PropertyWalker propertyWalker;
+    private final PathToFileResolver resolver;
+    private final ManagedExecutor executor;
+    private final Map<TaskInternal, PendingState> pendingStates = new IdentityHashMap<TaskInternal, PendingState>();
+    // The tasks that are prefetched once the given number of their dependencies have been up-to-date
+    private final Map<Task, Integer> remainingDependencies = new IdentityHashMap<Task, Integer>();
+    private final Map<Task, List<Task>> dependents = new IdentityHashMap<Task, List<Task>>();
+    // Incremented whenever the outputs of a task are about to change
+    private long outputChanges;
+
+    public BuildCacheEntryPrefetcher(BuildCacheController buildCacheController, TaskArtifactStateRepository repository, PropertyWalker propertyWalker, PathToFileResolver resolver, ExecutorFactory executorFactory) {
+        this.buildCacheController = buildCacheController;
+        this.repository = repository;
+        this.propertyWalker = propertyWalker;
+        this.resolver = resolver;
+        this.executor = executorFactory.create("Build cache key calculation", MAX_CONCURRENT_CALCULATIONS);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(BuildCacheControllerFactory.PREFETCH_PROPERTY);
+    }
+
+    @Override
+    public void graphPopulated(TaskExecutionGraph graph) {
+        if (!buildCacheController.isEnabled()) {
+            return;
+        }
+        // The task graph can only be queried by this thread, so the order in which tasks become ready is worked out here
+        List<TaskInternal> readyTasks = new ArrayList<TaskInternal>();
+        synchronized (pendingStates) {
+            for (Task task : graph.getAllTasks()) {
+                if (!task.getEnabled()) {
+                    continue;
+                }
+                Set<Task> dependencies = graph.getDependencies(task);
+                if (dependencies.isEmpty()) {
+                    readyTasks.add((TaskInternal) task);
+                    continue;
+                }
+                remainingDependencies.put(task, dependencies.size());
+                for (Task dependency : dependencies) {
+                    List<Task> tasks = dependents.get(dependency);
+                    if (tasks == null) {
+                        tasks = new ArrayList<Task>();
+                        dependents.put(dependency, tasks);
+                    }
+                    tasks.add(task);
+                }
+            }
+        }
+        for (TaskInternal task : readyTasks) {
+            prefetch(task);
+        }
+    }
+
+    @Override
+    public void beforeExecute(Task task) {
+    }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+        TaskExecutionOutcome outcome = ((TaskStateInternal) state).getOutcome();
+        boolean outputsUnchanged = outcome == TaskExecutionOutcome.UP_TO_DATE || outcome == TaskExecutionOutcome.SKIPPED;
+        List<TaskInternal> readyTasks = new ArrayList<TaskInternal>();
+        synchronized (pendingStates) {
+            List<Task> tasks = dependents.remove(task);
+            if (tasks == null) {
+                return;
+            }
+            for (Task dependent : tasks) {
+                Integer remaining = remainingDependencies.get(dependent);
+                if (remaining == null) {
+                    continue;
+                }
+                if (!outputsUnchanged) {
+                    // The inputs of the dependent are not known until it executes
+                    remainingDependencies.remove(dependent);
+                } else if (remaining == 1) {
+                    remainingDependencies.remove(dependent);
+                    readyTasks.add((TaskInternal) dependent);
+                } else {
+                    remainingDependencies.put(dependent, remaining - 1);
+                }
+            }
+        }
+        for (TaskInternal dependent : readyTasks) {
+            prefetch(dependent);
+        }
+    }
+
+    private void prefetch(final TaskInternal task) {
+        PendingState pendingState = new PendingState(new Callable<CalculatedState>() {
+            @Override
+            public CalculatedState call() {
+                return calculate(task);
+            }
+        });
+        synchronized (pendingStates) {
+            pendingStates.put(task, pendingState);
+        }
+        executor.execute(pendingState);
+    }
+
+    @Nullable
+    private CalculatedState calculate(TaskInternal task) {
+        long outputChangesBefore = currentOutputChanges();
+        try {
+            TaskProperties taskProperties = DefaultTaskProperties.resolve(propertyWalker, resolver, task);
+            if (!task.getOutputs().getCachingState(taskProperties).isEnabled()) {
+                return null;
+            }
+            TaskArtifactState taskArtifactState = repository.getStateFor(task, taskProperties);
+            TaskOutputCachingBuildCacheKey cacheKey = taskArtifactState.calculateCacheKey();
+            if (cacheKey.isValid()) {
+                buildCacheController.prefetch(cacheKey);
+            }
+            return new CalculatedState(taskProperties, taskArtifactState, outputChangesBefore);
+        } catch (Exception e) {
+            // The task will report the problem when it is executed
+            LOGGER.debug("Could not calculate build cache key of {} for prefetching.", task, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the state calculated for the given task while prefetching, if it is still up-to-date. Waits for the calculation when it is in progress.
+     * Can only be called once for each task.
+     */
+    @Nullable
+    public CalculatedState takeCalculatedState(TaskInternal task) {
+        PendingState pendingState;
+        synchronized (pendingStates) {
+            pendingState = pendingStates.remove(task);
+        }
+        if (pendingState == null || pendingState.claim()) {
+            return null;
+        }
+        CalculatedState calculatedState;
+        try {
+            calculatedState = pendingState.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        if (calculatedState == null || calculatedState.outputChanges != currentOutputChanges()) {
+            // The input files of the task may have changed since they were snapshotted
+            return null;
+        }
+        return calculatedState;
+    }
+
+    private long currentOutputChanges() {
+        synchronized (pendingStates) {
+            return outputChanges;
+        }
+    }
+
+    @Override
+    public void beforeTaskOutputChanged() {
+        // The inputs of the remaining tasks may change, so the states calculated so far need to be calculated again
+        synchronized (pendingStates) {
+            outputChanges++;
+            Iterator<PendingState> iterator = pendingStates.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (pendingStates) {
+            for (PendingState pendingState : pendingStates.values()) {
+                pendingState.claim();
+            }
+            pendingStates.clear();
+            remainingDependencies.clear();
+            dependents.clear();
+        }
+        executor.stop();
+    }
+
+    /**
+     * The calculation of the state of a task, which is only started if the task has not claimed it by starting to execute first.
+     */
+    private static class PendingState extends FutureTask<CalculatedState> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingState(Callable<CalculatedState> calculation) {
+            super(calculation);
+        }
+
+        /**
+         * Returns true when the calculation has not been started and never will be.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (claim()) {
+                super.run();
+            }
+        }
+    }
+
+    public static class CalculatedState {
+        private final TaskProperties taskProperties;
+        private final TaskArtifactState taskArtifactState;
+        private final long outputChanges;
+
+        CalculatedState(TaskProperties taskProperties, TaskArtifactState taskArtifactState, long outputChanges) {
+            this.taskProperties = taskProperties;
+            this.taskArtifactState = taskArtifactState;
+            this.outputChanges = outputChanges;
+        }
+
+        public TaskProperties getTaskProperties() {
+            return taskProperties;
+        }
+
+        public TaskArtifactState getTaskArtifactState() {
+            return taskArtifactState;
+        }
+    }
+}
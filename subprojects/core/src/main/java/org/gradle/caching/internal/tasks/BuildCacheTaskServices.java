@@ -21,7 +21,10 @@ import org.gradle.api.NonNullApi;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.FileSystemMirror;
+import org.gradle.api.internal.tasks.execution.TaskOutputChangesListener;
+import org.gradle.api.internal.tasks.properties.PropertyWalker;
 import org.gradle.api.logging.configuration.ShowStacktrace;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.internal.controller.BuildCacheController;
@@ -31,7 +34,11 @@ import org.gradle.caching.internal.controller.BuildCacheControllerFactory.Remote
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.initialization.buildsrc.BuildSourceBuilder;
+import org.gradle.internal.Factory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.file.PathToFileResolver;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -44,6 +51,7 @@ import org.gradle.util.GradleVersion;
 import org.gradle.util.Path;
 
 import java.io.File;
+import java.util.zip.Deflater;
 
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode.DISABLED;
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode.ENABLED;
@@ -54,9 +62,35 @@ import static org.gradle.caching.internal.controller.BuildCacheControllerFactory
 public class BuildCacheTaskServices {
 
     private static final Path ROOT_BUILD_SRC_PATH = Path.path(":" + BuildSourceBuilder.BUILD_SRC);
+    private static final String COMPRESSION_THREADS_PROPERTY = "org.gradle.internal.build-cache.compression-threads";
+    private static final String COMPRESSION_LEVEL_PROPERTY = "org.gradle.internal.build-cache.compression-level";
+    private static final String STORED_ENTRIES_PROPERTY = "org.gradle.internal.build-cache.stored-entries";
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner));
+    BuildCacheEntryCompressionExecutor createBuildCacheEntryCompressionExecutor(ExecutorFactory executorFactory) {
+        return new BuildCacheEntryCompressionExecutor(executorFactory, Integer.getInteger(COMPRESSION_THREADS_PROPERTY, 1));
+    }
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, BuildCacheEntryCompressionExecutor compressionExecutor, final BuildCacheController buildCacheController) {
+        final boolean storedEntries = Boolean.getBoolean(STORED_ENTRIES_PROPERTY);
+        // The stored format trusts the file hashes recorded in the entry, so it is only used for entries that no other machine writes
+        Factory<Boolean> packStored = new Factory<Boolean>() {
+            @Override
+            public Boolean create() {
+                return storedEntries && buildCacheController.isStoringToLocalCacheOnly();
+            }
+        };
+        return new StoredTaskOutputPacker(compressingPacker(fileSystem, fileHasher, stringInterner, compressionExecutor), packStored, fileSystem, stringInterner);
+    }
+
+    private static TaskOutputPacker compressingPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, BuildCacheEntryCompressionExecutor compressionExecutor) {
+        TarTaskOutputPacker tarPacker = new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner);
+        // Compressing on multiple threads produces different, although equivalent, entry bytes, so it is only used when requested
+        int compressionThreads = compressionExecutor.getThreads();
+        if (compressionThreads <= 1) {
+            return new GZipTaskOutputPacker(tarPacker);
+        }
+        int compressionLevel = Integer.getInteger(COMPRESSION_LEVEL_PROPERTY, Deflater.DEFAULT_COMPRESSION);
+        return new ParallelGZipTaskOutputPacker(tarPacker, compressionExecutor.getExecutor(), compressionLevel, 2 * compressionThreads);
     }
 
     TaskOutputOriginFactory createTaskOutputOriginFactory(
@@ -78,6 +112,25 @@ public class BuildCacheTaskServices {
         return new TaskOutputCacheCommandFactory(taskOutputPacker, taskOutputOriginFactory, fileSystemMirror, stringInterner);
     }
 
+    BuildCacheEntryPrefetcher createBuildCacheEntryPrefetcher(
+        BuildCacheController buildCacheController,
+        TaskArtifactStateRepository taskArtifactStateRepository,
+        PropertyWalker propertyWalker,
+        PathToFileResolver resolver,
+        ListenerManager listenerManager,
+        ExecutorFactory executorFactory
+    ) {
+        final BuildCacheEntryPrefetcher prefetcher = new BuildCacheEntryPrefetcher(buildCacheController, taskArtifactStateRepository, propertyWalker, resolver, executorFactory);
+        // The prefetcher only follows the task graph when prefetching is enabled, see GradleScopeServices
+        listenerManager.addListener(new TaskOutputChangesListener() {
+            @Override
+            public void beforeTaskOutputChanged() {
+                prefetcher.beforeTaskOutputChanged();
+            }
+        });
+        return prefetcher;
+    }
+
     BuildCacheController createBuildCacheController(
         ServiceRegistry serviceRegistry,
         BuildCacheConfigurationInternal buildCacheConfiguration,
@@ -129,7 +182,8 @@ public class BuildCacheTaskServices {
             remoteAccessMode,
             logStackTraces,
             emitDebugLogging,
-            instantiatorFactory.inject(serviceRegistry)
+            instantiatorFactory.inject(serviceRegistry),
+            serviceRegistry.get(ExecutorFactory.class)
         );
     }
 
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.internal.UncheckedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes data in gzip format, deflating fixed-size blocks of the data concurrently.
+ *
+ * <p>Each block is deflated independently, using the end of the previous block as the preset dictionary, and ends with a sync flush so that
+ * the compressed blocks can be concatenated into a single deflate stream. The result is a regular gzip stream that can be read
+ * with {@link java.util.zip.GZIPInputStream}. The number of blocks being deflated at any time is bounded, which bounds the memory used for
+ * large outputs.</p>
+ */
+class ParallelGZipOutputStream extends OutputStream {
+    static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER = {
+        (byte) 0x1f, (byte) 0x8b, // Magic
+        Deflater.DEFLATED, // Compression method
+        0, // Flags
+        0, 0, 0, 0, // Modification time
+        0, // Extra flags
+        0 // Operating system
+    };
+
+    private final OutputStream output;
+    private final ExecutorService executor;
+    private final int compressionLevel;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final LinkedList<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+    private final CRC32 crc = new CRC32();
+    private long totalLength;
+    private byte[] buffer;
+    private int count;
+    private byte[] previousBlock;
+    private int previousBlockLength;
+    private boolean headerWritten;
+    private boolean closed;
+
+    ParallelGZipOutputStream(OutputStream output, ExecutorService executor, int compressionLevel, int blockSize, int maxPendingBlocks) {
+        this.output = output;
+        this.executor = executor;
+        this.compressionLevel = compressionLevel;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.buffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int chunk = Math.min(length, blockSize - count);
+            System.arraycopy(bytes, offset, buffer, count, chunk);
+            count += chunk;
+            offset += chunk;
+            length -= chunk;
+            if (count == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeOldestBlock();
+            }
+            writeTrailer();
+        } finally {
+            for (Future<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(false);
+            }
+            output.close();
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeOldestBlock();
+        }
+        final byte[] block = buffer;
+        final int length = count;
+        final byte[] dictionary = previousBlock;
+        final int dictionaryLength = Math.min(previousBlockLength, DICTIONARY_SIZE);
+        final int dictionaryOffset = previousBlockLength - dictionaryLength;
+        crc.update(block, 0, length);
+        totalLength += length;
+        pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return deflate(block, length, dictionary, dictionaryOffset, dictionaryLength, last, compressionLevel);
+            }
+        }));
+        previousBlock = block;
+        previousBlockLength = length;
+        buffer = new byte[blockSize];
+        count = 0;
+    }
+
+    private void writeOldestBlock() throws IOException {
+        Future<byte[]> oldest = pendingBlocks.removeFirst();
+        byte[] compressed;
+        try {
+            compressed = oldest.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        if (!headerWritten) {
+            output.write(HEADER);
+            headerWritten = true;
+        }
+        output.write(compressed);
+    }
+
+    private void writeTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        writeIntLittleEndian(trailer, 0, (int) crc.getValue());
+        writeIntLittleEndian(trailer, 4, (int) totalLength);
+        output.write(trailer);
+    }
+
+    static byte[] deflate(byte[] block, int length, byte[] dictionary, int dictionaryOffset, int dictionaryLength, boolean last, int compressionLevel) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (dictionary != null && dictionaryLength > 0) {
+                deflater.setDictionary(dictionary, dictionaryOffset, dictionaryLength);
+            }
+            deflater.setInput(block, 0, length);
+            byte[] chunk = new byte[Math.max(512, length / 4)];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int chunkLength = deflater.deflate(chunk);
+                    compressed.write(chunk, 0, chunkLength);
+                }
+            } else {
+                int chunkLength;
+                do {
+                    chunkLength = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                    compressed.write(chunk, 0, chunkLength);
+                } while (chunkLength == chunk.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeIntLittleEndian(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+}
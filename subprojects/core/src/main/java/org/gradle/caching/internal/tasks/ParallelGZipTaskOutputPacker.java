@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Adds compression and CRC32 checks to the packed task output, compressing blocks of the output concurrently.
+ *
+ * <p>Produces the same format as {@link GZipTaskOutputPacker}, so entries packed by either can be unpacked by either. The compressed bytes differ from those
+ * produced by {@link GZipTaskOutputPacker} for the same output, as each block ends with a sync flush.</p>
+ */
+public class ParallelGZipTaskOutputPacker implements TaskOutputPacker {
+    private final TaskOutputPacker delegate;
+    private final ExecutorService executor;
+    private final int compressionLevel;
+    private final int maxPendingBlocks;
+    private final GZipTaskOutputPacker unpacker;
+
+    /**
+     * @param executor The executor to compress blocks with.
+     * @param compressionLevel The deflate compression level, see {@link java.util.zip.Deflater}.
+     * @param maxPendingBlocks The maximum number of blocks of a single entry being compressed at any time.
+     */
+    public ParallelGZipTaskOutputPacker(TaskOutputPacker delegate, ExecutorService executor, int compressionLevel, int maxPendingBlocks) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.compressionLevel = compressionLevel;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.unpacker = new GZipTaskOutputPacker(delegate);
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputFiles, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        ParallelGZipOutputStream gzipOutput = new ParallelGZipOutputStream(output, executor, compressionLevel, ParallelGZipOutputStream.DEFAULT_BLOCK_SIZE, maxPendingBlocks);
+        PackResult result;
+        try {
+            result = delegate.pack(propertySpecs, outputFiles, gzipOutput, writeOrigin);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(gzipOutput);
+            throw e;
+        } catch (RuntimeException e) {
+            IOUtils.closeQuietly(gzipOutput);
+            throw e;
+        }
+        // Unlike GZIPOutputStream, the last blocks are only compressed on close, so failures must not be swallowed here
+        gzipOutput.close();
+        return result;
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        return unpacker.unpack(propertySpecs, input, readOrigin);
+    }
+}
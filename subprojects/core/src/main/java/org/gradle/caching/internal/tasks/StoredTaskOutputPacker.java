@@ -0,0 +1,414 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.zip.UnixStat;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.DirectoryFileSnapshot;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot;
+import org.gradle.api.internal.changedetection.state.FileSnapshot;
+import org.gradle.api.internal.changedetection.state.RegularFileSnapshot;
+import org.gradle.api.internal.tasks.OriginTaskExecutionMetadata;
+import org.gradle.api.internal.tasks.OutputType;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.ensureDirectoryForProperty;
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.makeDirectory;
+
+/**
+ * Packages task output without compression, recording the content hash of every file in the header of the entry. The header is followed by its checksum.
+ *
+ * <p>When the entry is read from a file, the contents of the output files are transferred directly from the entry to the output files,
+ * without copying them through the heap, and the snapshots of the output files are created from the recorded hashes, without hashing
+ * the unpacked files again. The recorded hashes are only checked against the checksum of the header, and the size of the entry against
+ * the recorded file lengths. Entries in this format are only stored in the local directory build cache, which only this machine writes to.</p>
+ *
+ * <p>Entries packed by the delegate, such as compressed entries, are recognized and unpacked by the delegate, so that the format can be
+ * changed without invalidating existing cache entries.</p>
+ */
+@SuppressWarnings("Since15")
+public class StoredTaskOutputPacker implements TaskOutputPacker {
+    private static final byte[] MAGIC = {'G', 'R', 'A', 'D', 'L', 'E', 'S', '2'};
+    private static final byte MISSING_PROPERTY = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte FILE = 2;
+    @SuppressWarnings("OctalInteger")
+    private static final int FILE_PERMISSION_MASK = 0777;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TaskOutputPacker delegate;
+    private final Factory<Boolean> packStored;
+    private final FileSystem fileSystem;
+    private final StringInterner stringInterner;
+
+    /**
+     * @param delegate The packer to unpack entries in other formats with, and to pack entries with when {@code packStored} returns false.
+     * @param packStored Whether to pack an entry in the stored format, checked for each entry.
+     */
+    public StoredTaskOutputPacker(TaskOutputPacker delegate, Factory<Boolean> packStored, FileSystem fileSystem, StringInterner stringInterner) {
+        this.delegate = delegate;
+        this.packStored = packStored;
+        this.fileSystem = fileSystem;
+        this.stringInterner = stringInterner;
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        if (!packStored.create()) {
+            return delegate.pack(propertySpecs, outputSnapshots, output, writeOrigin);
+        }
+
+        List<Entry> entries = Lists.newArrayList();
+        for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+            String propertyName = propertySpec.getPropertyName();
+            try {
+                collectEntries(propertySpec, outputSnapshots.get(propertyName), entries);
+            } catch (Exception ex) {
+                throw new GradleException(String.format("Could not pack property '%s': %s", propertyName, ex.getMessage()), ex);
+            }
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOutput = new DataOutputStream(header);
+        ByteArrayOutputStream origin = new ByteArrayOutputStream();
+        writeOrigin.execute(origin);
+        headerOutput.writeInt(origin.size());
+        origin.writeTo(headerOutput);
+        headerOutput.writeInt(entries.size());
+        for (Entry entry : entries) {
+            entry.write(headerOutput);
+        }
+        headerOutput.flush();
+
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        try {
+            dataOutput.write(MAGIC);
+            dataOutput.writeInt(header.size());
+            header.writeTo(dataOutput);
+            dataOutput.write(checksum(header.toByteArray()));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (Entry entry : entries) {
+                if (entry.kind == FILE) {
+                    copyFile(entry, dataOutput, buffer);
+                }
+            }
+            dataOutput.flush();
+        } finally {
+            IOUtils.closeQuietly(dataOutput);
+        }
+        return new PackResult(entries.size() + 1);
+    }
+
+    private void collectEntries(ResolvedTaskOutputFilePropertySpec propertySpec, Map<String, FileContentSnapshot> outputSnapshots, List<Entry> entries) throws IOException {
+        String propertyName = propertySpec.getPropertyName();
+        File root = propertySpec.getOutputFile();
+        if (root == null) {
+            return;
+        }
+        if (outputSnapshots.isEmpty()) {
+            entries.add(new Entry(MISSING_PROPERTY, propertyName, "", root, 0, 0, null));
+            return;
+        }
+        switch (propertySpec.getOutputType()) {
+            case DIRECTORY:
+                if (!root.isDirectory()) {
+                    throw new IllegalArgumentException(String.format("Expected '%s' to be a directory", root));
+                }
+                entries.add(new Entry(DIRECTORY, propertyName, "", root, UnixStat.DEFAULT_DIR_PERM, 0, null));
+                String rootAbsolutePath = root.getAbsolutePath();
+                Path rootPath = root.toPath();
+                for (Map.Entry<String, FileContentSnapshot> snapshot : outputSnapshots.entrySet()) {
+                    String absolutePath = snapshot.getKey();
+                    if (absolutePath.equals(rootAbsolutePath)) {
+                        continue;
+                    }
+                    File file = new File(absolutePath);
+                    // Always use '/' as the separator, so that the entry can be unpacked on any platform
+                    String relativePath = rootPath.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+                    FileContentSnapshot content = snapshot.getValue();
+                    switch (content.getType()) {
+                        case RegularFile:
+                            entries.add(new Entry(FILE, propertyName, relativePath, file, fileSystem.getUnixMode(file), file.length(), content.getContentMd5()));
+                            break;
+                        case Directory:
+                            entries.add(new Entry(DIRECTORY, propertyName, relativePath, file, fileSystem.getUnixMode(file), 0, null));
+                            break;
+                        case Missing:
+                            throw new IllegalStateException("File should not be missing: " + file);
+                        default:
+                            throw new AssertionError();
+                    }
+                }
+                break;
+            case FILE:
+                if (!root.isFile()) {
+                    throw new IllegalArgumentException(String.format("Expected '%s' to be a file", root));
+                }
+                FileContentSnapshot content = Iterables.getOnlyElement(outputSnapshots.values());
+                entries.add(new Entry(FILE, propertyName, "", root, fileSystem.getUnixMode(root), root.length(), content.getContentMd5()));
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static void copyFile(Entry entry, OutputStream output, byte[] buffer) throws IOException {
+        FileInputStream input = new FileInputStream(entry.file);
+        try {
+            long copied = IOUtils.copyLarge(input, output, 0, entry.length, buffer);
+            if (copied != entry.length || input.read() != -1) {
+                throw new IOException(String.format("File '%s' changed while packing", entry.file));
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private static byte[] checksum(byte[] header) {
+        return Hashing.md5().hashBytes(header).toByteArray();
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        if (input instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) input).getChannel();
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            readFully(channel, magic, 0);
+            if (!Arrays.equals(magic.array(), MAGIC)) {
+                return delegate.unpack(propertySpecs, input, readOrigin);
+            }
+            try {
+                channel.position(MAGIC.length);
+                return unpackStored(propertySpecs, new DataInputStream(input), channel, readOrigin);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        bufferedInput.mark(MAGIC.length);
+        byte[] magic = new byte[MAGIC.length];
+        int read = IOUtils.read(bufferedInput, magic);
+        bufferedInput.reset();
+        if (read != MAGIC.length || !Arrays.equals(magic, MAGIC)) {
+            return delegate.unpack(propertySpecs, bufferedInput, readOrigin);
+        }
+        try {
+            IOUtils.skipFully(bufferedInput, MAGIC.length);
+            return unpackStored(propertySpecs, new DataInputStream(bufferedInput), null, readOrigin);
+        } finally {
+            IOUtils.closeQuietly(bufferedInput);
+        }
+    }
+
+    /**
+     * @param channel The channel to transfer the file contents from, or null to read them from the input stream.
+     */
+    private UnpackResult unpackStored(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, DataInputStream input, FileChannel channel, TaskOutputOriginReader readOrigin) throws IOException {
+        Map<String, ResolvedTaskOutputFilePropertySpec> propertySpecsMap = Maps.uniqueIndex(propertySpecs, new Function<TaskFilePropertySpec, String>() {
+            @Override
+            public String apply(TaskFilePropertySpec propertySpec) {
+                return propertySpec.getPropertyName();
+            }
+        });
+
+        // Read the whole header up front, so that the file contents can be transferred from the channel afterwards
+        int headerLength = input.readInt();
+        if (headerLength < 0 || (channel != null && headerLength > channel.size())) {
+            throw new IllegalStateException("Cached result format error, invalid header length: " + headerLength);
+        }
+        byte[] header = new byte[headerLength];
+        input.readFully(header);
+        byte[] expectedChecksum = checksum(header);
+        byte[] checksum = new byte[expectedChecksum.length];
+        input.readFully(checksum);
+        if (!Arrays.equals(checksum, expectedChecksum)) {
+            throw new IllegalStateException("Cached result format error, the header of the entry does not match its checksum.");
+        }
+        DataInputStream headerInput = new DataInputStream(new ByteArrayInputStream(header));
+        byte[] origin = new byte[headerInput.readInt()];
+        headerInput.readFully(origin);
+        OriginTaskExecutionMetadata originMetadata = readOrigin.execute(new ByteArrayInputStream(origin));
+
+        long position = MAGIC.length + 4 + headerLength + checksum.length;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ImmutableListMultimap.Builder<String, FileSnapshot> propertyFileSnapshots = ImmutableListMultimap.builder();
+        int entryCount = headerInput.readInt();
+        for (int i = 0; i < entryCount; i++) {
+            byte kind = headerInput.readByte();
+            String propertyName = headerInput.readUTF();
+            String childPath = headerInput.readUTF();
+            int mode = headerInput.readInt();
+            long length = 0;
+            HashCode hash = null;
+            if (kind == FILE) {
+                length = headerInput.readLong();
+                byte[] hashBytes = new byte[headerInput.readUnsignedByte()];
+                headerInput.readFully(hashBytes);
+                hash = HashCode.fromBytes(hashBytes);
+            }
+
+            ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
+            if (propertySpec == null) {
+                throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+            }
+            File propertyRoot = propertySpec.getOutputFile();
+            if (propertyRoot == null) {
+                throw new IllegalStateException("Optional property should have a value: " + propertyName);
+            }
+
+            boolean root = childPath.isEmpty();
+            File outputFile;
+            if (root) {
+                if (kind == MISSING_PROPERTY) {
+                    if (!makeDirectory(propertyRoot.getParentFile())) {
+                        // Make sure output is removed if it exists already
+                        if (propertyRoot.exists()) {
+                            FileUtils.forceDelete(propertyRoot);
+                        }
+                    }
+                    continue;
+                }
+                OutputType outputType = propertySpec.getOutputType();
+                if ((kind == DIRECTORY) != (outputType == OutputType.DIRECTORY)) {
+                    throw new IllegalStateException(String.format("Property should be an output %s property: %s", kind == DIRECTORY ? "directory" : "file", propertyName));
+                }
+                ensureDirectoryForProperty(outputType, propertyRoot);
+                outputFile = propertyRoot;
+            } else {
+                outputFile = new File(propertyRoot, childPath);
+            }
+
+            String internedPath = stringInterner.intern(outputFile.getAbsolutePath());
+            RelativePath relativePath = root ? RelativePath.parse(kind == FILE, outputFile.getName()) : RelativePath.parse(kind == FILE, childPath);
+            if (kind == DIRECTORY) {
+                FileUtils.forceMkdir(outputFile);
+                propertyFileSnapshots.put(propertyName, new DirectoryFileSnapshot(internedPath, relativePath, root));
+            } else if (kind == FILE) {
+                FileOutputStream output = new FileOutputStream(outputFile);
+                try {
+                    if (channel != null) {
+                        transfer(channel, position, length, output.getChannel());
+                    } else if (IOUtils.copyLarge(input, output, 0, length, buffer) != length) {
+                        throw new EOFException("Cached result format error, unexpected end of entry");
+                    }
+                } finally {
+                    IOUtils.closeQuietly(output);
+                }
+                position += length;
+                propertyFileSnapshots.put(propertyName, new RegularFileSnapshot(internedPath, relativePath, root, new FileHashSnapshot(hash, outputFile.lastModified(), length)));
+            } else {
+                throw new IllegalStateException("Cached result format error, invalid entry type: " + kind);
+            }
+            fileSystem.chmod(outputFile, mode & FILE_PERMISSION_MASK);
+        }
+        if (channel != null ? channel.size() != position : input.read() != -1) {
+            throw new IllegalStateException("Cached result format error, unexpected size of entry.");
+        }
+
+        return new UnpackResult(originMetadata, entryCount + 1, propertyFileSnapshots.build());
+    }
+
+    private static void transfer(FileChannel source, long position, long length, FileChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = source.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0) {
+                throw new EOFException("Cached result format error, unexpected end of entry");
+            }
+            transferred += count;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static class Entry {
+        private final byte kind;
+        private final String propertyName;
+        private final String childPath;
+        private final File file;
+        private final int mode;
+        private final long length;
+        private final HashCode hash;
+
+        private Entry(byte kind, String propertyName, String childPath, File file, int mode, long length, HashCode hash) {
+            this.kind = kind;
+            this.propertyName = propertyName;
+            this.childPath = childPath;
+            this.file = file;
+            this.mode = mode;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        private void write(DataOutputStream output) throws IOException {
+            output.writeByte(kind);
+            output.writeUTF(propertyName);
+            output.writeUTF(childPath);
+            output.writeInt(mode);
+            if (kind == FILE) {
+                output.writeLong(length);
+                byte[] hashBytes = hash.toByteArray();
+                output.writeByte(hashBytes.length);
+                output.write(hashBytes);
+            }
+        }
+    }
+}
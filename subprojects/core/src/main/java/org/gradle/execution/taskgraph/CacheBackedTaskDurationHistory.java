@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.util.Path;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the durations of task executions alongside the task history. The expected duration of a task is an exponentially weighted average
+ * of its durations, so that a single unusually slow or fast execution does not change the schedule much.
+ *
+ * The durations recorded during a build are kept in memory and written to the cache when the build finishes, so that completing a task does not wait for the cache.
+ */
+public class CacheBackedTaskDurationHistory implements TaskDurationHistory, Stoppable {
+    // The weight of the latest duration, in percent
+    private static final int LATEST_DURATION_WEIGHT = 30;
+
+    private final PersistentIndexedCache<String, Long> durations;
+    private final Map<String, Long> recordedDurations = new ConcurrentHashMap<String, Long>();
+
+    public CacheBackedTaskDurationHistory(TaskHistoryStore store) {
+        this.durations = store.createCache("taskDurations", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, false);
+    }
+
+    @Nullable
+    @Override
+    public Long getExpectedDuration(Path taskIdentityPath) {
+        return durations.get(taskIdentityPath.getPath());
+    }
+
+    @Override
+    public void recordDuration(Path taskIdentityPath, long durationMillis) {
+        recordedDurations.put(taskIdentityPath.getPath(), durationMillis);
+    }
+
+    /**
+     * Writes the durations recorded during this build to the cache.
+     */
+    @Override
+    public void stop() {
+        for (Map.Entry<String, Long> entry : recordedDurations.entrySet()) {
+            String key = entry.getKey();
+            long durationMillis = entry.getValue();
+            Long previous = durations.get(key);
+            long expected = previous == null ? durationMillis : (LATEST_DURATION_WEIGHT * durationMillis + (100 - LATEST_DURATION_WEIGHT) * previous) / 100;
+            durations.put(key, expected);
+        }
+        recordedDurations.clear();
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.gradle.api.BuildCancelledException;
 import org.gradle.api.CircularReferenceException;
@@ -52,6 +53,8 @@ import org.gradle.internal.resources.ResourceDeadlockException;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
@@ -65,6 +68,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -102,12 +106,22 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final TaskDurationHistory durationHistory;
+    private final Map<TaskInfo, Timer> executionTimers = Maps.newIdentityHashMap();
 
     private boolean tasksCancelled;
 
     public DefaultTaskExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, IncludedBuildTaskGraph taskGraph) {
+        this(workerLeaseService, gradle, taskGraph, null);
+    }
+
+    /**
+     * @param durationHistory The durations of previous task executions, used to schedule the tasks on the longest remaining path first. When null, tasks are scheduled in the order of the execution plan.
+     */
+    public DefaultTaskExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, IncludedBuildTaskGraph taskGraph, @Nullable TaskDurationHistory durationHistory) {
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
+        this.durationHistory = durationHistory;
         nodeFactory = new TaskInfoFactory(gradle, taskGraph);
         dependencyResolver = new TaskDependencyResolver(nodeFactory);
     }
@@ -270,6 +284,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         Deque<GraphEdge> walkedShouldRunAfterEdges = new ArrayDeque<GraphEdge>();
         Deque<TaskInfo> path = new ArrayDeque<TaskInfo>();
         HashMap<TaskInfo, Integer> planBeforeVisiting = new HashMap<TaskInfo, Integer>();
+        Map<TaskInfo, Integer> planSegments = Maps.newIdentityHashMap();
 
         while (!nodeQueue.isEmpty()) {
             TaskInfoInVisitingSegment taskInfoInVisitingSegment = nodeQueue.get(0);
@@ -318,6 +333,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 visitingNodes.remove(taskNode, currentSegment);
                 path.pop();
                 executionPlan.put(taskNode.getTask(), taskNode);
+                planSegments.put(taskNode, currentSegment);
                 Project project = taskNode.getTask().getProject();
                 projectLocks.put(project, getOrCreateProjectLock(project));
 
@@ -339,8 +355,77 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
         }
         executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        if (durationHistory != null) {
+            executionQueue.addAll(orderByLongestRemainingPath(executionPlan.values(), planSegments));
+        } else {
+            executionQueue.addAll(executionPlan.values());
+        }
+    }
+
+    /**
+     * Orders the tasks by the expected duration of the longest path from the task to the end of the build, longest first, so that
+     * long chains of tasks start as early as possible.
+     *
+     * <p>Only tasks planned for the same entry task, next to each other in the plan, are reordered, so that the order of the entry tasks
+     * requested by the user is kept. Within such a run, a task that has to run before another one, because of a dependency, a finalizer or
+     * a must or should run after constraint, always has a longer remaining path than that task. The order of the plan is kept for tasks with
+     * equal paths.</p>
+     */
+    private List<TaskInfo> orderByLongestRemainingPath(Collection<TaskInfo> plan, Map<TaskInfo, Integer> planSegments) {
+        List<TaskInfo> tasks = Lists.newArrayList(plan);
+        Map<TaskInfo, Long> durations = Maps.newIdentityHashMap();
+        long knownDurations = 0;
+        int knownCount = 0;
+        for (TaskInfo taskInfo : tasks) {
+            Long duration = durationHistory.getExpectedDuration(taskInfo.getIdentityPath());
+            if (duration != null) {
+                // Every task takes some time, so that a task always has a longer path than the tasks that run after it
+                duration = Math.max(1, duration);
+                durations.put(taskInfo, duration);
+                knownDurations += duration;
+                knownCount++;
+            }
+        }
+        // Assume tasks that have not been executed before take an average amount of time
+        long defaultDuration = knownCount == 0 ? 1 : Math.max(1, knownDurations / knownCount);
+
+        // The tasks that have to run after each task, other than its dependents and finalizers
+        Multimap<TaskInfo, TaskInfo> orderedAfter = HashMultimap.create();
+        for (TaskInfo taskInfo : tasks) {
+            for (TaskInfo predecessor : Iterables.concat(taskInfo.getMustSuccessors(), taskInfo.getShouldSuccessors())) {
+                orderedAfter.put(predecessor, taskInfo);
+            }
+        }
 
+        // Tasks are planned after the tasks that have to run before them, so those that have to run after a task are visited first here
+        final Map<TaskInfo, Long> remainingPaths = Maps.newIdentityHashMap();
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = tasks.get(i);
+            long longestSuccessorPath = 0;
+            for (TaskInfo successor : Iterables.concat(taskInfo.getDependencyPredecessors(), taskInfo.getFinalizers(), orderedAfter.get(taskInfo))) {
+                Long successorPath = remainingPaths.get(successor);
+                if (successorPath != null) {
+                    longestSuccessorPath = Math.max(longestSuccessorPath, successorPath);
+                }
+            }
+            Long duration = durations.get(taskInfo);
+            remainingPaths.put(taskInfo, (duration != null ? duration : defaultDuration) + longestSuccessorPath);
+        }
+
+        Comparator<TaskInfo> longestPathFirst = new Comparator<TaskInfo>() {
+            @Override
+            public int compare(TaskInfo left, TaskInfo right) {
+                return remainingPaths.get(right).compareTo(remainingPaths.get(left));
+            }
+        };
+        int runStart = 0;
+        for (int i = 1; i <= tasks.size(); i++) {
+            if (i == tasks.size() || !planSegments.get(tasks.get(i)).equals(planSegments.get(tasks.get(runStart)))) {
+                Collections.sort(tasks.subList(runStart, i), longestPathFirst);
+                runStart = i;
+            }
+        }
+        return tasks;
     }
 
     @Override
@@ -522,6 +607,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         reachableCache.clear();
         dependenciesCompleteCache.clear();
         runningTasks.clear();
+        executionTimers.clear();
     }
 
     @Override
@@ -565,6 +651,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 if (taskInfo.allDependenciesSuccessful()) {
                     recordTaskStarted(taskInfo);
                     taskInfo.startExecution();
+                    if (durationHistory != null) {
+                        executionTimers.put(taskInfo, Time.startTimer());
+                    }
                 } else {
                     taskInfo.skipExecution();
                 }
@@ -813,6 +902,13 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
+    private void recordTaskDuration(TaskInfo taskInfo) {
+        Timer timer = executionTimers.remove(taskInfo);
+        if (timer != null && taskInfo.isSuccessful()) {
+            durationHistory.recordDuration(taskInfo.getIdentityPath(), timer.getElapsedMillis());
+        }
+    }
+
     private static boolean canRemoveTaskMutation(@Nullable TaskMutationInfo taskMutationInfo) {
         return taskMutationInfo != null && taskMutationInfo.task.isComplete() && taskMutationInfo.consumingTasks.isEmpty();
     }
@@ -828,6 +924,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                recordTaskDuration(taskInfo);
             }
         } finally {
             getProjectLock(taskInfo).unlock();
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.util.Path;
+
+import javax.annotation.Nullable;
+
+/**
+ * The durations of previous executions of tasks, used to schedule the tasks on the longest remaining path of the task graph first.
+ */
+public interface TaskDurationHistory {
+    /**
+     * Returns the expected duration in milliseconds of the given task, averaged over its previous executions, or null when the task has not been executed before.
+     */
+    @Nullable
+    Long getExpectedDuration(Path taskIdentityPath);
+
+    /**
+     * Records the duration of an execution of the given task. Called while holding the lock of the execution plan, so should not block.
+     */
+    void recordDuration(Path taskIdentityPath, long durationMillis);
+}
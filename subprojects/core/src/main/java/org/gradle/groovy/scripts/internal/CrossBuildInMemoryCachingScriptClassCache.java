@@ -19,19 +19,68 @@ import groovy.lang.Script;
 import org.codehaus.groovy.ast.ClassNode;
 import org.gradle.api.Action;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderId;
-import org.gradle.cache.internal.CrossBuildInMemoryCache;
-import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.initialization.SessionLifecycleListener;
 import org.gradle.internal.Cast;
 import org.gradle.internal.hash.HashCode;
 
-public class CrossBuildInMemoryCachingScriptClassCache {
-    private final CrossBuildInMemoryCache<ScriptCacheKey, CachedCompiledScript> cachedCompiledScripts;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.SoftReference;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches compiled scripts, and so their script class loaders, across the builds run by a process.
+ *
+ * <p>Scripts used during the current or the previous session are strongly referenced, all other scripts only by soft references. At the end of each session,
+ * the least recently used scripts that were not used by the session are discarded while the cache holds more than the maximum number of scripts.</p>
+ *
+ * <p>In addition, when the memory used for class metadata or the old generation of the heap is above the given percentage of its maximum, the least recently used
+ * half of the scripts not used by the session are discarded. The memory of a discarded script is only released once its class loader has been garbage collected,
+ * so the usage is checked again at the end of the next session rather than after each discarded script.</p>
+ */
+public class CrossBuildInMemoryCachingScriptClassCache implements SessionLifecycleListener {
+    public static final String MAX_CACHED_SCRIPTS_PROPERTY = "org.gradle.internal.script-cache.max-entries";
+    public static final String CLASS_METADATA_CEILING_PROPERTY = "org.gradle.internal.script-cache.class-metadata-ceiling-percent";
+    public static final String HEAP_CEILING_PROPERTY = "org.gradle.internal.script-cache.heap-ceiling-percent";
+    public static final int DEFAULT_MAX_CACHED_SCRIPTS = 2000;
+    public static final int DEFAULT_CLASS_METADATA_CEILING_PERCENT = 80;
+    public static final int DEFAULT_HEAP_CEILING_PERCENT = 80;
+
+    private static final Logger LOGGER = Logging.getLogger(CrossBuildInMemoryCachingScriptClassCache.class);
+
+    private final Object lock = new Object();
+    // Iterates from the least recently used script
+    private final Map<ScriptCacheKey, CachedCompiledScript> cachedCompiledScripts = new LinkedHashMap<ScriptCacheKey, CachedCompiledScript>(16, 0.75f, true);
+    // These are used only to retain strong references to the scripts
+    private final Set<CompiledScript<?, ?>> scriptsForThisSession = new HashSet<CompiledScript<?, ?>>();
+    private final Set<CompiledScript<?, ?>> scriptsForPreviousSession = new HashSet<CompiledScript<?, ?>>();
     private final ScriptSourceHasher hasher;
+    private final int maxCachedScripts;
+    private final int classMetadataCeilingPercent;
+    private final int heapCeilingPercent;
+    private long session;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CrossBuildInMemoryCachingScriptClassCache(ScriptSourceHasher hasher) {
+        this(hasher, DEFAULT_MAX_CACHED_SCRIPTS, DEFAULT_CLASS_METADATA_CEILING_PERCENT, DEFAULT_HEAP_CEILING_PERCENT);
+    }
 
-    public CrossBuildInMemoryCachingScriptClassCache(ScriptSourceHasher hasher, CrossBuildInMemoryCacheFactory cacheFactory) {
+    public CrossBuildInMemoryCachingScriptClassCache(ScriptSourceHasher hasher, int maxCachedScripts, int classMetadataCeilingPercent, int heapCeilingPercent) {
         this.hasher = hasher;
-        cachedCompiledScripts = cacheFactory.newCache();
+        this.maxCachedScripts = maxCachedScripts;
+        this.classMetadataCeilingPercent = classMetadataCeilingPercent;
+        this.heapCeilingPercent = heapCeilingPercent;
     }
 
     public <T extends Script, M> CompiledScript<T, M> getOrCompile(ScriptSource source, ClassLoader classLoader,
@@ -41,25 +90,130 @@ public class CrossBuildInMemoryCachingScriptClassCache {
                                                                    Action<? super ClassNode> verifier,
                                                                    ScriptClassCompiler delegate) {
         ScriptCacheKey key = new ScriptCacheKey(source.getClassName(), classLoader, operation.getId());
-        CachedCompiledScript cached = cachedCompiledScripts.get(key);
         HashCode hash = hasher.hash(source);
-        if (cached != null) {
-            if (hash.equals(cached.hash)) {
-                return Cast.uncheckedCast(cached.compiledScript);
+        synchronized (lock) {
+            CachedCompiledScript cached = cachedCompiledScripts.get(key);
+            if (cached != null && hash.equals(cached.hash)) {
+                CompiledScript<?, ?> compiledScript = cached.compiledScript.get();
+                if (compiledScript != null) {
+                    hits++;
+                    cached.lastUsedSession = session;
+                    scriptsForThisSession.add(compiledScript);
+                    return Cast.uncheckedCast(compiledScript);
+                }
             }
+            misses++;
         }
         CompiledScript<T, M> compiledScript = delegate.compile(source, classLoader, classLoaderId, operation, scriptBaseClass, verifier);
-        cachedCompiledScripts.put(key, new CachedCompiledScript(hash, compiledScript));
+        synchronized (lock) {
+            cachedCompiledScripts.put(key, new CachedCompiledScript(hash, compiledScript, session));
+            scriptsForThisSession.add(compiledScript);
+        }
         return compiledScript;
     }
 
+    @Override
+    public void afterStart() {
+    }
+
+    @Override
+    public void beforeComplete() {
+        synchronized (lock) {
+            int unused = 0;
+            Iterator<Map.Entry<ScriptCacheKey, CachedCompiledScript>> iterator = cachedCompiledScripts.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ScriptCacheKey, CachedCompiledScript> entry = iterator.next();
+                if (entry.getValue().compiledScript.get() == null || entry.getKey().isClassLoaderCollected()) {
+                    // Collected, or can no longer be matched because the parent class loader was collected
+                    iterator.remove();
+                } else if (entry.getValue().lastUsedSession != session) {
+                    unused++;
+                }
+            }
+
+            int toEvict = Math.min(unused, Math.max(0, cachedCompiledScripts.size() - maxCachedScripts));
+            if (unused > 0 && isMemoryAboveCeiling()) {
+                toEvict = Math.max(toEvict, (unused + 1) / 2);
+            }
+            int evicted = 0;
+            iterator = cachedCompiledScripts.entrySet().iterator();
+            while (evicted < toEvict && iterator.hasNext()) {
+                if (iterator.next().getValue().lastUsedSession != session) {
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+            evictions += evicted;
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Script class cache contains {} scripts after {} hits, {} misses and {} evictions ({} evicted by this session).",
+                    cachedCompiledScripts.size(), hits, misses, evictions, evicted);
+            }
+
+            // Retain strong references to the scripts used by this session
+            scriptsForPreviousSession.clear();
+            scriptsForPreviousSession.addAll(scriptsForThisSession);
+            scriptsForThisSession.clear();
+            session++;
+        }
+    }
+
+    long getHits() {
+        synchronized (lock) {
+            return hits;
+        }
+    }
+
+    long getMisses() {
+        synchronized (lock) {
+            return misses;
+        }
+    }
+
+    long getEvictions() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+
+    int size() {
+        synchronized (lock) {
+            return cachedCompiledScripts.size();
+        }
+    }
+
+    /**
+     * Checks the pools that hold class metadata, that is the metaspace or the permanent generation, and the old generation of the heap. For the old generation,
+     * the usage after the last collection is checked, as its current usage includes garbage. Pools without a maximum are ignored.
+     */
+    boolean isMemoryAboveCeiling() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.NON_HEAP && (name.contains("Metaspace") || name.contains("Perm Gen"))) {
+                if (isAboveCeiling(pool.getUsage(), classMetadataCeilingPercent)) {
+                    return true;
+                }
+            } else if (pool.getType() == MemoryType.HEAP && (name.contains("Old Gen") || name.contains("Tenured"))) {
+                if (isAboveCeiling(pool.getCollectionUsage(), heapCeilingPercent)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAboveCeiling(MemoryUsage usage, int ceilingPercent) {
+        return usage != null && usage.getMax() > 0 && usage.getUsed() * 100 > usage.getMax() * ceilingPercent;
+    }
+
     private static class CachedCompiledScript {
         private final HashCode hash;
-        private final CompiledScript<?, ?> compiledScript;
+        private final SoftReference<CompiledScript<?, ?>> compiledScript;
+        private long lastUsedSession;
 
-        private CachedCompiledScript(HashCode hash, CompiledScript<?, ?> compiledScript) {
+        private CachedCompiledScript(HashCode hash, CompiledScript<?, ?> compiledScript, long lastUsedSession) {
             this.hash = hash;
-            this.compiledScript = compiledScript;
+            this.compiledScript = new SoftReference<CompiledScript<?, ?>>(compiledScript);
+            this.lastUsedSession = lastUsedSession;
         }
     }
 
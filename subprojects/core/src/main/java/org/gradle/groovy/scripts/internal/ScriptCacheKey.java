@@ -21,11 +21,21 @@ public class ScriptCacheKey {
     private final String className;
     private final WeakReference<ClassLoader> classLoader;
     private final String dslId;
+    // Calculated up front, so that the key can still be located once the class loader has been collected
+    private final int hashCode;
 
     ScriptCacheKey(String className, ClassLoader classLoader, String dslId) {
         this.className = className;
         this.classLoader = new WeakReference<ClassLoader>(classLoader);
         this.dslId = dslId;
+        int result = className.hashCode();
+        result = 31 * result + classLoader.hashCode();
+        result = 31 * result + dslId.hashCode();
+        this.hashCode = result;
+    }
+
+    boolean isClassLoaderCollected() {
+        return classLoader.get() == null;
     }
 
     @Override
@@ -47,10 +57,6 @@ public class ScriptCacheKey {
 
     @Override
     public int hashCode() {
-        ClassLoader loader = this.classLoader.get();
-        int result = className.hashCode();
-        result = 31 * result + (loader != null ? loader.hashCode() : 1);
-        result = 31 * result + dslId.hashCode();
-        return result;
+        return hashCode;
     }
 }
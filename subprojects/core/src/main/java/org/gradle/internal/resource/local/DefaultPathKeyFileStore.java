@@ -24,6 +24,7 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.file.collections.MinimalFileTree;
 import org.gradle.api.internal.file.collections.SingleIncludePatternFileTree;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.hash.HashValue;
 import org.gradle.util.GFileUtils;
 import org.gradle.util.RelativePathUtil;
 
@@ -122,6 +123,11 @@ public class DefaultPathKeyFileStore implements PathKeyFileStore {
         }
     }
 
+    @Override
+    public LocallyAvailableResource move(String path, File source, HashValue sha1) {
+        return move(path, source);
+    }
+
     private LocallyAvailableResource doAdd(String path, Action<File> action) {
         File destination = getFile(path);
         doAdd(destination, action);
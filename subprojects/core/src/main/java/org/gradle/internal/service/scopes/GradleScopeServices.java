@@ -21,6 +21,7 @@ import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
 import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
+import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
 import org.gradle.api.internal.changedetection.state.WellKnownFileLocations;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.plugins.DefaultPluginManager;
@@ -36,11 +37,14 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.DefaultFileContentCacheFactory;
 import org.gradle.cache.internal.FileContentCacheFactory;
 import org.gradle.cache.internal.SplitFileContentCacheFactory;
+import org.gradle.caching.internal.tasks.BuildCacheEntryPrefetcher;
 import org.gradle.composite.internal.IncludedBuildTaskGraph;
 import org.gradle.configuration.ConfigurationTargetIdentifier;
 import org.gradle.execution.BuildConfigurationAction;
 import org.gradle.execution.BuildConfigurationActionExecuter;
 import org.gradle.execution.BuildExecuter;
+import org.gradle.execution.BuildExecutionAction;
+import org.gradle.execution.BuildExecutionContext;
 import org.gradle.execution.DefaultBuildConfigurationActionExecuter;
 import org.gradle.execution.DefaultBuildExecuter;
 import org.gradle.execution.DefaultTasksBuildExecutionAction;
@@ -53,6 +57,7 @@ import org.gradle.execution.TaskNameResolvingBuildConfigurationAction;
 import org.gradle.execution.TaskSelector;
 import org.gradle.execution.commandline.CommandLineTaskConfigurer;
 import org.gradle.execution.commandline.CommandLineTaskParser;
+import org.gradle.execution.taskgraph.CacheBackedTaskDurationHistory;
 import org.gradle.execution.taskgraph.DefaultTaskExecutionGraph;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.internal.Factory;
@@ -79,6 +84,7 @@ import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.work.WorkerLeaseService;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -89,6 +95,8 @@ import static java.util.Arrays.asList;
  */
 public class GradleScopeServices extends DefaultServiceRegistry {
 
+    private static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.internal.critical-path-scheduling";
+
     private final CompositeStoppable registries = new CompositeStoppable();
 
     public GradleScopeServices(final ServiceRegistry parent, final GradleInternal gradle) {
@@ -128,8 +136,20 @@ public class GradleScopeServices extends DefaultServiceRegistry {
     }
 
     BuildExecuter createBuildExecuter(StyledTextOutputFactory textOutputFactory) {
+        BuildExecutionAction prefetchBuildCacheEntries = new BuildExecutionAction() {
+            @Override
+            public void execute(BuildExecutionContext context, Collection<? super Throwable> taskFailures) {
+                if (BuildCacheEntryPrefetcher.isEnabled()) {
+                    BuildCacheEntryPrefetcher prefetcher = get(BuildCacheEntryPrefetcher.class);
+                    context.getGradle().getTaskGraph().addTaskExecutionGraphListener(prefetcher);
+                    context.getGradle().getTaskGraph().addTaskExecutionListener(prefetcher);
+                }
+                context.proceed();
+            }
+        };
         return new DefaultBuildExecuter(
             asList(new DryRunBuildExecutionAction(textOutputFactory),
+                prefetchBuildCacheEntries,
                 new SelectedTaskExecutionAction()));
     }
 
@@ -160,7 +180,13 @@ public class GradleScopeServices extends DefaultServiceRegistry {
                 return get(TaskExecuter.class);
             }
         };
-        return new DefaultTaskExecutionGraph(listenerManager, taskPlanExecutor, taskExecuterFactory, buildOperationExecutor, workerLeaseService, coordinationService, gradleInternal, includedBuildTaskGraph);
+        CacheBackedTaskDurationHistory durationHistory = null;
+        if (Boolean.getBoolean(CRITICAL_PATH_SCHEDULING_PROPERTY)) {
+            durationHistory = new CacheBackedTaskDurationHistory(get(TaskHistoryStore.class));
+            // Writes the recorded durations when the build finishes, before the task history store is closed
+            registries.add(durationHistory);
+        }
+        return new DefaultTaskExecutionGraph(listenerManager, taskPlanExecutor, taskExecuterFactory, buildOperationExecutor, workerLeaseService, coordinationService, gradleInternal, includedBuildTaskGraph, durationHistory);
     }
 
     ServiceRegistryFactory createServiceRegistryFactory(final ServiceRegistry services) {
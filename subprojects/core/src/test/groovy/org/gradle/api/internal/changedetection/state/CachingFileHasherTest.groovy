@@ -193,4 +193,83 @@ class CachingFileHasherTest extends Specification {
         }
         0 * _._
     }
+
+    def doesNotHashFileWhoseHashHasBeenRecorded() {
+        def stat = fileSystem.stat(file)
+        FileInfo recorded = null
+
+        when:
+        hasher.recordHash(file, hash)
+
+        then:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo -> recorded = fileInfo }
+        0 * _._
+
+        when:
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.get(file.absolutePath) >> recorded
+        0 * _._
+    }
+
+    def hashesFileWhoseHashHasBeenRecordedWhenLengthHasChanged() {
+        FileInfo recorded = null
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, _) >> true
+        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo -> recorded = fileInfo }
+        hasher.recordHash(file, oldHash)
+
+        when:
+        def lastModified = file.lastModified()
+        file.write("some-other-content")
+        file.setLastModified(lastModified)
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, _) >> true
+        1 * cache.get(file.absolutePath) >> recorded
+        1 * target.hash(file) >> hash
+        1 * cache.put(file.absolutePath, _)
+        0 * _._
+    }
+
+    def hashesFileWhoseHashHasBeenRecordedWhenTimestampHasChanged() {
+        FileInfo recorded = null
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, _) >> true
+        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo -> recorded = fileInfo }
+        hasher.recordHash(file, oldHash)
+
+        when:
+        file.setLastModified(file.lastModified() - 10000)
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, _) >> true
+        1 * cache.get(file.absolutePath) >> recorded
+        1 * target.hash(file) >> hash
+        1 * cache.put(file.absolutePath, _)
+        0 * _._
+    }
+
+    def doesNotRecordHashWhenTimestampCannotBeUsedToDetectChange() {
+        def stat = fileSystem.stat(file)
+
+        when:
+        hasher.recordHash(file, hash)
+
+        then:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> false
+        0 * _._
+    }
 }
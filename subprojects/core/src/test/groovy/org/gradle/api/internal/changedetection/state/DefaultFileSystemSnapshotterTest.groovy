@@ -250,6 +250,27 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         !snapshotter.exists(m)
     }
 
+    def "hashes files of a large directory tree concurrently in the same order as serially"() {
+        def d = tmpDir.createDir("d")
+        1500.times { i ->
+            d.createFile("d${i % 7}/f${i}") << "content ${i}"
+        }
+        def executor = new FileHashingExecutor(3)
+        def parallelSnapshotter = new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), new DefaultFileSystemMirror(Stub(WellKnownFileLocations)), executor)
+
+        when:
+        def serial = snapshotter.snapshotDirectoryTree(d)
+        def parallel = parallelSnapshotter.snapshotDirectoryTree(d)
+
+        then:
+        parallel.descendants.size() == 1507
+        parallel.descendants*.path == serial.descendants*.path
+        parallel.descendants*.content == serial.descendants*.content
+
+        cleanup:
+        executor.stop()
+    }
+
     def hash(Snapshot snapshot) {
         def builder = new DefaultBuildCacheHasher()
         snapshot.appendToHasher(builder)
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.RelativePath
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class PersistentFileTreeSnapshotStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def storeFile = tmpDir.file("store/trees.bin")
+    def timeStampInspector = new FileTimeStampInspector(tmpDir.createDir("file-changes")) {}
+    def store = new PersistentFileTreeSnapshotStore(storeFile, TestFiles.fileSystem(), new StringInterner(), timeStampInspector)
+
+    TestFile root
+    TestFile subDir
+    TestFile file
+
+    def setup() {
+        root = tmpDir.createDir("root")
+        subDir = root.createDir("sub")
+        file = subDir.file("a.txt")
+        file.text = "content"
+        makeOld(file, subDir, root)
+    }
+
+    def "restores unchanged tree in a later build"() {
+        given:
+        store.open()
+        store.store([tree()])
+
+        when:
+        store.open()
+        def restored = store.load(root.path)
+
+        then:
+        restored.path == root.path
+        restored.descendants*.path == [subDir.path, file.path]
+        restored.descendants*.type == [FileType.Directory, FileType.RegularFile]
+        restored.descendants[1].content.contentMd5 == HashCode.fromInt(123)
+        restored.descendants[1].relativePath == RelativePath.parse(true, "sub/a.txt")
+    }
+
+    def "does not restore tree when a file has changed"() {
+        given:
+        store.open()
+        store.store([tree()])
+
+        when:
+        file.text = "changed content"
+        store.open()
+
+        then:
+        store.load(root.path) == null
+    }
+
+    def "does not restore tree when a file has been added"() {
+        given:
+        store.open()
+        store.store([tree()])
+
+        when:
+        subDir.file("b.txt").text = "new"
+        store.open()
+
+        then:
+        store.load(root.path) == null
+    }
+
+    def "does not record tree containing files modified during the current build"() {
+        given:
+        store.open()
+        file.text = "modified during build"
+        def snapshot = new DirectoryTreeDetails(root.path, [
+            new DirectoryFileSnapshot(subDir.path, RelativePath.parse(false, "sub"), false),
+            new RegularFileSnapshot(file.path, RelativePath.parse(true, "sub/a.txt"), false, new FileHashSnapshot(HashCode.fromInt(123), file.lastModified()))
+        ])
+        store.store([snapshot])
+
+        when:
+        store.open()
+
+        then:
+        store.load(root.path) == null
+    }
+
+    def "keeps trees from previous build that were not seen in this build"() {
+        given:
+        store.open()
+        store.store([tree()])
+        store.open()
+        store.store([])
+
+        when:
+        store.open()
+
+        then:
+        store.load(root.path) != null
+    }
+
+    def "ignores corrupt store"() {
+        given:
+        storeFile.parentFile.mkdirs()
+        storeFile.text = "not a store"
+
+        when:
+        store.open()
+
+        then:
+        store.load(root.path) == null
+    }
+
+    def "ignores tree whose stored content is corrupt"() {
+        given:
+        store.open()
+        store.store([tree()])
+
+        when:
+        // Replace the length of the relative path of the first descendant with garbage
+        def bytes = storeFile.bytes
+        [0x7f, 0xff, 0xff, 0xff].eachWithIndex { value, i -> bytes[14 + i] = (byte) value }
+        storeFile.bytes = bytes
+        store.open()
+
+        then:
+        store.load(root.path) == null
+    }
+
+    def "can replace store while it is open"() {
+        given:
+        store.open()
+        store.store([tree()])
+        store.open()
+        store.load(root.path) != null
+
+        when:
+        store.store([tree()])
+        store.open()
+
+        then:
+        store.load(root.path) != null
+    }
+
+    def "appends changed trees and leaves unchanged store alone"() {
+        given:
+        def otherRoot = tmpDir.createDir("other")
+        def otherFiles = (1..20).collect { otherRoot.file("file${it}.txt").createFile() }
+        makeOld(otherFiles as File[])
+        makeOld(otherRoot)
+        def otherTree = new DirectoryTreeDetails(otherRoot.path, otherFiles.collect {
+            new RegularFileSnapshot(it.path, RelativePath.parse(true, it.name), false, new FileHashSnapshot(HashCode.fromInt(1), it.lastModified()))
+        })
+        store.open()
+        store.store([tree(), otherTree])
+        def initialLength = storeFile.length()
+
+        when:
+        store.open()
+        store.store([tree()])
+
+        then:
+        storeFile.length() == initialLength
+
+        when:
+        store.open()
+        store.store([tree(456)])
+        store.open()
+
+        then:
+        storeFile.length() > initialLength
+        store.load(root.path).descendants[1].content.contentMd5 == HashCode.fromInt(456)
+        store.load(otherRoot.path) != null
+    }
+
+    def "compacts store once most of it is no longer used"() {
+        given:
+        store.open()
+        store.store([tree(0)])
+        def initialLength = storeFile.length()
+
+        when:
+        (1..20).each {
+            store.open()
+            store.store([tree(it)])
+        }
+        store.open()
+
+        then:
+        storeFile.length() < 4 * initialLength
+        store.load(root.path).descendants[1].content.contentMd5 == HashCode.fromInt(20)
+    }
+
+    private FileTreeSnapshot tree(int hash = 123) {
+        return new DirectoryTreeDetails(root.path, [
+            new DirectoryFileSnapshot(subDir.path, RelativePath.parse(false, "sub"), false),
+            new RegularFileSnapshot(file.path, RelativePath.parse(true, "sub/a.txt"), false, new FileHashSnapshot(HashCode.fromInt(hash), file.lastModified()))
+        ])
+    }
+
+    private static void makeOld(File... files) {
+        files.each { it.lastModified = it.lastModified() - 10000 }
+    }
+}
@@ -32,6 +32,7 @@ import org.gradle.api.internal.tasks.TaskExecutionContext
 import org.gradle.api.internal.tasks.TaskLocalStateInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.internal.tasks.properties.PropertyWalker
+import org.gradle.caching.internal.tasks.BuildCacheEntryPrefetcher
 import org.gradle.internal.service.ServiceRegistry
 import spock.lang.Specification
 import spock.lang.Subject
@@ -88,4 +89,26 @@ class ResolveTaskArtifactStateTaskExecuterTest extends Specification {
         and: 'nothing else'
         0 * _
     }
+
+    def 'reuses task artifact state calculated while prefetching build cache entry'() {
+        def prefetcher = Mock(BuildCacheEntryPrefetcher)
+        def taskProperties = Stub(TaskProperties)
+        def executer = new ResolveTaskArtifactStateTaskExecuter(repository, resolver, propertyWalker, prefetcher, delegate)
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * prefetcher.takeCalculatedState(task) >> new BuildCacheEntryPrefetcher.CalculatedState(taskProperties, taskArtifactState, 0)
+        1 * taskContext.setTaskProperties(taskProperties)
+        1 * taskContext.setTaskArtifactState(taskArtifactState)
+        1 * taskArtifactState.getExecutionHistory() >> taskExecutionhistory
+        1 * task.getOutputs() >> outputs
+        1 * outputs.setHistory(taskExecutionhistory)
+        0 * repository._
+        0 * propertyWalker._
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.api.Task
+import org.gradle.api.execution.TaskExecutionGraph
+import org.gradle.api.internal.TaskInputsInternal
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputCachingState
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository
+import org.gradle.api.internal.file.FileResolver
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.internal.tasks.TaskDestroyablesInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
+import org.gradle.api.internal.tasks.TaskLocalStateInternal
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.api.internal.tasks.properties.PropertyWalker
+import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.file.PathToFileResolver
+import spock.lang.Specification
+
+class BuildCacheEntryPrefetcherTest extends Specification {
+    def buildCacheController = Mock(BuildCacheController) {
+        isEnabled() >> true
+    }
+    def repository = Mock(TaskArtifactStateRepository)
+    def propertyWalker = Stub(PropertyWalker)
+    def resolver = Stub(PathToFileResolver)
+    def calculations = []
+    def executor = Stub(ManagedExecutor) {
+        execute(_) >> { Runnable runnable -> calculations << runnable }
+    }
+    def executorFactory = Stub(ExecutorFactory) {
+        create(_, _) >> executor
+    }
+    def graph = Stub(TaskExecutionGraph)
+    def cacheKey = Stub(TaskOutputCachingBuildCacheKey) {
+        isValid() >> true
+    }
+    def taskArtifactState = Stub(TaskArtifactState) {
+        calculateCacheKey() >> cacheKey
+    }
+
+    def prefetcher = new BuildCacheEntryPrefetcher(buildCacheController, repository, propertyWalker, resolver, executorFactory)
+
+    def "calculates cache keys of tasks without dependencies in the background and reuses their state"() {
+        def task = cacheableTask()
+        graph.allTasks >> [task]
+        graph.getDependencies(task) >> ([] as Set)
+
+        when:
+        prefetcher.graphPopulated(graph)
+
+        then:
+        0 * repository._
+        calculations.size() == 1
+
+        when:
+        runCalculations()
+
+        then:
+        1 * repository.getStateFor(task, _) >> taskArtifactState
+        1 * buildCacheController.prefetch(cacheKey)
+
+        and:
+        prefetcher.takeCalculatedState(task).taskArtifactState == taskArtifactState
+    }
+
+    def "discards calculated state when task outputs change after it was calculated"() {
+        def task = cacheableTask()
+        graph.allTasks >> [task]
+        graph.getDependencies(task) >> ([] as Set)
+        repository.getStateFor(task, _) >> taskArtifactState
+
+        when:
+        prefetcher.graphPopulated(graph)
+        runCalculations()
+        prefetcher.beforeTaskOutputChanged()
+
+        then:
+        prefetcher.takeCalculatedState(task) == null
+    }
+
+    def "discards calculated state when task outputs change while it is calculated"() {
+        def task = cacheableTask()
+        graph.allTasks >> [task]
+        graph.getDependencies(task) >> ([] as Set)
+        repository.getStateFor(task, _) >> {
+            prefetcher.beforeTaskOutputChanged()
+            taskArtifactState
+        }
+
+        when:
+        prefetcher.graphPopulated(graph)
+        runCalculations()
+
+        then:
+        prefetcher.takeCalculatedState(task) == null
+    }
+
+    def "does not calculate state of task that starts executing first"() {
+        def task = cacheableTask()
+        graph.allTasks >> [task]
+        graph.getDependencies(task) >> ([] as Set)
+
+        when:
+        prefetcher.graphPopulated(graph)
+
+        then:
+        prefetcher.takeCalculatedState(task) == null
+
+        when:
+        runCalculations()
+
+        then:
+        0 * repository._
+        0 * buildCacheController.prefetch(_)
+    }
+
+    def "does not calculate cache key of task until all its dependencies are up-to-date"() {
+        def first = Stub(TaskInternal)
+        def second = Stub(TaskInternal)
+        def upToDateDependent = cacheableTask()
+        def executedDependent = cacheableTask()
+        graph.allTasks >> [first, second, upToDateDependent, executedDependent]
+        graph.getDependencies(first) >> ([] as Set)
+        graph.getDependencies(second) >> ([] as Set)
+        graph.getDependencies(upToDateDependent) >> ([first, second] as Set)
+        graph.getDependencies(executedDependent) >> ([first] as Set)
+        prefetcher.graphPopulated(graph)
+        calculations.clear()
+
+        when:
+        prefetcher.afterExecute(second, state(TaskExecutionOutcome.UP_TO_DATE))
+
+        then:
+        calculations.empty
+
+        when:
+        prefetcher.afterExecute(first, state(TaskExecutionOutcome.EXECUTED))
+
+        then:
+        calculations.empty
+    }
+
+    def "calculates cache key of task when its last dependency is up-to-date"() {
+        def first = Stub(TaskInternal)
+        def second = Stub(TaskInternal)
+        def dependent = cacheableTask()
+        graph.allTasks >> [first, second, dependent]
+        graph.getDependencies(first) >> ([] as Set)
+        graph.getDependencies(second) >> ([] as Set)
+        graph.getDependencies(dependent) >> ([first, second] as Set)
+        prefetcher.graphPopulated(graph)
+        calculations.clear()
+
+        when:
+        prefetcher.afterExecute(first, state(TaskExecutionOutcome.UP_TO_DATE))
+        prefetcher.afterExecute(second, state(TaskExecutionOutcome.SKIPPED))
+        runCalculations()
+
+        then:
+        1 * repository.getStateFor(dependent, _) >> taskArtifactState
+        1 * buildCacheController.prefetch(cacheKey)
+    }
+
+    private void runCalculations() {
+        def pending = new ArrayList(calculations)
+        calculations.clear()
+        pending*.run()
+    }
+
+    private TaskStateInternal state(TaskExecutionOutcome outcome) {
+        Stub(TaskStateInternal) {
+            getOutcome() >> outcome
+        }
+    }
+
+    private TaskInternal cacheableTask() {
+        def project = Stub(ProjectInternal) {
+            getFileResolver() >> Stub(FileResolver)
+        }
+        def cachingState = Stub(TaskOutputCachingState) {
+            isEnabled() >> true
+        }
+        def outputs = Stub(TaskOutputsInternal) {
+            getCachingState(_) >> cachingState
+        }
+        Stub(TaskInternal) {
+            getEnabled() >> true
+            getProject() >> project
+            getInputs() >> Stub(TaskInputsInternal)
+            getOutputs() >> outputs
+            getDestroyables() >> Stub(TaskDestroyablesInternal)
+            getLocalState() >> Stub(TaskLocalStateInternal)
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.changedetection.state.TaskHistoryStore
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.util.Path
+import spock.lang.Specification
+
+class CacheBackedTaskDurationHistoryTest extends Specification {
+    def cache = Mock(PersistentIndexedCache)
+    def store = Stub(TaskHistoryStore) {
+        createCache("taskDurations", String, _, _, _) >> cache
+    }
+    def history = new CacheBackedTaskDurationHistory(store)
+
+    def "records duration of first execution when build finishes"() {
+        when:
+        history.recordDuration(Path.path(":a"), 100)
+
+        then:
+        0 * cache._
+
+        when:
+        history.stop()
+
+        then:
+        1 * cache.get(":a") >> null
+        1 * cache.put(":a", 100L)
+    }
+
+    def "averages duration with previous executions"() {
+        when:
+        history.recordDuration(Path.path(":a"), 200)
+        history.stop()
+
+        then:
+        1 * cache.get(":a") >> 100L
+        1 * cache.put(":a", 130L)
+    }
+
+    def "writes recorded durations only once"() {
+        given:
+        history.recordDuration(Path.path(":a"), 100)
+        history.stop()
+
+        when:
+        history.stop()
+
+        then:
+        0 * cache._
+    }
+}
@@ -846,6 +846,66 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "schedules dependencies on the longest remaining path first when task durations are known"() {
+        given:
+        def durationHistory = Mock(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(workerLeaseService, root.gradle, Stub(IncludedBuildTaskGraph), durationHistory)
+        Task x = task("x")
+        Task z = task("z")
+        Task y = task("y", dependsOn: [z])
+        Task e = task("e", dependsOn: [x, y])
+        durationHistory.getExpectedDuration(Path.path(":x")) >> 10L
+        durationHistory.getExpectedDuration(Path.path(":y")) >> 1000L
+        durationHistory.getExpectedDuration(Path.path(":z")) >> 10L
+
+        when:
+        addToGraphAndPopulate([e])
+        def executed = executedTasks
+
+        then:
+        executionPlan.tasks as List == [x, z, y, e]
+        executed == [z, y, x, e]
+        1 * durationHistory.recordDuration(Path.path(":x"), _)
+        1 * durationHistory.recordDuration(Path.path(":e"), _)
+    }
+
+    def "keeps the order of entry tasks when task durations are known"() {
+        given:
+        def durationHistory = Stub(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(workerLeaseService, root.gradle, Stub(IncludedBuildTaskGraph), durationHistory)
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d")
+        durationHistory.getExpectedDuration(Path.path(":a")) >> 10L
+        durationHistory.getExpectedDuration(Path.path(":b")) >> 10L
+        durationHistory.getExpectedDuration(Path.path(":c")) >> 1000L
+        durationHistory.getExpectedDuration(Path.path(":d")) >> 5000L
+
+        when:
+        addToGraphAndPopulate([a, c, d])
+
+        then:
+        executedTasks == [a, b, c, d]
+    }
+
+    def "keeps should run after order when task durations are known"() {
+        given:
+        def durationHistory = Stub(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(workerLeaseService, root.gradle, Stub(IncludedBuildTaskGraph), durationHistory)
+        Task x = task("x")
+        Task y = task("y", shouldRunAfter: [x])
+        Task e = task("e", dependsOn: [x, y])
+        durationHistory.getExpectedDuration(Path.path(":x")) >> 10L
+        durationHistory.getExpectedDuration(Path.path(":y")) >> 1000L
+
+        when:
+        addToGraphAndPopulate([e])
+
+        then:
+        executedTasks == [x, y, e]
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
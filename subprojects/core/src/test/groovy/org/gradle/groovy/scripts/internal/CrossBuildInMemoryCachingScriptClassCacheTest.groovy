@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.groovy.scripts.internal
+
+import org.gradle.api.Action
+import org.gradle.api.internal.initialization.loadercache.ClassLoaderId
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+
+class CrossBuildInMemoryCachingScriptClassCacheTest extends Specification {
+    def hasher = Mock(ScriptSourceHasher)
+    def delegate = Mock(ScriptClassCompiler)
+    def operation = Stub(CompileOperation) {
+        getId() >> "dsl"
+    }
+    def classLoader = new URLClassLoader(new URL[0])
+    def memoryAboveCeiling = false
+    def cache = new CrossBuildInMemoryCachingScriptClassCache(hasher, 2, 80, 80) {
+        @Override
+        boolean isMemoryAboveCeiling() {
+            return memoryAboveCeiling
+        }
+    }
+
+    def "reuses compiled script when source has not changed"() {
+        def source = script("a")
+        def compiledScript = Mock(CompiledScript)
+
+        when:
+        def first = getOrCompile(source)
+        def second = getOrCompile(source)
+
+        then:
+        first.is(compiledScript)
+        second.is(compiledScript)
+        2 * hasher.hash(source) >> HashCode.fromInt(1)
+        1 * delegate.compile(source, classLoader, _, _, _, _) >> compiledScript
+        cache.hits == 1
+        cache.misses == 1
+    }
+
+    def "recompiles script when source has changed"() {
+        def source = script("a")
+        def compiledScript = Mock(CompiledScript)
+
+        when:
+        getOrCompile(source)
+        getOrCompile(source)
+
+        then:
+        2 * hasher.hash(source) >>> [HashCode.fromInt(1), HashCode.fromInt(2)]
+        2 * delegate.compile(source, classLoader, _, _, _, _) >> compiledScript
+        cache.misses == 2
+        cache.size() == 1
+    }
+
+    def "evicts least recently used scripts not used by the session when there are too many scripts"() {
+        hasher.hash(_) >> HashCode.fromInt(1)
+        delegate.compile(_, _, _, _, _, _) >> { Mock(CompiledScript) }
+        def a = script("a")
+        def b = script("b")
+        def c = script("c")
+
+        given:
+        getOrCompile(a)
+        getOrCompile(b)
+        getOrCompile(c)
+        cache.beforeComplete()
+        getOrCompile(c)
+        getOrCompile(b)
+
+        when:
+        cache.beforeComplete()
+
+        then:
+        cache.size() == 2
+        cache.evictions == 1
+
+        when:
+        getOrCompile(b)
+        getOrCompile(c)
+        getOrCompile(a)
+
+        then:
+        cache.hits == 4
+        cache.misses == 4
+    }
+
+    def "retains scripts used by the session when there are too many scripts"() {
+        hasher.hash(_) >> HashCode.fromInt(1)
+        delegate.compile(_, _, _, _, _, _) >> { Mock(CompiledScript) }
+
+        given:
+        getOrCompile(script("a"))
+        getOrCompile(script("b"))
+        getOrCompile(script("c"))
+
+        when:
+        cache.beforeComplete()
+
+        then:
+        cache.size() == 3
+        cache.evictions == 0
+    }
+
+    def "evicts least recently used half of the scripts not used by the session when memory is above the ceiling"() {
+        hasher.hash(_) >> HashCode.fromInt(1)
+        delegate.compile(_, _, _, _, _, _) >> { Mock(CompiledScript) }
+
+        given:
+        getOrCompile(script("a"))
+        getOrCompile(script("b"))
+        getOrCompile(script("c"))
+        cache.beforeComplete()
+        memoryAboveCeiling = true
+
+        when:
+        cache.beforeComplete()
+
+        then:
+        cache.size() == 1
+        cache.evictions == 2
+
+        when:
+        getOrCompile(script("c"))
+
+        then:
+        cache.hits == 1
+    }
+
+    def script(String className) {
+        return Stub(ScriptSource) {
+            getClassName() >> className
+        }
+    }
+
+    def getOrCompile(ScriptSource source) {
+        return cache.getOrCompile(source, classLoader, Stub(ClassLoaderId), operation, Script, Stub(Action), delegate)
+    }
+}
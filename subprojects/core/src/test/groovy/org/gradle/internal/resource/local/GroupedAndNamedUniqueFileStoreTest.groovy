@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.local
+
+import org.gradle.api.Transformer
+import org.gradle.api.internal.file.TemporaryFileProvider
+import org.gradle.internal.hash.HashUtil
+import org.gradle.internal.hash.HashValue
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+class GroupedAndNamedUniqueFileStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider dir = new TestNameTestDirectoryProvider()
+    def fsBase = dir.file("fs")
+    def grouper = { String key -> "group" } as Transformer<String, String>
+    def namer = { String key -> key } as Transformer<String, String>
+    def store = new GroupedAndNamedUniqueFileStore<String>(new DefaultPathKeyFileStore(fsBase), Stub(TemporaryFileProvider), grouper, namer)
+
+    def "stores file under the hash of its content"() {
+        def source = dir.createFile("source")
+        source.text = "content"
+
+        when:
+        def stored = store.move("name", source)
+
+        then:
+        stored.file == fsBase.file("group/${HashUtil.sha1(source.bytes).asHexString()}/name")
+        stored.file.text == "content"
+    }
+
+    def "stores file under the given hash without hashing the content again"() {
+        def source = dir.createFile("source")
+        source.text = "content"
+        def sha1 = HashValue.parse("1234")
+
+        when:
+        def stored = store.move("name", source, sha1)
+
+        then:
+        stored.file == fsBase.file("group/${sha1.asHexString()}/name")
+        stored.file.text == "content"
+        !source.exists()
+    }
+}
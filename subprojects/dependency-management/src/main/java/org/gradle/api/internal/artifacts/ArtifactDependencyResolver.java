@@ -22,6 +22,7 @@ import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
 import org.gradle.api.specs.Spec;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
 
 import java.util.List;
 
@@ -34,4 +35,13 @@ public interface ArtifactDependencyResolver {
                  DependencyArtifactsVisitor artifactsVisitor,
                  AttributesSchemaInternal consumerSchema,
                  ArtifactTypeRegistry artifactTypeRegistry);
+
+    /**
+     * Creates a resolver for the files of the artifacts of the given configuration, without traversing its graph.
+     */
+    ArtifactResolver createArtifactResolver(ResolveContext resolveContext,
+                                            List<? extends ResolutionAwareRepository> repositories,
+                                            GlobalDependencyResolutionRules metadataHandler,
+                                            AttributesSchemaInternal consumerSchema,
+                                            ArtifactTypeRegistry artifactTypeRegistry);
 }
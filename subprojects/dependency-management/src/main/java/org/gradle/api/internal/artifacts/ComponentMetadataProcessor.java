@@ -29,6 +29,11 @@ public interface ComponentMetadataProcessor {
         public ComponentMetadata processMetadata(ComponentMetadata metadata) {
             return metadata;
         }
+
+        @Override
+        public boolean hasRules() {
+            return false;
+        }
     };
 
     ModuleComponentResolveMetadata processMetadata(ModuleComponentResolveMetadata metadata);
@@ -40,4 +45,9 @@ public interface ComponentMetadataProcessor {
      * @return updated metadata, if any component metadata rule applies.
      */
     ComponentMetadata processMetadata(ComponentMetadata metadata);
+
+    /**
+     * Returns true if any component metadata rule has been registered, meaning that processed metadata may differ from the metadata provided by a repository.
+     */
+    boolean hasRules();
 }
@@ -29,6 +29,16 @@ public interface ConfigurationResolver {
      */
     void resolveGraph(ConfigurationInternal configuration, ResolverResults results) throws ResolveException;
 
+    /**
+     * Loads the graph of the given configuration from the results of previous builds, when the ResolvedConfiguration of the configuration is not required.
+     * The resolution result, the build dependencies and the artifacts of the configuration can be used, once {@link #resolveArtifacts(ConfigurationInternal, ResolverResults)}
+     * has been called for the artifacts. The graph has to be resolved using {@link #resolveGraph(ConfigurationInternal, ResolverResults)} and a new result instance
+     * before the ResolvedConfiguration can be used.
+     *
+     * @return true when the graph has been loaded, false when the graph has to be resolved instead.
+     */
+    boolean loadGraph(ConfigurationInternal configuration, ResolverResults results);
+
     /**
      * Calculates the artifacts to include in the result for the given configuration. All failures are packaged in the result.
      * Must be called using the same result instance as was passed to {@link #resolveGraph(ConfigurationInternal, ResolverResults)}.
@@ -189,6 +189,8 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
     private boolean insideBeforeResolve;
 
     private ResolverResults cachedResolverResults;
+    // True when the graph of this configuration has been loaded from the results of previous builds, so its ResolvedConfiguration is not available
+    private boolean graphLoaded;
     private boolean dependenciesModified;
     private boolean canBeConsumed = true;
     private boolean canBeResolved = true;
@@ -503,10 +505,17 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
     }
 
     private void resolveToStateOrLater(InternalState requestedState) {
+        resolveToStateOrLater(requestedState, false);
+    }
+
+    /**
+     * Resolves this configuration to the given state. When the ResolvedConfiguration of this configuration is not required, its graph may be loaded from the results of previous builds.
+     */
+    private void resolveToStateOrLater(InternalState requestedState, boolean loadedGraphAllowed) {
         assertResolvingAllowed();
         synchronized (resolutionLock) {
             if (requestedState == GRAPH_RESOLVED || requestedState == ARTIFACTS_RESOLVED) {
-                resolveGraphIfRequired(requestedState);
+                resolveGraphIfRequired(requestedState, loadedGraphAllowed);
             }
             if (requestedState == ARTIFACTS_RESOLVED) {
                 resolveArtifactsIfRequired();
@@ -514,11 +523,14 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
         }
     }
 
-    private void resolveGraphIfRequired(final InternalState requestedState) {
+    private void resolveGraphIfRequired(final InternalState requestedState, final boolean loadedGraphAllowed) {
         if (resolvedState == ARTIFACTS_RESOLVED || resolvedState == GRAPH_RESOLVED) {
             if (dependenciesModified) {
                 throw new InvalidUserDataException(String.format("Attempted to resolve %s that has been resolved previously.", getDisplayName()));
             }
+            if (!loadedGraphAllowed) {
+                resolveFullGraphIfRequired();
+            }
             return;
         }
         buildOperationExecutor.run(new RunnableBuildOperation() {
@@ -530,7 +542,10 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
                 final ResolvableDependencies incoming = getIncoming();
                 performPreResolveActions(incoming);
                 cachedResolverResults = new DefaultResolverResults();
-                resolver.resolveGraph(DefaultConfiguration.this, cachedResolverResults);
+                graphLoaded = loadedGraphAllowed && resolver.loadGraph(DefaultConfiguration.this, cachedResolverResults);
+                if (!graphLoaded) {
+                    resolver.resolveGraph(DefaultConfiguration.this, cachedResolverResults);
+                }
                 dependenciesModified = false;
                 resolvedState = GRAPH_RESOLVED;
 
@@ -559,6 +574,22 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
         });
     }
 
+    /**
+     * Resolves the graph of this configuration when it has been loaded, so that its ResolvedConfiguration can be used.
+     * The dependency resolution listeners have already been notified, and are not notified again.
+     */
+    private void resolveFullGraphIfRequired() {
+        if (graphLoaded) {
+            ResolverResults results = new DefaultResolverResults();
+            resolver.resolveGraph(this, results);
+            if (resolvedState == ARTIFACTS_RESOLVED) {
+                resolver.resolveArtifacts(this, results);
+            }
+            cachedResolverResults = results;
+            graphLoaded = false;
+        }
+    }
+
     private void performPreResolveActions(ResolvableDependencies incoming) {
         DependencyResolutionListener dependencyResolutionListener = dependencyResolutionListeners.getSource();
         insideBeforeResolve = true;
@@ -1001,7 +1032,8 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
         private SelectedArtifactSet getSelectedArtifacts() {
             if (selectedArtifacts == null) {
                 assertResolvingAllowed();
-                resolveToStateOrLater(ARTIFACTS_RESOLVED);
+                // Filtering by dependency requires the ResolvedConfiguration
+                resolveToStateOrLater(ARTIFACTS_RESOLVED, dependencySpec == Specs.SATISFIES_ALL);
                 selectedArtifacts = cachedResolverResults.getVisitedArtifacts().select(dependencySpec, viewAttributes, componentSpec, allowNoMatchingVariants);
             }
             return selectedArtifacts;
@@ -1233,10 +1265,6 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
             }
         }
 
-        private void assertArtifactsResolved() {
-            DefaultConfiguration.this.resolveToStateOrLater(ARTIFACTS_RESOLVED);
-        }
-
         private class LenientResolutionResult implements ResolutionResult {
             private final Action<? super Throwable> errorHandler;
             private volatile ResolutionResult delegate;
@@ -1249,7 +1277,7 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
                 if (delegate == null) {
                     synchronized (this) {
                         if (delegate == null) {
-                            assertArtifactsResolved();
+                            resolveToStateOrLater(ARTIFACTS_RESOLVED, true);
                             delegate = cachedResolverResults.getResolutionResult();
                             Throwable failure = cachedResolverResults.consumeNonFatalFailure();
                             if (failure != null) {
@@ -21,6 +21,7 @@ import org.gradle.api.artifacts.ProjectDependency;
 import org.gradle.api.artifacts.UnresolvedDependency;
 import org.gradle.api.artifacts.component.BuildIdentifier;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
@@ -33,7 +34,9 @@ import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesOnlyVisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultVisitedArtifactResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ValidatingArtifactsVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedFileDependencyResults;
@@ -52,23 +55,36 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.FileDependencyCollectingGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.artifacts.transform.ArtifactTransforms;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.component.ArtifactType;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.cache.internal.BinaryStore;
 import org.gradle.cache.internal.Store;
 import org.gradle.internal.Transformers;
 import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.locking.DependencyLockingArtifactVisitor;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.internal.resolve.result.BuildableArtifactResolveResult;
+import org.gradle.internal.resolve.result.BuildableArtifactSetResolveResult;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -92,6 +108,7 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
     private final ComponentSelectorConverter componentSelectorConverter;
     private final AttributeContainerSerializer attributeContainerSerializer;
     private final BuildIdentifier currentBuild;
+    private final ResolvedGraphCache resolvedGraphCache;
 
     public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, RepositoryHandler repositories,
                                         GlobalDependencyResolutionRules metadataHandler,
@@ -105,6 +122,22 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
                                         ComponentSelectorConverter componentSelectorConverter,
                                         AttributeContainerSerializer attributeContainerSerializer,
                                         BuildIdentifier currentBuild) {
+        this(resolver, repositories, metadataHandler, storeFactory, buildProjectDependencies, attributesSchema, artifactTransforms, moduleIdentifierFactory, buildOperationExecutor, artifactTypeRegistry, componentSelectorConverter, attributeContainerSerializer, currentBuild, null);
+    }
+
+    public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, RepositoryHandler repositories,
+                                        GlobalDependencyResolutionRules metadataHandler,
+                                        ResolutionResultsStoreFactory storeFactory,
+                                        boolean buildProjectDependencies,
+                                        AttributesSchemaInternal attributesSchema,
+                                        ArtifactTransforms artifactTransforms,
+                                        ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                        BuildOperationExecutor buildOperationExecutor,
+                                        ArtifactTypeRegistry artifactTypeRegistry,
+                                        ComponentSelectorConverter componentSelectorConverter,
+                                        AttributeContainerSerializer attributeContainerSerializer,
+                                        BuildIdentifier currentBuild,
+                                        @Nullable ResolvedGraphCache resolvedGraphCache) {
         this.resolver = resolver;
         this.repositories = repositories;
         this.metadataHandler = metadataHandler;
@@ -118,6 +151,7 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         this.componentSelectorConverter = componentSelectorConverter;
         this.attributeContainerSerializer = attributeContainerSerializer;
         this.currentBuild = currentBuild;
+        this.resolvedGraphCache = resolvedGraphCache;
     }
 
     @Override
@@ -131,7 +165,38 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
 
     public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) {
         List<ResolutionAwareRepository> resolutionAwareRepositories = CollectionUtils.collect(repositories, Transformers.cast(ResolutionAwareRepository.class));
+        HashCode graphCacheKey = resolvedGraphCache == null ? null : resolvedGraphCache.keyFor(configuration, resolutionAwareRepositories, metadataHandler, attributesSchema);
+        resolveGraph(configuration, resolutionAwareRepositories, results, graphCacheKey);
+    }
+
+    @Override
+    public boolean loadGraph(ConfigurationInternal configuration, ResolverResults results) {
+        if (resolvedGraphCache == null) {
+            return false;
+        }
+        List<ResolutionAwareRepository> resolutionAwareRepositories = CollectionUtils.collect(repositories, Transformers.cast(ResolutionAwareRepository.class));
+        HashCode graphCacheKey = resolvedGraphCache.keyFor(configuration, resolutionAwareRepositories, metadataHandler, attributesSchema);
+        if (graphCacheKey == null) {
+            return false;
+        }
+        ResolvedGraphCache.CachedGraph cachedGraph = resolvedGraphCache.load(graphCacheKey, configuration.getResolutionStrategy().getCachePolicy(), metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
+        if (cachedGraph == null) {
+            return false;
+        }
+        ResolutionResult resolutionResult = StreamingResolutionResultBuilder.loadResult(InMemoryBinaryStore.read(cachedGraph.getResult()), storeFactory.createStoreSet().newModelCache(), moduleIdentifierFactory, attributeContainerSerializer);
+        ArtifactResolver artifactResolver = new LazyArtifactResolver(configuration, resolutionAwareRepositories);
+        VisitedArtifactsResults artifactsResults = new DefaultVisitedArtifactResults(configuration.getResolutionStrategy().getSortOrder(), resolvedGraphCache.loadArtifactSets(cachedGraph, artifactResolver));
+        // The graph only contains external modules, so there are no local components, build dependencies or file dependencies
+        Set<UnresolvedDependency> failures = Collections.emptySet();
+        results.graphResolved(resolutionResult, new ResolvedLocalComponentsResultGraphVisitor(currentBuild), new BuildDependenciesOnlyVisitedArtifactSet(failures, artifactsResults, artifactTransforms));
+        results.retainState(new ArtifactResolveState(null, artifactsResults, new FileDependencyCollectingGraphVisitor().complete(), failures, null));
+        return true;
+    }
+
+    private void resolveGraph(ConfigurationInternal configuration, List<ResolutionAwareRepository> resolutionAwareRepositories, ResolverResults results, @Nullable HashCode graphCacheKey) {
         StoreSet stores = storeFactory.createStoreSet();
+        // Record the graph, unless it has already been loaded or recorded during this build
+        ResolvedGraphCache.Recorder graphCacheRecorder = graphCacheKey == null || resolvedGraphCache.isRecorded(graphCacheKey) ? null : resolvedGraphCache.newRecorder();
 
         BinaryStore oldModelStore = stores.nextBinaryStore();
         Store<TransientConfigurationResults> oldModelCache = stores.oldModelCache();
@@ -139,7 +204,7 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
         ResolvedConfigurationDependencyGraphVisitor oldModelVisitor = new ResolvedConfigurationDependencyGraphVisitor(oldModelBuilder);
 
-        BinaryStore newModelStore = stores.nextBinaryStore();
+        BinaryStore newModelStore = graphCacheRecorder == null ? stores.nextBinaryStore() : new InMemoryBinaryStore();
         Store<ResolvedComponentResult> newModelCache = stores.newModelCache();
         StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache, moduleIdentifierFactory, attributeContainerSerializer);
 
@@ -149,9 +214,11 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         DefaultResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder(currentBuild, buildProjectDependencies, resolutionStrategy.getSortOrder());
         FileDependencyCollectingGraphVisitor fileDependencyVisitor = new FileDependencyCollectingGraphVisitor();
         ResolutionFailureCollector failureCollector = new ResolutionFailureCollector(componentSelectorConverter);
-        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
+        DependencyGraphVisitor graphVisitor = graphCacheRecorder == null
+            ? new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector)
+            : new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector, graphCacheRecorder);
         DependencyArtifactsVisitor artifactsVisitor;
-                ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<DependencyArtifactsVisitor>();
+        ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<DependencyArtifactsVisitor>();
         visitors.add(oldModelVisitor);
         visitors.add(fileDependencyVisitor);
         visitors.add(artifactsBuilder);
@@ -162,6 +229,9 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
             DependencyLockingArtifactVisitor lockingVisitor = new DependencyLockingArtifactVisitor(configuration.getName(), resolutionStrategy.getDependencyLockingProvider());
             visitors.add(lockingVisitor);
         }
+        if (graphCacheRecorder != null) {
+            visitors.add(graphCacheRecorder);
+        }
         ImmutableList<DependencyArtifactsVisitor> allVisitors = visitors.build();
         artifactsVisitor = new CompositeDependencyArtifactsVisitor(allVisitors);
 
@@ -181,6 +251,9 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
                     ((ValidatingArtifactsVisitor) allVisitor).complete();
                 }
             }
+            if (graphCacheRecorder != null) {
+                resolvedGraphCache.store(graphCacheKey, ((InMemoryBinaryStore) newModelStore).getBytes(), graphCacheRecorder, resolutionStrategy.getCachePolicy(), metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
+            }
         }
     }
 
@@ -190,12 +263,59 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         VisitedArtifactsResults artifactResults = resolveState.artifactsResults;
         TransientConfigurationResultsBuilder transientConfigurationResultsBuilder = resolveState.transientConfigurationResultsBuilder;
 
-        TransientConfigurationResultsLoader transientConfigurationResultsFactory = new TransientConfigurationResultsLoader(transientConfigurationResultsBuilder, graphResults);
+        TransientConfigurationResultsLoader transientConfigurationResultsFactory = transientConfigurationResultsBuilder == null ? LoadedGraphResultsLoader.INSTANCE : new TransientConfigurationResultsLoader(transientConfigurationResultsBuilder, graphResults);
 
         DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, resolveState.failures, artifactResults, resolveState.fileDependencyResults, transientConfigurationResultsFactory, artifactTransforms, buildOperationExecutor);
         results.artifactsResolved(new DefaultResolvedConfiguration(result), result);
     }
 
+    /**
+     * The results of a graph loaded from the resolved graph cache, whose ResolvedConfiguration graph is not available.
+     */
+    private static class LoadedGraphResultsLoader extends TransientConfigurationResultsLoader {
+        private static final LoadedGraphResultsLoader INSTANCE = new LoadedGraphResultsLoader();
+
+        private LoadedGraphResultsLoader() {
+            super(null, null);
+        }
+
+        @Override
+        public TransientConfigurationResults create(SelectedArtifactResults artifactResults) {
+            throw new IllegalStateException("The graph of the configuration has been loaded, its resolved dependencies are not available.");
+        }
+    }
+
+    /**
+     * Creates the resolver for the artifacts of a loaded graph when the first file is resolved, as the repositories are not used otherwise.
+     */
+    private class LazyArtifactResolver implements ArtifactResolver {
+        private final ConfigurationInternal configuration;
+        private final List<ResolutionAwareRepository> repositories;
+        private ArtifactResolver delegate;
+
+        LazyArtifactResolver(ConfigurationInternal configuration, List<ResolutionAwareRepository> repositories) {
+            this.configuration = configuration;
+            this.repositories = repositories;
+        }
+
+        private synchronized ArtifactResolver getDelegate() {
+            if (delegate == null) {
+                delegate = resolver.createArtifactResolver(configuration, repositories, metadataHandler, attributesSchema, artifactTypeRegistry);
+            }
+            return delegate;
+        }
+
+        @Override
+        public void resolveArtifactsWithType(ComponentResolveMetadata component, ArtifactType artifactType, BuildableArtifactSetResolveResult result) {
+            getDelegate().resolveArtifactsWithType(component, artifactType, result);
+        }
+
+        @Override
+        public void resolveArtifact(ComponentArtifactMetadata artifact, ModuleSource moduleSource, BuildableArtifactResolveResult result) {
+            getDelegate().resolveArtifact(artifact, moduleSource, result);
+        }
+    }
+
     private static class ArtifactResolveState {
         final ResolvedGraphResults graphResults;
         final VisitedArtifactsResults artifactsResults;
@@ -203,7 +323,10 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
         final Set<UnresolvedDependency> failures;
         final TransientConfigurationResultsBuilder transientConfigurationResultsBuilder;
 
-        ArtifactResolveState(ResolvedGraphResults graphResults, VisitedArtifactsResults artifactsResults, VisitedFileDependencyResults fileDependencyResults, Set<UnresolvedDependency> failures, TransientConfigurationResultsBuilder transientConfigurationResultsBuilder) {
+        /**
+         * Creates the state of a resolved graph. The graph results and the transient results builder are null for a graph loaded from the resolved graph cache.
+         */
+        ArtifactResolveState(@Nullable ResolvedGraphResults graphResults, VisitedArtifactsResults artifactsResults, VisitedFileDependencyResults fileDependencyResults, Set<UnresolvedDependency> failures, @Nullable TransientConfigurationResultsBuilder transientConfigurationResultsBuilder) {
             this.graphResults = graphResults;
             this.artifactsResults = artifactsResults;
             this.fileDependencyResults = fileDependencyResults;
@@ -75,6 +75,16 @@ public class ErrorHandlingConfigurationResolver implements ConfigurationResolver
         results.graphResolved(wrappedResult, results.getResolvedLocalComponents(), results.getVisitedArtifacts());
     }
 
+    @Override
+    public boolean loadGraph(ConfigurationInternal configuration, ResolverResults results) {
+        if (!delegate.loadGraph(configuration, results)) {
+            return false;
+        }
+        ResolutionResult wrappedResult = new ErrorHandlingResolutionResult(results.getResolutionResult(), configuration);
+        results.graphResolved(wrappedResult, results.getResolvedLocalComponents(), results.getVisitedArtifacts());
+        return true;
+    }
+
     @Override
     public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
         try {
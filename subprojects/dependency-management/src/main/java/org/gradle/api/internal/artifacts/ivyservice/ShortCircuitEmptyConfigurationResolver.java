@@ -83,6 +83,12 @@ public class ShortCircuitEmptyConfigurationResolver implements ConfigurationReso
         }
     }
 
+    @Override
+    public boolean loadGraph(ConfigurationInternal configuration, ResolverResults results) {
+        // An empty graph is cheaper to resolve than to load
+        return !configuration.getAllDependencies().isEmpty() && delegate.loadGraph(configuration, results);
+    }
+
     private void emptyGraph(ConfigurationInternal configuration, ResolverResults results) {
         Module module = configuration.getModule();
         ModuleVersionIdentifier id = moduleIdentifierFactory.moduleWithVersion(module);
@@ -98,6 +98,11 @@ public class DefaultDependencySubstitutions implements DependencySubstitutionsIn
         return hasDependencySubstitutionRule;
     }
 
+    @Override
+    public boolean hasAnyRules() {
+        return !substitutionRules.isEmpty();
+    }
+
     @Override
     public Action<DependencySubstitution> getRuleAction() {
         return Actions.composite(substitutionRules);
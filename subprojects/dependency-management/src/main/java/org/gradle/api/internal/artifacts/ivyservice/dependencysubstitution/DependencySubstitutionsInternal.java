@@ -25,6 +25,11 @@ import org.gradle.api.internal.artifacts.configurations.MutationValidator;
 public interface DependencySubstitutionsInternal extends DependencySubstitutions, DependencySubstitutionRules {
     DependencySubstitutions allWithDependencyResolveDetails(Action<? super DependencyResolveDetails> rule, ComponentSelectorConverter componentSelectorConverter);
 
+    /**
+     * Returns true when any rule has been added, including rules added using {@link #allWithDependencyResolveDetails(Action, ComponentSelectorConverter)}, which are not considered by {@link #hasRules()}.
+     */
+    boolean hasAnyRules();
+
     void setMutationValidator(MutationValidator validator);
 
     DependencySubstitutionsInternal copy();
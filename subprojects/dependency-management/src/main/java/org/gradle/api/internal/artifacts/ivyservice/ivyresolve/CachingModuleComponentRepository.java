@@ -75,6 +75,12 @@ import java.util.Set;
  * and then store the result in the dependency resolution cache.
  */
 public class CachingModuleComponentRepository implements ModuleComponentRepository {
+    /**
+     * The number of milliseconds for which a module found missing from a remote repository in an earlier build is trusted to still be missing,
+     * so that the repository is not asked again when the module is not in the cache of any other repository. Disabled by default.
+     */
+    public static final String MISSING_MODULE_TRUST_PERIOD_PROPERTY = "org.gradle.internal.dependency-resolution.missing-module-trust-period";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(CachingModuleComponentRepository.class);
 
     private final ModuleVersionsCache moduleVersionsCache;
@@ -88,6 +94,7 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
     private final BuildCommencedTimeProvider timeProvider;
     private final ComponentMetadataProcessor metadataProcessor;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final long missingModuleTrustPeriodMillis;
     private LocateInCacheRepositoryAccess locateInCacheRepositoryAccess = new LocateInCacheRepositoryAccess();
     private ResolveAndCacheRepositoryAccess resolveAndCacheRepositoryAccess = new ResolveAndCacheRepositoryAccess();
 
@@ -95,6 +102,14 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
                                             CachePolicy cachePolicy, BuildCommencedTimeProvider timeProvider,
                                             ComponentMetadataProcessor metadataProcessor,
                                             ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this(delegate, caches, cachePolicy, timeProvider, metadataProcessor, moduleIdentifierFactory, 0);
+    }
+
+    public CachingModuleComponentRepository(ModuleComponentRepository delegate, ModuleRepositoryCaches caches,
+                                            CachePolicy cachePolicy, BuildCommencedTimeProvider timeProvider,
+                                            ComponentMetadataProcessor metadataProcessor,
+                                            ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                            long missingModuleTrustPeriodMillis) {
         this.delegate = delegate;
         this.moduleMetadataCache = caches.moduleMetadataCache;
         this.moduleVersionsCache = caches.moduleVersionsCache;
@@ -104,6 +119,7 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
         this.cachePolicy = cachePolicy;
         this.metadataProcessor = metadataProcessor;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.missingModuleTrustPeriodMillis = missingModuleTrustPeriodMillis;
     }
 
     public String getId() {
@@ -203,7 +219,8 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
                 LOGGER.debug("Detected non-existence of module '{}' in resolver cache '{}'", moduleComponentIdentifier, delegate.getName());
                 result.missing();
                 // When age == 0, verified since the start of this build, assume still missing
-                result.setAuthoritative(cachedMetadata.getAgeMillis() == 0);
+                // Otherwise, assume still missing while within the trust period, rather than asking the repository again
+                result.setAuthoritative(cachedMetadata.getAgeMillis() == 0 || cachedMetadata.getAgeMillis() < missingModuleTrustPeriodMillis);
                 return;
             }
             ModuleComponentResolveMetadata metadata = getProcessedMetadata(cachedMetadata);
@@ -70,7 +70,7 @@ public class ModuleMetadataStore {
                 try {
                     KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile));
                     try {
-                        moduleMetadataSerializer.write(encoder, metadata);
+                        moduleMetadataSerializer.write(new StringDeduplicatingEncoder(encoder), metadata);
                     } finally {
                         encoder.close();
                     }
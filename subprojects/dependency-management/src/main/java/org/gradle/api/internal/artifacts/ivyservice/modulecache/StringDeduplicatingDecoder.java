@@ -23,10 +23,16 @@ import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Reads strings written by a {@link StringDeduplicatingEncoder}, interning each distinct string once.
+ */
 class StringDeduplicatingDecoder implements Decoder, Closeable {
     private final Decoder delegate;
     private final Interner<String> stringInterner;
+    private final List<String> strings = new ArrayList<String>();
 
     StringDeduplicatingDecoder(Decoder delegate, Interner<String> stringInterner) {
         this.delegate = delegate;
@@ -65,17 +71,26 @@ class StringDeduplicatingDecoder implements Decoder, Closeable {
 
     @Override
     public String readString() throws EOFException, IOException {
-        return stringInterner.intern(delegate.readString());
+        String str = readNullableString();
+        if (str == null) {
+            throw new IOException("Unexpected null string.");
+        }
+        return str;
     }
 
     @Override
     @Nullable
     public String readNullableString() throws EOFException, IOException {
-        String str = delegate.readNullableString();
-        if (str != null) {
-            str = stringInterner.intern(str);
+        int reference = delegate.readSmallInt();
+        if (reference == StringDeduplicatingEncoder.NULL_STRING) {
+            return null;
         }
-        return str;
+        if (reference == StringDeduplicatingEncoder.NEW_STRING) {
+            String str = stringInterner.intern(delegate.readString());
+            strings.add(str);
+            return str;
+        }
+        return strings.get(reference - StringDeduplicatingEncoder.FIRST_STRING_REFERENCE);
     }
 
     @Override
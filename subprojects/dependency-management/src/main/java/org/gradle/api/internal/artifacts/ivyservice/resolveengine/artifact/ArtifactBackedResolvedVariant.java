@@ -36,26 +36,28 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifac
 class ArtifactBackedResolvedVariant implements ResolvedVariant {
     private final DisplayName displayName;
     private final AttributeContainerInternal attributes;
+    private final Collection<? extends ResolvableArtifact> resolvableArtifacts;
     private final ResolvedArtifactSet artifacts;
 
-    private ArtifactBackedResolvedVariant(DisplayName displayName, AttributeContainerInternal attributes, ResolvedArtifactSet artifacts) {
+    private ArtifactBackedResolvedVariant(DisplayName displayName, AttributeContainerInternal attributes, Collection<? extends ResolvableArtifact> resolvableArtifacts, ResolvedArtifactSet artifacts) {
         this.displayName = displayName;
         this.attributes = attributes;
+        this.resolvableArtifacts = resolvableArtifacts;
         this.artifacts = artifacts;
     }
 
     public static ResolvedVariant create(DisplayName displayName, AttributeContainerInternal attributes, Collection<? extends ResolvableArtifact> artifacts) {
         if (artifacts.isEmpty()) {
-            return new ArtifactBackedResolvedVariant(displayName, attributes, EMPTY);
+            return new ArtifactBackedResolvedVariant(displayName, attributes, artifacts, EMPTY);
         }
         if (artifacts.size() == 1) {
-            return new ArtifactBackedResolvedVariant(displayName, attributes, new SingleArtifactSet(displayName, attributes, artifacts.iterator().next()));
+            return new ArtifactBackedResolvedVariant(displayName, attributes, artifacts, new SingleArtifactSet(displayName, attributes, artifacts.iterator().next()));
         }
         List<SingleArtifactSet> artifactSets = new ArrayList<SingleArtifactSet>();
         for (ResolvableArtifact artifact : artifacts) {
             artifactSets.add(new SingleArtifactSet(displayName, attributes, artifact));
         }
-        return new ArtifactBackedResolvedVariant(displayName, attributes, CompositeResolvedArtifactSet.of(artifactSets));
+        return new ArtifactBackedResolvedVariant(displayName, attributes, artifacts, CompositeResolvedArtifactSet.of(artifactSets));
     }
 
     @Override
@@ -78,6 +80,10 @@ class ArtifactBackedResolvedVariant implements ResolvedVariant {
         return attributes;
     }
 
+    Collection<? extends ResolvableArtifact> getResolvableArtifacts() {
+        return resolvableArtifacts;
+    }
+
     private static class SingleArtifactSet implements ResolvedArtifactSet, ResolvedArtifactSet.Completion {
         private final DisplayName variantName;
         private final AttributeContainer variantAttributes;
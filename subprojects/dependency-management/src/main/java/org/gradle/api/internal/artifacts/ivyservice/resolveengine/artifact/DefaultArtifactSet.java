@@ -24,6 +24,7 @@ import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
 import org.gradle.api.internal.artifacts.transform.VariantSelector;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
@@ -69,12 +70,12 @@ public abstract class DefaultArtifactSet implements ArtifactSet, ResolvedVariant
     public static ArtifactSet multipleVariants(ComponentIdentifier componentIdentifier, ModuleVersionIdentifier ownerId, ModuleSource moduleSource, ModuleExclusion exclusions, Set<? extends VariantResolveMetadata> variants, AttributesSchemaInternal schema, ArtifactResolver artifactResolver, Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts, ArtifactTypeRegistry artifactTypeRegistry, ImmutableAttributes selectionAttributes) {
         if (variants.size() == 1) {
             VariantResolveMetadata variantMetadata = variants.iterator().next();
-            ResolvedVariant resolvedVariant = toResolvedVariant(variantMetadata, ownerId, moduleSource, exclusions, artifactResolver, allResolvedArtifacts, artifactTypeRegistry);
+            ResolvedVariant resolvedVariant = toResolvedVariant(variantMetadata, artifactTypeRegistry.mapAttributesFor(variantMetadata), ownerId, moduleSource, exclusions, artifactResolver, allResolvedArtifacts);
             return new SingleVariantArtifactSet(componentIdentifier, schema, resolvedVariant, selectionAttributes);
         }
         ImmutableSet.Builder<ResolvedVariant> result = ImmutableSet.builder();
         for (VariantResolveMetadata variant : variants) {
-            ResolvedVariant resolvedVariant = toResolvedVariant(variant, ownerId, moduleSource, exclusions, artifactResolver, allResolvedArtifacts, artifactTypeRegistry);
+            ResolvedVariant resolvedVariant = toResolvedVariant(variant, artifactTypeRegistry.mapAttributesFor(variant), ownerId, moduleSource, exclusions, artifactResolver, allResolvedArtifacts);
             result.add(resolvedVariant);
         }
         return new MultipleVariantArtifactSet(componentIdentifier, schema, result.build(), selectionAttributes);
@@ -82,17 +83,36 @@ public abstract class DefaultArtifactSet implements ArtifactSet, ResolvedVariant
 
     public static ArtifactSet singleVariant(ComponentIdentifier componentIdentifier, ModuleVersionIdentifier ownerId, DisplayName displayName, Collection<? extends ComponentArtifactMetadata> artifacts, ModuleSource moduleSource, ModuleExclusion exclusions, AttributesSchemaInternal schema, ArtifactResolver artifactResolver, Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts, ArtifactTypeRegistry artifactTypeRegistry, ImmutableAttributes selectionAttributes) {
         VariantResolveMetadata variantMetadata = new DefaultVariantMetadata(displayName, ImmutableAttributes.EMPTY, ImmutableList.copyOf(artifacts), ImmutableCapabilities.EMPTY);
-        ResolvedVariant resolvedVariant = toResolvedVariant(variantMetadata, ownerId, moduleSource, exclusions, artifactResolver, allResolvedArtifacts, artifactTypeRegistry);
+        ResolvedVariant resolvedVariant = toResolvedVariant(variantMetadata, artifactTypeRegistry.mapAttributesFor(variantMetadata), ownerId, moduleSource, exclusions, artifactResolver, allResolvedArtifacts);
         return new SingleVariantArtifactSet(componentIdentifier, schema, resolvedVariant, selectionAttributes);
     }
 
-    private static ResolvedVariant toResolvedVariant(VariantResolveMetadata variant, ModuleVersionIdentifier ownerId, ModuleSource moduleSource, ModuleExclusion exclusions, ArtifactResolver artifactResolver, Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts, ArtifactTypeRegistry artifactTypeRegistry) {
+    /**
+     * Recreates the artifact set of a component from variants recorded by a previous resolution. The attributes of the variants already include any artifact type mappings.
+     */
+    public static ArtifactSet recordedVariants(ComponentIdentifier componentIdentifier, ModuleVersionIdentifier ownerId, ModuleSource moduleSource, List<? extends VariantResolveMetadata> variants, AttributesSchemaInternal schema, ArtifactResolver artifactResolver, Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts, ImmutableAttributes selectionAttributes) {
+        ImmutableSet.Builder<ResolvedVariant> result = ImmutableSet.builder();
+        for (VariantResolveMetadata variant : variants) {
+            result.add(toResolvedVariant(variant, variant.getAttributes().asImmutable(), ownerId, moduleSource, ModuleExclusions.excludeNone(), artifactResolver, allResolvedArtifacts));
+        }
+        return new MultipleVariantArtifactSet(componentIdentifier, schema, result.build(), selectionAttributes);
+    }
+
+    /**
+     * Returns the artifacts of the given variant of an artifact set created by this class.
+     */
+    public static Collection<? extends ResolvableArtifact> getArtifacts(ResolvedVariant variant) {
+        return ((ArtifactBackedResolvedVariant) variant).getResolvableArtifacts();
+    }
+
+    public ComponentIdentifier getComponentIdentifier() {
+        return componentIdentifier;
+    }
+
+    private static ResolvedVariant toResolvedVariant(VariantResolveMetadata variant, ImmutableAttributes attributes, ModuleVersionIdentifier ownerId, ModuleSource moduleSource, ModuleExclusion exclusions, ArtifactResolver artifactResolver, Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts) {
         List<? extends ComponentArtifactMetadata> artifacts = variant.getArtifacts();
         ImmutableSet.Builder<ResolvableArtifact> resolvedArtifacts = ImmutableSet.builder();
 
-        // Apply any artifact type mappings to the attributes of the variant
-        ImmutableAttributes attributes = artifactTypeRegistry.mapAttributesFor(variant);
-
         for (ComponentArtifactMetadata artifact : artifacts) {
             IvyArtifactName artifactName = artifact.getName();
             if (exclusions.excludeArtifact(ownerId.getModule(), artifactName)) {
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -55,22 +57,27 @@ public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
     private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = new ExcludeAllModulesSpec();
 
+    // The number of combined exclusions remembered by each cache. Combinations can grow quadratically with the number of exclude rules in the graph,
+    // so these caches are bounded. Exclusions are compared by value rather than by identity, so a result that is evicted and recreated is still equal to the original.
+    private static final int MAX_CACHED_COMBINATIONS = 10000;
+
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
-    private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
-    private final Map<ImmutableList<ExcludeMetadata>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
-    private final Map<ImmutableSet<AbstractModuleExclusion>, IntersectionExclusion> intersectionCache = Maps.newConcurrentMap();
-    private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
+    private final Cache<MergeOperation, AbstractModuleExclusion> mergeCache = newCombinationCache();
+    private final Cache<ImmutableList<ExcludeMetadata>, AbstractModuleExclusion> excludeAnyCache = newCombinationCache();
+    private final Cache<ImmutableSet<AbstractModuleExclusion>, IntersectionExclusion> intersectionCache = newCombinationCache();
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
     private final Map<String, GroupNameExcludeSpec> groupNameSpecs = Maps.newConcurrentMap();
 
-    private final Object mergeOperationLock = new Object();
-
     public ModuleExclusions(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
         this.moduleIdentifierFactory = moduleIdentifierFactory;
     }
 
+    private static <K, V> Cache<K, V> newCombinationCache() {
+        return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_COMBINATIONS).build();
+    }
+
     /**
      * Returns a spec that excludes nothing.
      */
@@ -95,7 +102,7 @@ public class ModuleExclusions {
         if (excludes.isEmpty()) {
             return EXCLUDE_NONE;
         }
-        AbstractModuleExclusion exclusion = excludeAnyCache.get(excludes);
+        AbstractModuleExclusion exclusion = excludeAnyCache.getIfPresent(excludes);
         if (exclusion != null) {
             return exclusion;
         }
@@ -263,40 +270,22 @@ public class ModuleExclusions {
             return one;
         }
         if (one.canMerge() && other.canMerge()) {
-            AbstractModuleExclusion[] oneFilters = one.getFilters().elements;
-            AbstractModuleExclusion[] otherFilters = other.getFilters().elements;
-            if (Arrays.equals(oneFilters, otherFilters)) {
+            ImmutableModuleExclusionSet oneFilters = one.getFilters();
+            ImmutableModuleExclusionSet otherFilters = other.getFilters();
+            if (Arrays.equals(oneFilters.elements, otherFilters.elements)) {
                 return one;
             }
 
-            MergeOperation merge = mergeOperation(oneFilters, otherFilters);
-            AbstractModuleExclusion exclusion = mergeCache.get(merge);
+            MergeOperation merge = new MergeOperation(oneFilters, otherFilters);
+            AbstractModuleExclusion exclusion = mergeCache.getIfPresent(merge);
             if (exclusion != null) {
                 return exclusion;
             }
-            return mergeAndCacheResult(merge, oneFilters, otherFilters);
+            return mergeAndCacheResult(merge, oneFilters.elements, otherFilters.elements);
         }
         return null;
     }
 
-    private MergeOperation mergeOperation(AbstractModuleExclusion[] one, AbstractModuleExclusion[] two) {
-        synchronized (mergeOperationLock) {
-            Map<AbstractModuleExclusion[], MergeOperation> oneMap = mergeOperationCache.get(one);
-            if (oneMap == null) {
-                oneMap = Maps.newIdentityHashMap();
-                mergeOperationCache.put(one, oneMap);
-
-            }
-            MergeOperation mergeOperation = oneMap.get(two);
-            if (mergeOperation != null) {
-                return mergeOperation;
-            }
-            mergeOperation = new MergeOperation(one, two);
-            oneMap.put(two, mergeOperation);
-            return mergeOperation;
-        }
-    }
-
     private AbstractModuleExclusion mergeAndCacheResult(MergeOperation merge, AbstractModuleExclusion[] oneFilters, AbstractModuleExclusion[] otherFilters) {
         AbstractModuleExclusion exclusion; // Merge the exclude rules from both specs into a single union spec.
         final BitSet remaining = new BitSet(otherFilters.length);
@@ -322,7 +311,7 @@ public class ModuleExclusions {
     }
 
     private IntersectionExclusion asIntersection(ImmutableSet<AbstractModuleExclusion> excludes) {
-        IntersectionExclusion cached = intersectionCache.get(excludes);
+        IntersectionExclusion cached = intersectionCache.getIfPresent(excludes);
         if (cached == null) {
             cached = new IntersectionExclusion(new ImmutableModuleExclusionSet(excludes));
             intersectionCache.put(excludes, cached);
@@ -414,15 +403,14 @@ public class ModuleExclusions {
     }
 
     private static final class MergeOperation {
-        private final AbstractModuleExclusion[] one;
-        private final AbstractModuleExclusion[] two;
+        private final ImmutableModuleExclusionSet one;
+        private final ImmutableModuleExclusionSet two;
         private final int hashCode;
 
-
-        private MergeOperation(AbstractModuleExclusion[] one, AbstractModuleExclusion[] two) {
+        private MergeOperation(ImmutableModuleExclusionSet one, ImmutableModuleExclusionSet two) {
             this.one = one;
             this.two = two;
-            this.hashCode = 31 * Arrays.hashCode(one) + Arrays.hashCode(two);
+            this.hashCode = 31 * one.hashCode() + two.hashCode();
         }
 
         @Override
@@ -435,7 +423,7 @@ public class ModuleExclusions {
             }
 
             MergeOperation that = (MergeOperation) o;
-            return Arrays.equals(one, that.one) && Arrays.equals(two, that.two);
+            return hashCode == that.hashCode && one.equals(that.one) && two.equals(that.two);
         }
 
         @Override
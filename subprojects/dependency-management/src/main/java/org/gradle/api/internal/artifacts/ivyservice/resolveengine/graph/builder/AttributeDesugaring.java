@@ -27,13 +27,13 @@ import org.gradle.internal.component.external.model.DefaultModuleComponentSelect
 
 import java.util.Set;
 
-abstract class AttributeDesugaring {
+public abstract class AttributeDesugaring {
     /**
      * Desugars attributes so that what we're going to serialize consists only of String or Boolean attributes,
      * and not their original types.
      * @return desugared attributes
      */
-    static ImmutableAttributes desugar(ImmutableAttributes attributes, ImmutableAttributesFactory attributesFactory) {
+    public static ImmutableAttributes desugar(ImmutableAttributes attributes, ImmutableAttributesFactory attributesFactory) {
         if (attributes.isEmpty()) {
             return attributes;
         }
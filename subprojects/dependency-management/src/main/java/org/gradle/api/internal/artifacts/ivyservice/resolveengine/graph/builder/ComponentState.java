@@ -56,7 +56,7 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
     private volatile ComponentResolveMetadata metadata;
 
     private ComponentSelectionState state = ComponentSelectionState.Selectable;
-    private ModuleVersionResolveException metadataResolveFailure;
+    private volatile ModuleVersionResolveException metadataResolveFailure;
     private SelectorState firstSelectedBy;
     private DependencyGraphBuilder.VisitState visitState = DependencyGraphBuilder.VisitState.NotSeen;
 
@@ -162,7 +162,15 @@ public class ComponentState implements ComponentResolutionState, DependencyGraph
         if (alreadyResolved()) {
             return;
         }
+        // The metadata may be downloaded in the background while the graph is traversed
+        synchronized (this) {
+            if (!alreadyResolved()) {
+                doResolve();
+            }
+        }
+    }
 
+    private void doResolve() {
         // Any metadata overrides (e.g classifier/artifacts/client-module) will be taken from the first dependency that referenced this component
         ComponentOverrideMetadata componentOverrideMetadata = DefaultComponentOverrideMetadata.forDependency(firstSelectedBy.getDependencyMetadata());
 
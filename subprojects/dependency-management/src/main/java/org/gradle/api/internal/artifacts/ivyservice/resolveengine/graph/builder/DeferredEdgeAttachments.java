@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The outgoing edges of visited nodes, whose target versions have been selected but which have not yet been attached to their target nodes.
+ * Attaching an edge requires the metadata of its target component, so deferring the attachment until several nodes have been visited allows
+ * the metadata of all their targets to be downloaded concurrently, rather than waiting for the downloads of each node in turn.
+ *
+ * <p>Edges are attached in the order their nodes were visited, so that the graph is the same as when each node's edges are attached straight away.</p>
+ */
+class DeferredEdgeAttachments {
+    private final List<NodeState> nodes = Lists.newArrayList();
+    private final List<List<EdgeState>> edges = Lists.newArrayList();
+    private final Set<ModuleResolveState> targetModules = Sets.newHashSet();
+
+    void add(NodeState node, List<EdgeState> dependencies) {
+        nodes.add(node);
+        edges.add(Lists.newArrayList(dependencies));
+        for (EdgeState dependency : dependencies) {
+            targetModules.add(dependency.getSelector().getTargetModule());
+        }
+    }
+
+    boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Returns true when a deferred edge may be attached to the given node. The node must not be visited until these edges have been attached,
+     * as they can change the exclusions that apply to its outgoing edges.
+     */
+    boolean mayTarget(NodeState node) {
+        return targetModules.contains(node.getComponent().getModule());
+    }
+
+    /**
+     * Attaches the deferred edges that are still part of the graph.
+     */
+    void attachAll() {
+        for (int i = 0; i < nodes.size(); i++) {
+            Set<EdgeState> outgoingEdges = Sets.newIdentityHashSet();
+            outgoingEdges.addAll(nodes.get(i).getOutgoingEdges());
+            for (EdgeState dependency : edges.get(i)) {
+                ModuleResolveState targetModule = dependency.getSelector().getTargetModule();
+                if (!outgoingEdges.contains(dependency)) {
+                    // The node has been deselected or queued for traversal again since it was visited
+                    targetModule.removeUnattachedDependency(dependency);
+                } else if (targetModule.getUnattachedDependencies().contains(dependency)) {
+                    // Otherwise, the edge has already been attached when the selected version of its target module changed
+                    dependency.attachToTargetConfigurations();
+                }
+            }
+        }
+        nodes.clear();
+        edges.clear();
+        targetModules.clear();
+    }
+}
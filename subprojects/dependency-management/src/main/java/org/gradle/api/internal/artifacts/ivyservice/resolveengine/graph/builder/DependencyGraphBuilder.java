@@ -54,14 +54,22 @@ import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DependencyGraphBuilder {
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
+    /**
+     * The maximum number of metadata downloads in flight across the whole graph. When not set, metadata is only downloaded in parallel among the outgoing edges of a node.
+     */
+    public static final String PIPELINED_METADATA_DOWNLOADS_PROPERTY = "org.gradle.internal.dependency-resolution.pipelined-metadata-downloads";
+
     private final ModuleConflictHandler moduleConflictHandler;
     private final Spec<? super DependencyMetadata> edgeFilter;
     private final ResolveContextToComponentResolver moduleResolver;
@@ -76,6 +84,7 @@ public class DependencyGraphBuilder {
     private final ImmutableAttributesFactory attributesFactory;
     private final CapabilitiesConflictHandler capabilitiesConflictHandler;
     private final VersionSelectorScheme versionSelectorScheme;
+    private final int maxPipelinedMetadataDownloads;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
@@ -87,6 +96,19 @@ public class DependencyGraphBuilder {
                                   BuildOperationExecutor buildOperationExecutor, ModuleReplacementsData moduleReplacementsData,
                                   DependencySubstitutionApplicator dependencySubstitutionApplicator, ComponentSelectorConverter componentSelectorConverter,
                                   ImmutableAttributesFactory attributesFactory, VersionSelectorScheme versionSelectorScheme) {
+        this(componentIdResolver, componentMetaDataResolver, resolveContextToComponentResolver, moduleConflictHandler, capabilitiesConflictHandler, edgeFilter, attributesSchema, moduleExclusions, buildOperationExecutor, moduleReplacementsData, dependencySubstitutionApplicator, componentSelectorConverter, attributesFactory, versionSelectorScheme, 0);
+    }
+
+    public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
+                                  ResolveContextToComponentResolver resolveContextToComponentResolver,
+                                  ModuleConflictHandler moduleConflictHandler,
+                                  CapabilitiesConflictHandler capabilitiesConflictHandler,
+                                  Spec<? super DependencyMetadata> edgeFilter,
+                                  AttributesSchemaInternal attributesSchema,
+                                  ModuleExclusions moduleExclusions,
+                                  BuildOperationExecutor buildOperationExecutor, ModuleReplacementsData moduleReplacementsData,
+                                  DependencySubstitutionApplicator dependencySubstitutionApplicator, ComponentSelectorConverter componentSelectorConverter,
+                                  ImmutableAttributesFactory attributesFactory, VersionSelectorScheme versionSelectorScheme, int maxPipelinedMetadataDownloads) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -101,6 +123,7 @@ public class DependencyGraphBuilder {
         this.attributesFactory = attributesFactory;
         this.capabilitiesConflictHandler = capabilitiesConflictHandler;
         this.versionSelectorScheme = versionSelectorScheme;
+        this.maxPipelinedMetadataDownloads = maxPipelinedMetadataDownloads;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -123,14 +146,40 @@ public class DependencyGraphBuilder {
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
     private void traverseGraph(final ResolveState resolveState) {
+        if (maxPipelinedMetadataDownloads <= 0) {
+            traverseGraph(resolveState, null);
+            return;
+        }
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> buildOperationQueue) {
+                try {
+                    traverseGraph(resolveState, new PipelinedMetadataDownloads(buildOperationQueue, metaDataResolver, maxPipelinedMetadataDownloads));
+                } catch (RuntimeException e) {
+                    // Rethrown as is, rather than as a failure to populate the queue
+                    failure.set(e);
+                }
+            }
+        });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void traverseGraph(final ResolveState resolveState, @Nullable PipelinedMetadataDownloads pipelinedDownloads) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
         final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMap();
+        final DeferredEdgeAttachments deferredAttachments = new DeferredEdgeAttachments();
 
         final PendingDependenciesHandler pendingDependenciesHandler = new DefaultPendingDependenciesHandler();
 
-        while (resolveState.peek() != null || moduleConflictHandler.hasConflicts() || capabilitiesConflictHandler.hasConflicts()) {
-            if (resolveState.peek() != null) {
+        while (resolveState.peek() != null || !deferredAttachments.isEmpty() || moduleConflictHandler.hasConflicts() || capabilitiesConflictHandler.hasConflicts()) {
+            if (pipelinedDownloads != null) {
+                pipelinedDownloads.submitWaiting();
+            }
+            if (resolveState.peek() != null && !deferredAttachments.mayTarget(resolveState.peek())) {
                 final NodeState node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
 
@@ -140,7 +189,16 @@ public class DependencyGraphBuilder {
                 // Initialize and collect any new outgoing edges of this node
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies, pendingDependenciesHandler);
-                resolveEdges(node, dependencies, resolveState, componentIdentifierCache);
+                if (pipelinedDownloads == null) {
+                    resolveEdges(node, dependencies, resolveState, componentIdentifierCache);
+                } else if (!dependencies.isEmpty()) {
+                    // Select the target versions, which starts downloading their metadata, and attach the edges once the queued nodes have all been visited
+                    performSelectionSerially(dependencies, resolveState, componentIdentifierCache, pipelinedDownloads);
+                    deferredAttachments.add(node, dependencies);
+                }
+            } else if (!deferredAttachments.isEmpty()) {
+                // The metadata of the targets of all the nodes visited since the last attachment is now being downloaded concurrently
+                deferredAttachments.attachAll();
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 if (moduleConflictHandler.hasConflicts()) {
@@ -185,13 +243,13 @@ public class DependencyGraphBuilder {
         if (dependencies.isEmpty()) {
             return;
         }
-        performSelectionSerially(dependencies, resolveState);
+        performSelectionSerially(dependencies, resolveState, componentIdentifierCache, null);
         maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies);
         attachToTargetRevisionsSerially(dependencies);
 
     }
 
-    private void performSelectionSerially(List<EdgeState> dependencies, ResolveState resolveState) {
+    private void performSelectionSerially(List<EdgeState> dependencies, ResolveState resolveState, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, @Nullable PipelinedMetadataDownloads pipelinedDownloads) {
         for (EdgeState dependency : dependencies) {
             SelectorState selector = dependency.getSelector();
             ModuleResolveState module = selector.getTargetModule();
@@ -202,6 +260,12 @@ public class DependencyGraphBuilder {
             }
 
             module.addUnattachedDependency(dependency);
+
+            ComponentState selected = module.getSelected();
+            if (pipelinedDownloads != null && selected != null) {
+                // Start downloading the metadata now, rather than when the node is visited
+                pipelinedDownloads.selected(selected, toComponentId(selected.getId(), componentIdentifierCache));
+            }
         }
     }
 
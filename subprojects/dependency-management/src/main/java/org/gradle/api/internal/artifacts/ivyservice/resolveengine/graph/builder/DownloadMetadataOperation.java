@@ -19,16 +19,34 @@ import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class DownloadMetadataOperation implements RunnableBuildOperation {
     private final ComponentState state;
+    private final AtomicInteger inFlight;
 
     DownloadMetadataOperation(ComponentState state) {
+        this(state, null);
+    }
+
+    /**
+     * @param inFlight a counter of in-flight downloads, decremented once the metadata has been resolved.
+     */
+    DownloadMetadataOperation(ComponentState state, @Nullable AtomicInteger inFlight) {
         this.state = state;
+        this.inFlight = inFlight;
     }
 
     @Override
     public void run(BuildOperationContext context) {
-        state.getMetadata();
+        try {
+            state.getMetadata();
+        } finally {
+            if (inFlight != null) {
+                inFlight.decrementAndGet();
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the metadata of components as soon as they are selected anywhere in the graph, rather than only among the outgoing edges of the node being visited.
+ * The graph is still traversed by a single thread, which waits for a download in flight when it needs the metadata of a component, or resolves the metadata
+ * itself when the download has not started yet.
+ *
+ * <p>Must only be used by the thread traversing the graph.</p>
+ */
+class PipelinedMetadataDownloads {
+    private final BuildOperationQueue<RunnableBuildOperation> queue;
+    private final ComponentMetaDataResolver metaDataResolver;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Deque<ComponentState> waiting = new ArrayDeque<ComponentState>();
+    private final Set<ComponentState> seen = Sets.newIdentityHashSet();
+
+    PipelinedMetadataDownloads(BuildOperationQueue<RunnableBuildOperation> queue, ComponentMetaDataResolver metaDataResolver, int maxInFlight) {
+        this.queue = queue;
+        this.metaDataResolver = metaDataResolver;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Schedules the download of the metadata of a newly selected component, unless it is already available or cheap to fetch.
+     */
+    void selected(ComponentState component, ComponentIdentifier componentId) {
+        if (component.alreadyResolved() || !seen.add(component) || metaDataResolver.isFetchingMetadataCheap(componentId)) {
+            return;
+        }
+        waiting.add(component);
+        submitWaiting();
+    }
+
+    /**
+     * Submits waiting downloads, in the order the components were selected, while fewer than the maximum number of downloads are in flight.
+     */
+    void submitWaiting() {
+        while (!waiting.isEmpty() && inFlight.get() < maxInFlight) {
+            ComponentState component = waiting.poll();
+            // Skip components that have been deselected by conflict resolution, or that were needed by the graph before their download started
+            if (component.isSelected() && !component.alreadyResolved()) {
+                inFlight.incrementAndGet();
+                queue.add(new DownloadMetadataOperation(component, inFlight));
+            }
+        }
+    }
+}
@@ -43,6 +43,7 @@ import org.gradle.internal.time.Timer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -78,6 +79,15 @@ public class StreamingResolutionResultBuilder implements DependencyGraphVisitor
         return new DefaultResolutionResult(rootSource);
     }
 
+    /**
+     * Creates a result from data written by a builder for a graph that was resolved without failures.
+     */
+    public static ResolutionResult loadResult(BinaryStore.BinaryData data, Store<ResolvedComponentResult> cache, ImmutableModuleIdentifierFactory moduleIdentifierFactory, AttributeContainerSerializer attributeContainerSerializer) {
+        Map<ComponentSelector, ModuleVersionResolveException> failures = Collections.emptyMap();
+        RootFactory rootSource = new RootFactory(data, failures, cache, new ComponentSelectorSerializer(attributeContainerSerializer), new DependencyResultSerializer(), new ComponentResultSerializer(moduleIdentifierFactory, attributeContainerSerializer));
+        return new DefaultResolutionResult(rootSource);
+    }
+
     @Override
     public void start(final RootGraphNode root) {
         componentResultSerializer.reset();
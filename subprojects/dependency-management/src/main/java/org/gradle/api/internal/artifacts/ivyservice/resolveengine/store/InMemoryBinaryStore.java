@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.cache.internal.BinaryStore;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A binary store that keeps the data of a single resolution result in memory, so that it can be written to the resolved graph cache.
+ */
+public class InMemoryBinaryStore implements BinaryStore {
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(output);
+    private byte[] bytes;
+
+    public void write(WriteAction write) {
+        if (bytes != null) {
+            throw new IllegalStateException("Cannot write to binary store after it is done.");
+        }
+        try {
+            write.write(encoder);
+        } catch (Exception e) {
+            throw new RuntimeException("Problems writing to " + this, e);
+        }
+    }
+
+    public BinaryData done() {
+        if (bytes == null) {
+            encoder.flush();
+            bytes = output.toByteArray();
+        }
+        return read(bytes);
+    }
+
+    /**
+     * Returns the data written to this store. Can only be called after {@link #done()}.
+     */
+    public byte[] getBytes() {
+        if (bytes == null) {
+            throw new IllegalStateException("Binary store is not done yet.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns binary data that reads the given bytes, previously written to an in-memory binary store.
+     */
+    public static BinaryData read(byte[] bytes) {
+        return new ByteArrayBinaryData(bytes);
+    }
+
+    public String toString() {
+        return "In-memory binary store";
+    }
+
+    private static class ByteArrayBinaryData implements BinaryData {
+        private final byte[] bytes;
+        private Decoder decoder;
+
+        ByteArrayBinaryData(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public <T> T read(ReadAction<T> readAction) {
+            try {
+                if (decoder == null) {
+                    decoder = new KryoBackedDecoder(new ByteArrayInputStream(bytes));
+                }
+                return readAction.read(decoder);
+            } catch (Exception e) {
+                throw new RuntimeException("Problems reading data from " + this, e);
+            }
+        }
+
+        public void close() {
+            decoder = null;
+        }
+
+        public String toString() {
+            return "In-memory binary data (" + bytes.length + " bytes)";
+        }
+    }
+}
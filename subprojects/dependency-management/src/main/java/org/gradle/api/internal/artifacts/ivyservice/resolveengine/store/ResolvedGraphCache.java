@@ -0,0 +1,649 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.FeaturePreviews;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.Module;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.dynamicversions.DefaultResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedVariant;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.AttributeDesugaring;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.EmptySchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.Describables;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactMetadata;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.ImmutableCapabilities;
+import org.gradle.internal.component.external.model.PreferJavaRuntimeVariant;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DefaultIvyArtifactName;
+import org.gradle.internal.component.model.DefaultVariantMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.component.model.VariantResolveMetadata;
+import org.gradle.internal.component.local.model.LocalFileDependencyMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.io.ClassLoaderObjectInputStream;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.BuildCommencedTimeProvider;
+import org.gradle.util.GradleVersion;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persists the resolution results and the artifact sets of configurations across builds, keyed by a hash of the inputs of the resolution.
+ *
+ * <p>Only configurations whose result is fully determined by the hashed inputs and the metadata in the dependency cache can be cached: configurations that
+ * only declare dependencies on external modules, and that are not affected by dependency substitution or {@code eachDependency} rules, component selection,
+ * component metadata rules or dependency locking. A cached result is discarded when the cache policy of the configuration requires the version list of a dynamic selector or the
+ * metadata of one of the resolved modules to be refreshed, in the same way as the corresponding entries of the dependency cache expire.</p>
+ *
+ * <p>The artifact sets are recorded as the variants of each resolved module, along with the module source used to download their artifacts, so that the files of a loaded graph
+ * can be resolved without traversing the graph again. A graph whose artifacts cannot be recorded, such as file dependencies or artifacts located by URL, is not cached.</p>
+ */
+public class ResolvedGraphCache {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.resolved-graph-cache";
+
+    private final CacheLockingManager cacheLockingManager;
+    private final BuildCommencedTimeProvider timeProvider;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final FeaturePreviews featurePreviews;
+    private final ImmutableAttributesFactory attributesFactory;
+    private final AttributeContainerSerializer attributeContainerSerializer;
+    private final Set<HashCode> recordedKeys = Sets.newConcurrentHashSet();
+    private PersistentIndexedCache<String, CachedGraph> cache;
+
+    public ResolvedGraphCache(CacheLockingManager cacheLockingManager, BuildCommencedTimeProvider timeProvider, VersionSelectorScheme versionSelectorScheme, ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                              FeaturePreviews featurePreviews, ImmutableAttributesFactory attributesFactory, AttributeContainerSerializer attributeContainerSerializer) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.timeProvider = timeProvider;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.featurePreviews = featurePreviews;
+        this.attributesFactory = attributesFactory;
+        this.attributeContainerSerializer = attributeContainerSerializer;
+    }
+
+    private synchronized PersistentIndexedCache<String, CachedGraph> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolved-graphs", BaseSerializerFactory.STRING_SERIALIZER, new CachedGraphSerializer());
+        }
+        return cache;
+    }
+
+    /**
+     * Calculates the key of the resolution result of the given configuration.
+     *
+     * @return the key, or null if the resolution result of the configuration cannot be cached.
+     */
+    @Nullable
+    public HashCode keyFor(ConfigurationInternal configuration, List<ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler, AttributesSchemaInternal attributesSchema) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.resolveGraphToDetermineTaskDependencies()
+            || resolutionStrategy.isDependencyLockingEnabled()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || resolutionStrategy.getDependencySubstitution().hasAnyRules()
+            || metadataHandler.getDependencySubstitutionRules().hasRules()
+            || metadataHandler.getComponentMetadataProcessor().hasRules()) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(GradleVersion.current().getVersion());
+        for (FeaturePreviews.Feature feature : FeaturePreviews.Feature.values()) {
+            hasher.putBoolean(featurePreviews.isFeatureEnabled(feature));
+        }
+        Module module = configuration.getModule();
+        putNullableString(hasher, module.getProjectPath());
+        putNullableString(hasher, module.getGroup());
+        putNullableString(hasher, module.getName());
+        putNullableString(hasher, module.getVersion());
+        putNullableString(hasher, module.getStatus());
+        hasher.putString(configuration.getName());
+        putAttributes(hasher, configuration.getAttributes());
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return null;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            if (moduleDependency.isChanging()) {
+                return null;
+            }
+            putNullableString(hasher, moduleDependency.getGroup());
+            hasher.putString(moduleDependency.getName());
+            putVersionConstraint(hasher, moduleDependency.getVersionConstraint());
+            putNullableString(hasher, moduleDependency.getReason());
+            hasher.putBoolean(moduleDependency.isTransitive());
+            hasher.putBoolean(moduleDependency.isForce());
+            putNullableString(hasher, moduleDependency.getTargetConfiguration());
+            putExcludeRules(hasher, moduleDependency.getExcludeRules());
+            hasher.putInt(moduleDependency.getArtifacts().size());
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                hasher.putString(artifact.getName());
+                putNullableString(hasher, artifact.getType());
+                putNullableString(hasher, artifact.getExtension());
+                putNullableString(hasher, artifact.getClassifier());
+                putNullableString(hasher, artifact.getUrl());
+            }
+            putAttributes(hasher, moduleDependency.getAttributes());
+        }
+        for (DependencyConstraint constraint : configuration.getAllDependencyConstraints()) {
+            putNullableString(hasher, constraint.getGroup());
+            hasher.putString(constraint.getName());
+            putVersionConstraint(hasher, constraint.getVersionConstraint());
+            putNullableString(hasher, constraint.getReason());
+            putAttributes(hasher, constraint.getAttributes());
+        }
+        for (Configuration inHierarchy : configuration.getHierarchy()) {
+            putExcludeRules(hasher, inHierarchy.getExcludeRules());
+        }
+
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putString(resolutionStrategy.getSortOrder().name());
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            putNullableString(hasher, forcedModule.getGroup());
+            hasher.putString(forcedModule.getName());
+            putNullableString(hasher, forcedModule.getVersion());
+        }
+        for (Attribute<?> attribute : attributesSchema.getAttributes()) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+        }
+        for (ResolutionAwareRepository repository : repositories) {
+            hasher.putString(repository.createResolver().getId());
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Loads the graph with the given key, if it has been cached and is still up-to-date according to the given cache policy.
+     */
+    @Nullable
+    public CachedGraph load(final HashCode key, CachePolicy cachePolicy, ModuleReplacementsData moduleReplacements) {
+        final PersistentIndexedCache<String, CachedGraph> cache = getCache();
+        CachedGraph cachedGraph = cacheLockingManager.useCache(new Factory<CachedGraph>() {
+            @Override
+            public CachedGraph create() {
+                return cache.get(key.toString());
+            }
+        });
+        if (cachedGraph == null || isExpired(cachedGraph, cachePolicy, moduleReplacements)) {
+            return null;
+        }
+        recordedKeys.add(key);
+        return cachedGraph;
+    }
+
+    /**
+     * Returns true when the graph with the given key has already been loaded or recorded during this build, so there is no need to record it again.
+     */
+    public boolean isRecorded(HashCode key) {
+        return recordedKeys.contains(key);
+    }
+
+    /**
+     * Stores the serialized resolution result of a configuration, along with the details of the resolved graph collected by the given recorder.
+     * The entry is not written when the cache already holds an up-to-date entry with the same content.
+     */
+    public void store(final HashCode key, byte[] result, Recorder recorder, final CachePolicy cachePolicy, final ModuleReplacementsData moduleReplacements) {
+        recordedKeys.add(key);
+        byte[] artifactSets = recorder.completeArtifactSets();
+        if (artifactSets == null) {
+            return;
+        }
+        List<CachedComponent> components = Lists.newArrayListWithCapacity(recorder.components.size());
+        for (ModuleVersionIdentifier id : recorder.components) {
+            components.add(new CachedComponent(id, recorder.dynamicModules.contains(id.getModule()), recorder.changingComponents.contains(id)));
+        }
+        final CachedGraph cachedGraph = new CachedGraph(timeProvider.getCurrentTime(), result, recorder.artifactSetCount, artifactSets, components);
+        final PersistentIndexedCache<String, CachedGraph> cache = getCache();
+        cacheLockingManager.useCache(new Runnable() {
+            @Override
+            public void run() {
+                CachedGraph existing = cache.get(key.toString());
+                if (existing == null || isExpired(existing, cachePolicy, moduleReplacements) || !existing.hasSameContent(cachedGraph)) {
+                    cache.put(key.toString(), cachedGraph);
+                }
+            }
+        });
+    }
+
+    /**
+     * Recreates the artifact sets of a loaded graph, indexed by their id. The files of the artifacts are resolved using the given resolver.
+     */
+    public List<ArtifactSet> loadArtifactSets(CachedGraph cachedGraph, ArtifactResolver artifactResolver) {
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(cachedGraph.artifactSets));
+            Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts = Maps.newHashMap();
+            List<ArtifactSet> artifactSets = Lists.newArrayListWithCapacity(cachedGraph.artifactSetCount);
+            for (int i = 0; i < cachedGraph.artifactSetCount; i++) {
+                ModuleComponentIdentifier componentId = DefaultModuleComponentIdentifier.newId(decoder.readString(), decoder.readString(), decoder.readString());
+                ModuleVersionIdentifier ownerId = new DefaultModuleVersionIdentifier(moduleIdentifierFactory.module(decoder.readString(), decoder.readString()), decoder.readString());
+                ModuleSource moduleSource = (ModuleSource) new ClassLoaderObjectInputStream(new ByteArrayInputStream(decoder.readBinary()), ModuleSource.class.getClassLoader()).readObject();
+                AttributesSchemaInternal schema = decoder.readBoolean() ? PreferJavaRuntimeVariant.schema() : EmptySchema.INSTANCE;
+                ImmutableAttributes selectionAttributes = attributeContainerSerializer.read(decoder);
+                int variantCount = decoder.readSmallInt();
+                List<VariantResolveMetadata> variants = Lists.newArrayListWithCapacity(variantCount);
+                for (int j = 0; j < variantCount; j++) {
+                    String displayName = decoder.readString();
+                    ImmutableAttributes attributes = attributeContainerSerializer.read(decoder);
+                    int artifactCount = decoder.readSmallInt();
+                    ImmutableList.Builder<ComponentArtifactMetadata> artifacts = ImmutableList.builder();
+                    for (int k = 0; k < artifactCount; k++) {
+                        IvyArtifactName artifactName = new DefaultIvyArtifactName(decoder.readString(), decoder.readString(), decoder.readNullableString(), decoder.readNullableString());
+                        artifacts.add(new DefaultModuleComponentArtifactMetadata(componentId, artifactName));
+                    }
+                    variants.add(new DefaultVariantMetadata(Describables.of(displayName), attributes, artifacts.build(), ImmutableCapabilities.EMPTY));
+                }
+                artifactSets.add(DefaultArtifactSet.recordedVariants(componentId, ownerId, moduleSource, variants, schema, artifactResolver, allResolvedArtifacts, selectionAttributes));
+            }
+            return artifactSets;
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private boolean isExpired(CachedGraph cachedGraph, CachePolicy cachePolicy, ModuleReplacementsData moduleReplacements) {
+        long ageMillis = timeProvider.getCurrentTime() - cachedGraph.timestamp;
+        for (CachedComponent component : cachedGraph.components) {
+            ModuleComponentIdentifier componentId = DefaultModuleComponentIdentifier.newId(component.id);
+            DefaultResolvedModuleVersion resolvedVersion = new DefaultResolvedModuleVersion(component.id);
+            if (moduleReplacements.participatesInReplacements(component.id.getModule())) {
+                return true;
+            }
+            if (component.changing ? cachePolicy.mustRefreshChangingModule(componentId, resolvedVersion, ageMillis) : cachePolicy.mustRefreshModule(componentId, resolvedVersion, ageMillis)) {
+                return true;
+            }
+            if (component.dynamic && cachePolicy.mustRefreshVersionList(component.id.getModule(), Collections.singleton(component.id), ageMillis)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Recorder newRecorder() {
+        return new Recorder(versionSelectorScheme, moduleIdentifierFactory, attributesFactory, attributeContainerSerializer);
+    }
+
+    private static void putVersionConstraint(Hasher hasher, VersionConstraint versionConstraint) {
+        putNullableString(hasher, versionConstraint.getBranch());
+        putNullableString(hasher, versionConstraint.getPreferredVersion());
+        hasher.putInt(versionConstraint.getRejectedVersions().size());
+        for (String rejectedVersion : versionConstraint.getRejectedVersions()) {
+            hasher.putString(rejectedVersion);
+        }
+    }
+
+    private static void putExcludeRules(Hasher hasher, Set<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            putNullableString(hasher, excludeRule.getGroup());
+            putNullableString(hasher, excludeRule.getModule());
+        }
+    }
+
+    private static void putAttributes(Hasher hasher, AttributeContainer attributes) {
+        List<Attribute<?>> keys = Ordering.usingToString().sortedCopy(attributes.keySet());
+        hasher.putInt(keys.size());
+        for (Attribute<?> attribute : keys) {
+            hasher.putString(attribute.getName());
+            hasher.putString(String.valueOf(attributes.getAttribute(attribute)));
+        }
+    }
+
+    private static void putNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putBoolean(false);
+        } else {
+            hasher.putBoolean(true);
+            hasher.putString(value);
+        }
+    }
+
+    /**
+     * Collects the modules of a resolved graph whose cached state can expire, the modules selected by dynamic selectors and changing modules, and the artifact sets of the graph.
+     */
+    public static class Recorder implements DependencyGraphVisitor, DependencyArtifactsVisitor {
+        private final VersionSelectorScheme versionSelectorScheme;
+        private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+        private final ImmutableAttributesFactory attributesFactory;
+        private final AttributeContainerSerializer attributeContainerSerializer;
+        private final Set<ModuleVersionIdentifier> components = Sets.newLinkedHashSet();
+        private final Set<ModuleIdentifier> dynamicModules = Sets.newHashSet();
+        private final Set<ModuleVersionIdentifier> changingComponents = Sets.newHashSet();
+        private final ByteArrayOutputStream artifactSetsOutput = new ByteArrayOutputStream();
+        private final KryoBackedEncoder artifactSetsEncoder = new KryoBackedEncoder(artifactSetsOutput);
+        private int artifactSetCount;
+        private boolean artifactSetsRecordable = true;
+
+        Recorder(VersionSelectorScheme versionSelectorScheme, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ImmutableAttributesFactory attributesFactory, AttributeContainerSerializer attributeContainerSerializer) {
+            this.versionSelectorScheme = versionSelectorScheme;
+            this.moduleIdentifierFactory = moduleIdentifierFactory;
+            this.attributesFactory = attributesFactory;
+            this.attributeContainerSerializer = attributeContainerSerializer;
+        }
+
+        @Override
+        public void start(RootGraphNode root) {
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            DependencyGraphComponent component = node.getOwner();
+            if (!(component.getComponentId() instanceof ModuleComponentIdentifier)) {
+                return;
+            }
+            ModuleVersionIdentifier id = component.getModuleVersion();
+            if (components.add(id)) {
+                ComponentResolveMetadata metadata = component.getMetadata();
+                if (metadata != null && metadata.isChanging()) {
+                    changingComponents.add(id);
+                }
+            }
+        }
+
+        @Override
+        public void visitSelector(DependencyGraphSelector selector) {
+            ComponentSelector requested = selector.getRequested();
+            if (requested instanceof ModuleComponentSelector) {
+                ModuleComponentSelector moduleSelector = (ModuleComponentSelector) requested;
+                VersionConstraint versionConstraint = moduleSelector.getVersionConstraint();
+                if (versionConstraint.getBranch() != null || versionSelectorScheme.parseSelector(versionConstraint.getPreferredVersion()).isDynamic()) {
+                    dynamicModules.add(moduleIdentifierFactory.module(moduleSelector.getGroup(), moduleSelector.getModule()));
+                }
+            }
+        }
+
+        @Override
+        public void visitEdges(DependencyGraphNode node) {
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+        }
+
+        @Override
+        public void startArtifacts(RootGraphNode root) {
+        }
+
+        @Override
+        public void visitArtifacts(DependencyGraphNode from, DependencyGraphNode to, int artifactSetId, ArtifactSet artifacts) {
+            // Artifact sets are visited once for each edge, record each set only the first time it is visited
+            if (!artifactSetsRecordable || artifactSetId < artifactSetCount) {
+                return;
+            }
+            try {
+                artifactSetsRecordable = recordArtifactSet(to, artifacts);
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            artifactSetCount++;
+        }
+
+        @Override
+        public void visitArtifacts(DependencyGraphNode from, LocalFileDependencyMetadata fileDependency, int artifactSetId, ArtifactSet artifactSet) {
+            artifactSetsRecordable = false;
+        }
+
+        @Override
+        public void finishArtifacts() {
+        }
+
+        private boolean recordArtifactSet(DependencyGraphNode to, ArtifactSet artifacts) throws IOException {
+            if (!(artifacts instanceof DefaultArtifactSet)) {
+                return false;
+            }
+            DefaultArtifactSet artifactSet = (DefaultArtifactSet) artifacts;
+            if (!(artifactSet.getComponentIdentifier() instanceof ModuleComponentIdentifier)
+                || (artifactSet.getSchema() != EmptySchema.INSTANCE && artifactSet.getSchema() != PreferJavaRuntimeVariant.schema())) {
+                return false;
+            }
+            ModuleComponentIdentifier componentId = (ModuleComponentIdentifier) artifactSet.getComponentIdentifier();
+            byte[] moduleSource = serialize(to.getOwner().getMetadata().getSource());
+            if (moduleSource == null) {
+                return false;
+            }
+            ModuleVersionIdentifier ownerId = to.getOwner().getModuleVersion();
+
+            KryoBackedEncoder encoder = artifactSetsEncoder;
+            encoder.writeString(componentId.getGroup());
+            encoder.writeString(componentId.getModule());
+            encoder.writeString(componentId.getVersion());
+            encoder.writeString(ownerId.getGroup());
+            encoder.writeString(ownerId.getName());
+            encoder.writeString(ownerId.getVersion());
+            encoder.writeBinary(moduleSource);
+            encoder.writeBoolean(artifactSet.getSchema() != EmptySchema.INSTANCE);
+            attributeContainerSerializer.write(encoder, AttributeDesugaring.desugar(artifactSet.getOverridenAttributes(), attributesFactory));
+            Set<ResolvedVariant> variants = artifactSet.getVariants();
+            encoder.writeSmallInt(variants.size());
+            for (ResolvedVariant variant : variants) {
+                encoder.writeString(variant.asDescribable().getDisplayName());
+                attributeContainerSerializer.write(encoder, AttributeDesugaring.desugar(variant.getAttributes().asImmutable(), attributesFactory));
+                Collection<? extends ResolvableArtifact> variantArtifacts = DefaultArtifactSet.getArtifacts(variant);
+                encoder.writeSmallInt(variantArtifacts.size());
+                for (ResolvableArtifact artifact : variantArtifacts) {
+                    // Other kinds of artifacts, such as artifacts located by URL, are resolved differently
+                    if (artifact.getId().getClass() != DefaultModuleComponentArtifactIdentifier.class) {
+                        return false;
+                    }
+                    DefaultModuleComponentArtifactIdentifier artifactId = (DefaultModuleComponentArtifactIdentifier) artifact.getId();
+                    if (!artifactId.getComponentIdentifier().equals(componentId)) {
+                        return false;
+                    }
+                    IvyArtifactName artifactName = artifactId.getName();
+                    encoder.writeString(artifactName.getName());
+                    encoder.writeString(artifactName.getType());
+                    encoder.writeNullableString(artifactName.getExtension());
+                    encoder.writeNullableString(artifactName.getClassifier());
+                }
+            }
+            return true;
+        }
+
+        @Nullable
+        private static byte[] serialize(ModuleSource moduleSource) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+                objectOutput.writeObject(moduleSource);
+                objectOutput.flush();
+            } catch (NotSerializableException e) {
+                return null;
+            }
+            return output.toByteArray();
+        }
+
+        /**
+         * Returns the recorded artifact sets, or null when the artifact sets of the graph cannot be recorded.
+         */
+        @Nullable
+        private byte[] completeArtifactSets() {
+            if (!artifactSetsRecordable) {
+                return null;
+            }
+            artifactSetsEncoder.flush();
+            return artifactSetsOutput.toByteArray();
+        }
+    }
+
+    private static class CachedComponent {
+        private final ModuleVersionIdentifier id;
+        private final boolean dynamic;
+        private final boolean changing;
+
+        CachedComponent(ModuleVersionIdentifier id, boolean dynamic, boolean changing) {
+            this.id = id;
+            this.dynamic = dynamic;
+            this.changing = changing;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            CachedComponent other = (CachedComponent) obj;
+            return id.equals(other.id) && dynamic == other.dynamic && changing == other.changing;
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    /**
+     * A graph loaded from the cache. Use {@link #getResult()} to read its resolution result and {@link #loadArtifactSets(CachedGraph, ArtifactResolver)} to recreate its artifact sets.
+     */
+    public static class CachedGraph {
+        private final long timestamp;
+        private final byte[] result;
+        private final int artifactSetCount;
+        private final byte[] artifactSets;
+        private final List<CachedComponent> components;
+
+        CachedGraph(long timestamp, byte[] result, int artifactSetCount, byte[] artifactSets, List<CachedComponent> components) {
+            this.timestamp = timestamp;
+            this.result = result;
+            this.artifactSetCount = artifactSetCount;
+            this.artifactSets = artifactSets;
+            this.components = components;
+        }
+
+        /**
+         * Returns the serialized resolution result of the graph.
+         */
+        public byte[] getResult() {
+            return result;
+        }
+
+        boolean hasSameContent(CachedGraph other) {
+            return artifactSetCount == other.artifactSetCount
+                && Arrays.equals(result, other.result)
+                && Arrays.equals(artifactSets, other.artifactSets)
+                && components.equals(other.components);
+        }
+    }
+
+    private class CachedGraphSerializer extends AbstractSerializer<CachedGraph> {
+        @Override
+        public CachedGraph read(Decoder decoder) throws Exception {
+            long timestamp = decoder.readLong();
+            byte[] result = decoder.readBinary();
+            int artifactSetCount = decoder.readSmallInt();
+            byte[] artifactSets = decoder.readBinary();
+            int count = decoder.readSmallInt();
+            List<CachedComponent> components = Lists.newArrayListWithCapacity(count);
+            for (int i = 0; i < count; i++) {
+                ModuleIdentifier module = moduleIdentifierFactory.module(decoder.readString(), decoder.readString());
+                ModuleVersionIdentifier id = new DefaultModuleVersionIdentifier(module, decoder.readString());
+                boolean dynamic = decoder.readBoolean();
+                boolean changing = decoder.readBoolean();
+                components.add(new CachedComponent(id, dynamic, changing));
+            }
+            return new CachedGraph(timestamp, result, artifactSetCount, artifactSets, components);
+        }
+
+        @Override
+        public void write(Encoder encoder, CachedGraph value) throws Exception {
+            encoder.writeLong(value.timestamp);
+            encoder.writeBinary(value.result);
+            encoder.writeSmallInt(value.artifactSetCount);
+            encoder.writeBinary(value.artifactSets);
+            encoder.writeSmallInt(value.components.size());
+            for (CachedComponent component : value.components) {
+                encoder.writeString(component.id.getGroup());
+                encoder.writeString(component.id.getName());
+                encoder.writeString(component.id.getVersion());
+                encoder.writeBoolean(component.dynamic);
+                encoder.writeBoolean(component.changing);
+            }
+        }
+    }
+}
@@ -20,13 +20,12 @@ import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.ResourceExceptions;
 import org.gradle.internal.resource.local.FileStore;
 import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
-import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.transfer.CacheAwareExternalResourceAccessor;
+import org.gradle.internal.resource.transfer.KeyedResourceFileStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.io.File;
 import java.net.URI;
 
 public class DefaultExternalResourceAccessor implements ExternalResourceAccessor {
@@ -57,12 +56,7 @@ public class DefaultExternalResourceAccessor implements ExternalResourceAccessor
         LOGGER.debug("Loading {}", resource);
 
         try {
-            return resourceAccessor.getResource(resource, null, new CacheAwareExternalResourceAccessor.ResourceFileStore() {
-                public LocallyAvailableResource moveIntoCache(File downloadedResource) {
-                    String key = resource.toString();
-                    return fileStore.move(key, downloadedResource);
-                }
-            }, null);
+            return resourceAccessor.getResource(resource, null, new KeyedResourceFileStore<String>(fileStore, resource.toString()), null);
         } catch (Exception e) {
             throw ResourceExceptions.getFailed(resource.getUri(), e);
         }
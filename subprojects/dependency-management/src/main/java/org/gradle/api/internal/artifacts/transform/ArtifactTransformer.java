@@ -32,7 +32,7 @@ public interface ArtifactTransformer extends Describable {
     List<File> transform(File input);
 
     /**
-     * Returns true if there is a cached result in memory, meaning that a call to {@link #transform(File)} will be fast.
+     * Returns true if there is a cached result, either in memory or from a previous build, meaning that a call to {@link #transform(File)} will be fast.
      */
     boolean hasCachedResult(File input);
 
@@ -43,6 +43,7 @@ import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.ListSerializer;
 import org.gradle.internal.util.BiFunction;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
@@ -94,7 +95,22 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
 
     @Override
     public boolean contains(File absoluteFile, HashCode inputsHash) {
-        return resultHashToResult.containsKey(getCacheKey(absoluteFile, inputsHash));
+        final CacheKey cacheKey = getCacheKey(absoluteFile, inputsHash);
+        if (resultHashToResult.containsKey(cacheKey)) {
+            return true;
+        }
+        // Look for the result of a previous build, so that the transform does not need to be scheduled
+        List<File> files = cache.withFileLock(new Factory<List<File>>() {
+            @Override
+            public List<File> create() {
+                return loadFromIndex(cacheKey.getPersistentCacheKey());
+            }
+        });
+        if (files == null) {
+            return false;
+        }
+        resultHashToResult.put(cacheKey, files);
+        return true;
     }
 
     @Override
@@ -123,18 +139,9 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
                     @Override
                     public List<File> create() {
                         HashCode persistentCacheKey = cacheKey.getPersistentCacheKey();
-                        List<File> files = indexedCache.get(persistentCacheKey);
+                        List<File> files = loadFromIndex(persistentCacheKey);
                         if (files != null) {
-                            boolean allExist = true;
-                            for (File file : files) {
-                                if (!file.exists()) {
-                                    allExist = false;
-                                    break;
-                                }
-                            }
-                            if (allExist) {
-                                return files;
-                            }
+                            return files;
                         }
 
                         String key = inputFile.getName() + "/" + persistentCacheKey;
@@ -156,6 +163,24 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         });
     }
 
+    /**
+     * Returns the result stored in the persistent cache for the given key, or null when there is no result or some of its files have been removed.
+     * Must be called while holding the file lock.
+     */
+    @Nullable
+    private List<File> loadFromIndex(HashCode persistentCacheKey) {
+        List<File> files = indexedCache.get(persistentCacheKey);
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            if (!file.exists()) {
+                return null;
+            }
+        }
+        return files;
+    }
+
     private CacheKey getCacheKey(File inputFile, HashCode inputsHash) {
         Snapshot inputFileSnapshot = fileSystemSnapshotter.snapshotAll(inputFile);
         return new CacheKey(inputFileSnapshot, inputsHash);
@@ -34,5 +34,9 @@ public interface TransformedFileCache {
      */
     List<File> getResult(File inputFile, HashCode inputsHash, BiFunction<List<File>, File, File> transformer);
 
+    /**
+     * Returns true if the result of applying the given transform to the given file is available without running the transform, either in memory
+     * or from a previous build. In that case, a call to {@link #getResult(File, HashCode, BiFunction)} will be fast.
+     */
     boolean contains(File absoluteFile, HashCode inputsHash);
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transfer;
+
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.resource.local.FileStore;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+
+import java.io.File;
+
+/**
+ * Moves downloaded resources into a {@link FileStore} under a fixed key. When the store is keyed by content hash, the hash calculated during the download is reused.
+ */
+public class KeyedResourceFileStore<K> implements CacheAwareExternalResourceAccessor.ResourceFileStore {
+    private final FileStore<K> fileStore;
+    private final K key;
+
+    public KeyedResourceFileStore(FileStore<K> fileStore, K key) {
+        this.fileStore = fileStore;
+        this.key = key;
+    }
+
+    @Override
+    public LocallyAvailableResource moveIntoCache(File downloadedResource, HashValue sha1) {
+        return fileStore.move(key, downloadedResource, sha1);
+    }
+}
@@ -1039,6 +1039,69 @@ class DefaultConfigurationSpec extends Specification {
         }
     }
 
+    def "uses loaded graph for resolution result, build dependencies and files"() {
+        def config = conf("conf")
+        def visitedArtifactSet = visitedArtifacts()
+
+        when:
+        config.incoming.getResolutionResult().root
+
+        then:
+        config.resolvedState == ConfigurationInternal.InternalState.ARTIFACTS_RESOLVED
+        config.state == RESOLVED
+
+        and:
+        1 * resolver.loadGraph(config, _) >> { ConfigurationInternal c, ResolverResults r ->
+            r.graphResolved(Stub(ResolutionResult), Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet))
+            true
+        }
+        1 * resolver.resolveArtifacts(config, _) >> { ConfigurationInternal c, ResolverResults r ->
+            r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifactSet)
+        }
+        0 * resolver._
+
+        when:
+        config.getBuildDependencies().getDependencies(null)
+        config.incoming.files.files
+
+        then:
+        0 * resolver._
+    }
+
+    def "resolves graph once resolved configuration is required after loading the graph"() {
+        def config = conf("conf")
+        def resolvedConfiguration = Stub(ResolvedConfiguration)
+
+        when:
+        config.incoming.getResolutionResult().root
+
+        then:
+        1 * resolver.loadGraph(config, _) >> { ConfigurationInternal c, ResolverResults r ->
+            r.graphResolved(Stub(ResolutionResult), Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet))
+            true
+        }
+        1 * resolver.resolveArtifacts(config, _) >> { ConfigurationInternal c, ResolverResults r ->
+            r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts())
+        }
+        0 * resolver._
+
+        when:
+        def result = config.resolvedConfiguration
+
+        then:
+        result == resolvedConfiguration
+        config.resolvedState == ConfigurationInternal.InternalState.ARTIFACTS_RESOLVED
+
+        and:
+        1 * resolver.resolveGraph(config, _) >> { ConfigurationInternal c, ResolverResults r ->
+            r.graphResolved(Stub(ResolutionResult), Stub(ResolvedLocalComponentsResult), visitedArtifacts())
+        }
+        1 * resolver.resolveArtifacts(config, _) >> { ConfigurationInternal c, ResolverResults r ->
+            r.artifactsResolved(resolvedConfiguration, visitedArtifacts())
+        }
+        0 * resolver._
+    }
+
     def "resolving configuration marks parent configuration as observed"() {
         def parent = conf("parent", ":parent")
         def config = conf("conf")
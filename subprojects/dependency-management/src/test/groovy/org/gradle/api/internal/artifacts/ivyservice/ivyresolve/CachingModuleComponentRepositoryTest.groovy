@@ -38,6 +38,7 @@ import org.gradle.internal.component.model.ComponentOverrideMetadata
 import org.gradle.internal.component.model.ComponentResolveMetadata
 import org.gradle.internal.component.model.ModuleSource
 import org.gradle.internal.resolve.result.BuildableArtifactResolveResult
+import org.gradle.internal.resolve.result.BuildableModuleComponentMetaDataResolveResult
 import org.gradle.internal.resolve.result.DefaultBuildableArtifactSetResolveResult
 import org.gradle.internal.resolve.result.DefaultBuildableComponentArtifactsResolveResult
 import org.gradle.internal.resolve.result.DefaultBuildableModuleComponentMetaDataResolveResult
@@ -126,6 +127,32 @@ class CachingModuleComponentRepositoryTest extends Specification {
         0 * _
     }
 
+    @Unroll
+    def "missing module cached #age ms ago is authoritative = #authoritative when trust period is #trustPeriod ms"() {
+        def module = Mock(ModuleComponentIdentifier)
+        def result = new DefaultBuildableModuleComponentMetaDataResolveResult()
+        def repo = new CachingModuleComponentRepository(realRepo, caches,
+            cachePolicy, new BuildCommencedTimeProvider(), metadataProcessor, moduleIdentifierFactory, trustPeriod)
+        moduleDescriptorCache.getCachedModuleDescriptor(_, module) >> Stub(ModuleMetadataCache.CachedMetadata) {
+            isMissing() >> true
+            getAgeMillis() >> age
+        }
+
+        when:
+        repo.localAccess.resolveComponentMetaData(module, Stub(ComponentOverrideMetadata), result)
+
+        then:
+        result.state == BuildableModuleComponentMetaDataResolveResult.State.Missing
+        result.authoritative == authoritative
+
+        where:
+        trustPeriod | age   | authoritative
+        0           | 0     | true
+        0           | 1000  | false
+        5000        | 1000  | true
+        5000        | 10000 | false
+    }
+
     def "does not use cache when artifacts for type can be determined locally"() {
         def component = Mock(ComponentResolveMetadata)
         def source = Mock(ModuleSource)
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import org.gradle.util.internal.SimpleMapInterner
+import spock.lang.Specification
+
+class StringDeduplicatingEncoderTest extends Specification {
+
+    def "writes repeated strings once"() {
+        def bytes = new ByteArrayOutputStream()
+        def kryoEncoder = new KryoBackedEncoder(bytes)
+        def encoder = new StringDeduplicatingEncoder(kryoEncoder)
+        def groupId = "org.some.rather.long.group"
+
+        when:
+        encoder.writeString(groupId)
+        encoder.writeNullableString(null)
+        encoder.writeSmallInt(12)
+        encoder.writeString("module")
+        encoder.writeNullableString(groupId)
+        encoder.writeString(new StringBuilder("module"))
+        kryoEncoder.flush()
+
+        and:
+        def decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new ByteArrayInputStream(bytes.toByteArray())), SimpleMapInterner.notThreadSafe())
+        def first = decoder.readString()
+
+        then:
+        first == groupId
+        decoder.readNullableString() == null
+        decoder.readSmallInt() == 12
+        decoder.readString() == "module"
+        decoder.readNullableString().is(first)
+        decoder.readString() == "module"
+        bytes.size() < 2 * groupId.length()
+    }
+
+    def "cannot write null as a non-null string"() {
+        def encoder = new StringDeduplicatingEncoder(new KryoBackedEncoder(new ByteArrayOutputStream()))
+
+        when:
+        encoder.writeString(null)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -264,6 +264,40 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, selected, b, d, e)
     }
 
+    def "builds the same graph when metadata downloads are pipelined and selection changes before edges are attached"() {
+        given:
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, moduleReplacements, dependencySubstitutionApplicator, componentSelectorConverter, TestUtil.attributesFactory(), versionSelectorScheme, 2)
+
+        def selected = revision('a', '1.2')
+        def evicted = revision('a', '1.1')
+        def b = revision('b')
+        def c = revision('c')
+        def d = revision('d')
+        def e = revision('e')
+        traverses root, evicted
+        traverses evicted, c
+        traverses root, b
+        traverses b, d
+        traverses d, selected
+        traverses selected, e
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        1 * conflictResolver.select(!null) >> { args ->
+            def details = args[0]
+            Collection<ComponentResolutionState> candidates = details.candidates
+            assert candidates*.version == ['1.1', '1.2']
+            details.select(candidates.find { it.version == '1.2' })
+        }
+        0 * conflictResolver._
+
+        and:
+        result.components == ids(root, selected, b, d, e)
+    }
+
     def "does not include evicted module when path through evicted module is queued for traversal when conflict detected"() {
         given:
         def selected = revision('a', '1.2')
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import spock.lang.Specification
+
+class PipelinedMetadataDownloadsTest extends Specification {
+    def submitted = []
+    def queue = Stub(BuildOperationQueue) {
+        add(_) >> { args -> submitted << args[0] }
+    }
+    def metaDataResolver = Stub(ComponentMetaDataResolver)
+    def downloads = new PipelinedMetadataDownloads(queue, metaDataResolver, 2)
+
+    def "submits downloads in the order components are selected while fewer than the maximum are in flight"() {
+        def a = component()
+        def b = component()
+        def c = component()
+
+        when:
+        select(a)
+        select(b)
+        select(c)
+
+        then:
+        submitted.size() == 2
+
+        when:
+        run(0)
+        downloads.submitWaiting()
+
+        then:
+        submitted.size() == 3
+        1 * a.getMetadata()
+
+        when:
+        run(1)
+        run(2)
+
+        then:
+        1 * b.getMetadata()
+        1 * c.getMetadata()
+    }
+
+    def "does not download the metadata of a component more than once"() {
+        def a = component()
+
+        when:
+        select(a)
+        select(a)
+
+        then:
+        submitted.size() == 1
+    }
+
+    def "does not download metadata that is already resolved or cheap to fetch"() {
+        def resolved = component(resolved: [true])
+        def cheap = component()
+        def cheapId = Stub(ComponentIdentifier)
+        metaDataResolver.isFetchingMetadataCheap(cheapId) >> true
+
+        when:
+        select(resolved)
+        downloads.selected(cheap, cheapId)
+
+        then:
+        submitted.empty
+    }
+
+    def "skips waiting components that are deselected or resolved before their download starts"() {
+        def a = component()
+        def b = component()
+        def deselected = component(selected: false)
+        def resolvedMeanwhile = component(resolved: [false, true])
+        def c = component()
+
+        given:
+        select(a)
+        select(b)
+        select(deselected)
+        select(resolvedMeanwhile)
+        select(c)
+
+        when:
+        run(0)
+        run(1)
+        downloads.submitWaiting()
+
+        then:
+        submitted.size() == 3
+
+        when:
+        run(2)
+
+        then:
+        1 * c.getMetadata()
+        0 * deselected.getMetadata()
+        0 * resolvedMeanwhile.getMetadata()
+    }
+
+    private void select(ComponentState component) {
+        downloads.selected(component, Stub(ComponentIdentifier))
+    }
+
+    private void run(int index) {
+        (submitted[index] as RunnableBuildOperation).run(null)
+    }
+
+    private ComponentState component(Map<String, ?> options = [:]) {
+        def component = Mock(ComponentState)
+        _ * component.alreadyResolved() >>> (options.resolved ?: [false])
+        _ * component.isSelected() >> (options.containsKey('selected') ? options.selected : true)
+        return component
+    }
+}
@@ -26,6 +26,7 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.Dependen
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore
 import org.gradle.api.internal.model.NamedObjectInstantiator
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
@@ -89,6 +90,32 @@ class StreamingResolutionResultBuilderTest extends Specification {
 """
     }
 
+    def "result can be loaded from data of in-memory store"() {
+        def store = new InMemoryBinaryStore()
+        def attributeContainerSerializer = new AttributeContainerSerializer(TestUtil.attributesFactory(), NamedObjectInstantiator.INSTANCE)
+        def inMemoryBuilder = new StreamingResolutionResultBuilder(store, new DummyStore(), moduleIdentifierFactory, attributeContainerSerializer)
+        def root = rootNode(1, "org", "root", "1.0")
+        def selector = selector(1, "org", "dep1", "2.0")
+        def dep1 = node(2, "org", "dep1", "2.0", of([CONFLICT_RESOLUTION]))
+        root.outgoingEdges >> [dep(selector, 2)]
+
+        inMemoryBuilder.start(root)
+        inMemoryBuilder.visitNode(root)
+        inMemoryBuilder.visitNode(dep1)
+        inMemoryBuilder.visitSelector(selector)
+        inMemoryBuilder.visitEdges(root)
+        inMemoryBuilder.finish(root)
+        inMemoryBuilder.complete()
+
+        when:
+        def result = StreamingResolutionResultBuilder.loadResult(InMemoryBinaryStore.read(store.bytes), new DummyStore(), moduleIdentifierFactory, attributeContainerSerializer)
+
+        then:
+        printGraph(result.root) == """org:root:1.0
+  org:dep1:2.0(C) [root]
+"""
+    }
+
     def "visiting resolved module version again has no effect"() {
         def root = rootNode(1, "org", "root", "1.0")
         def selector = selector(7, "org", "dep1", "2.0")
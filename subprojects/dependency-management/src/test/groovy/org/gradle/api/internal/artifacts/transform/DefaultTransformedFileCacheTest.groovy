@@ -102,6 +102,28 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         cache.contains(inputFile, hash)
     }
 
+    def "contains result of a previous build"() {
+        given:
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+        def hash = HashCode.fromInt(123)
+        _ * snapshotter.snapshotAll(_) >> snapshot(HashCode.fromInt(234))
+        1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
+        def result = cache.getResult(inputFile, hash, transform)
+
+        when:
+        def cache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter)
+        def contains = cache.contains(inputFile, hash)
+        def containsOther = cache.contains(inputFile, HashCode.fromInt(456))
+        def result2 = cache.getResult(inputFile, hash, transform)
+
+        then:
+        contains
+        !containsOther
+        result2 == result
+        0 * transform._
+    }
+
     def "does not contain result if a different transform ran"() {
         given:
         def transform = Stub(BiFunction)
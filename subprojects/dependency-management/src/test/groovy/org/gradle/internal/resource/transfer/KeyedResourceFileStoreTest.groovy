@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transfer
+
+import org.gradle.internal.hash.HashValue
+import org.gradle.internal.resource.local.FileStore
+import org.gradle.internal.resource.local.LocallyAvailableResource
+import spock.lang.Specification
+
+class KeyedResourceFileStoreTest extends Specification {
+    def fileStore = Mock(FileStore)
+    def store = new KeyedResourceFileStore<String>(fileStore, "key")
+
+    def "moves downloaded file into store using the hash calculated during download"() {
+        def file = new File("downloaded")
+        def sha1 = HashValue.parse("1234")
+        def resource = Stub(LocallyAvailableResource)
+
+        when:
+        def result = store.moveIntoCache(file, sha1)
+
+        then:
+        result == resource
+        1 * fileStore.move("key", file, sha1) >> resource
+        0 * fileStore._
+    }
+}
@@ -25,14 +25,16 @@ import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.artifacts.result.DependencyResult;
 import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionComparator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
-import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.diagnostics.internal.graph.nodes.RenderableDependency;
 import org.gradle.api.tasks.diagnostics.internal.graph.nodes.RenderableModuleResult;
 import org.gradle.api.tasks.diagnostics.internal.graph.nodes.UnresolvableConfigurationResult;
@@ -206,10 +208,18 @@ public class JsonProjectDependencyRenderer {
 
     private List createModuleInsights(final Configuration configuration) {
         Iterable<ModuleIdentifier> modules = collectModules(configuration);
+        if (!modules.iterator().hasNext()) {
+            return Collections.emptyList();
+        }
+        final Map<ModuleIdentifier, Set<DependencyResult>> dependenciesByModule = collectDependenciesByModule(configuration);
         return CollectionUtils.collect(modules, new Transformer<Object, ModuleIdentifier>() {
             @Override
             public Object transform(ModuleIdentifier moduleIdentifier) {
-                return createModuleInsight(moduleIdentifier, configuration);
+                Set<DependencyResult> selectedDependencies = dependenciesByModule.get(moduleIdentifier);
+                if (selectedDependencies == null) {
+                    selectedDependencies = Collections.emptySet();
+                }
+                return createModuleInsight(moduleIdentifier, selectedDependencies, configuration);
             }
         });
     }
@@ -242,28 +252,52 @@ public class JsonProjectDependencyRenderer {
         }
     }
 
-    private Map createModuleInsight(ModuleIdentifier module, Configuration configuration) {
-        LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>(2);
-        map.put("module", module.toString());
-        map.put("insight", createInsight(module, configuration));
-        return map;
-    }
-
-    private List createInsight(ModuleIdentifier module, final Configuration configuration) {
-        final Spec<DependencyResult> dependencySpec = new StrictDependencyResultSpec(module);
-
-        ResolutionResult result = configuration.getIncoming().getResolutionResult();
-        final Set<DependencyResult> selectedDependencies = new LinkedHashSet<DependencyResult>();
-
-        result.allDependencies(new Action<DependencyResult>() {
+    /**
+     * Groups the dependencies of the configuration by the modules they request or select, in a single pass over the graph.
+     * This matches each module as {@link StrictDependencyResultSpec} does.
+     *
+     * The insights are rendered from the dependents of each dependency, which requires the resolved graph rather than the streamed results.
+     * The graph is built anyway to render the dependency tree of the configuration.
+     */
+    private Map<ModuleIdentifier, Set<DependencyResult>> collectDependenciesByModule(Configuration configuration) {
+        final Map<ModuleIdentifier, Set<DependencyResult>> dependenciesByModule = Maps.newHashMap();
+        configuration.getIncoming().getResolutionResult().allDependencies(new Action<DependencyResult>() {
             @Override
-            public void execute(DependencyResult it) {
-                if (dependencySpec.isSatisfiedBy(it)) {
-                    selectedDependencies.add(it);
+            public void execute(DependencyResult dependency) {
+                ComponentSelector requested = dependency.getRequested();
+                if (requested instanceof ModuleComponentSelector) {
+                    ModuleComponentSelector requestedModule = (ModuleComponentSelector) requested;
+                    add(DefaultModuleIdentifier.newId(requestedModule.getGroup(), requestedModule.getModule()), dependency);
+                }
+                if (dependency instanceof ResolvedDependencyResult) {
+                    ComponentIdentifier selected = ((ResolvedDependencyResult) dependency).getSelected().getId();
+                    if (selected instanceof ModuleComponentIdentifier) {
+                        ModuleComponentIdentifier selectedModule = (ModuleComponentIdentifier) selected;
+                        add(DefaultModuleIdentifier.newId(selectedModule.getGroup(), selectedModule.getModule()), dependency);
+                    }
+                }
+            }
+
+            private void add(ModuleIdentifier module, DependencyResult dependency) {
+                Set<DependencyResult> dependencies = dependenciesByModule.get(module);
+                if (dependencies == null) {
+                    dependencies = new LinkedHashSet<DependencyResult>();
+                    dependenciesByModule.put(module, dependencies);
                 }
+                dependencies.add(dependency);
             }
         });
+        return dependenciesByModule;
+    }
+
+    private Map createModuleInsight(ModuleIdentifier module, Set<DependencyResult> selectedDependencies, Configuration configuration) {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>(2);
+        map.put("module", module.toString());
+        map.put("insight", createInsight(selectedDependencies, configuration));
+        return map;
+    }
 
+    private List createInsight(Set<DependencyResult> selectedDependencies, final Configuration configuration) {
         Collection<RenderableDependency> sortedDeps = new DependencyInsightReporter().prepare(selectedDependencies, versionSelectorScheme, versionComparator, versionParser);
         return CollectionUtils.collect(sortedDeps, new Transformer<Object, RenderableDependency>() {
             @Override
@@ -145,7 +145,9 @@ public class DefaultGradleDistribution implements GradleDistribution {
     }
 
     public VersionNumber getArtifactCacheLayoutVersion() {
-        if (isSameOrNewer("4.8-rc-1")) {
+        if (isSameOrNewer("4.9-rc-1")) {
+            return VersionNumber.parse("2.59");
+        } else if (isSameOrNewer("4.8-rc-1")) {
             return VersionNumber.parse("2.58");
         } else if (isSameOrNewer("4.7-rc-1")) {
             return VersionNumber.parse("2.56");
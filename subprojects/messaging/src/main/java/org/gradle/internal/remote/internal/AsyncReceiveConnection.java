@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal;
+
+import javax.annotation.Nullable;
+
+/**
+ * <p>A {@link RemoteConnection} that can push incoming messages to a handler as they arrive, so that no thread needs to block in {@link #receive()} while waiting for
+ * messages.</p>
+ */
+public interface AsyncReceiveConnection<T> extends RemoteConnection<T> {
+    /**
+     * Starts notifying the given handler of incoming messages. The handler is notified by at most one thread at a time, and should not block. The handler is notified
+     * of the end of the incoming messages exactly once, at the latest when this connection is stopped.
+     *
+     * <p>{@link #receive()} must not be called once this method has been called.</p>
+     */
+    void receiveAsync(Handler<? super T> handler);
+
+    interface Handler<T> {
+        void messageReceived(T message);
+
+        /**
+         * Called when a message cannot be read, after which further messages may be received.
+         */
+        void messageFailed(RecoverableMessageIOException failure);
+
+        /**
+         * Called once no further messages will be received.
+         *
+         * @param failure The failure that ended the incoming messages, or null if the end of the stream was reached or the connection was stopped.
+         */
+        void endOfStream(@Nullable Throwable failure);
+    }
+}
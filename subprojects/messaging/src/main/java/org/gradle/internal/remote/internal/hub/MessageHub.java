@@ -17,19 +17,23 @@
 package org.gradle.internal.remote.internal.hub;
 
 import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.AsyncStoppable;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.dispatch.BoundedDispatch;
 import org.gradle.internal.dispatch.Dispatch;
+import org.gradle.internal.remote.internal.AsyncReceiveConnection;
 import org.gradle.internal.remote.internal.Connection;
 import org.gradle.internal.remote.internal.RecoverableMessageIOException;
 import org.gradle.internal.remote.internal.RemoteConnection;
 import org.gradle.internal.remote.internal.hub.protocol.*;
 import org.gradle.internal.remote.internal.hub.queue.EndPointQueue;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -40,6 +44,8 @@ import java.util.concurrent.locks.ReentrantLock;
  * Use {@link #addHandler(String, Object)} to create a worker for incoming messages on a given channel.
  * Use {@link #addConnection(RemoteConnection)} to attach another router to this router.
  *
+ * <p>Each handler is notified by its own thread. Outgoing messages for a connection are written by a task that is scheduled only when there are messages queued.
+ * Incoming messages are pushed to the hub by connections that implement {@link AsyncReceiveConnection}, and are received using a thread per connection otherwise.</p>
  */
 public class MessageHub implements AsyncStoppable {
     private enum State {Running, Stopping, Stopped}
@@ -49,6 +55,9 @@ public class MessageHub implements AsyncStoppable {
     private final String displayName;
     private final Action<? super Throwable> errorHandler;
     private final Lock lock = new ReentrantLock();
+    // Counts the queue drains and asynchronous receives, which are not run by the workers
+    private final Condition workFinished = lock.newCondition();
+    private int activeWork;
     private State state = State.Running;
     private final IncomingQueue incomingQueue = new IncomingQueue(lock);
     private final OutgoingQueue outgoingQueue = new OutgoingQueue(incomingQueue, lock);
@@ -144,8 +153,13 @@ public class MessageHub implements AsyncStoppable {
         try {
             assertRunning("add connection");
             ConnectionState connectionState = connections.add(connection);
-            workers.execute(new ConnectionDispatch(connectionState));
-            workers.execute(new ConnectionReceive(connectionState));
+            new ConnectionDispatch(connectionState).start();
+            if (connection instanceof AsyncReceiveConnection) {
+                activeWork++;
+                ((AsyncReceiveConnection<InterHubMessage>) connection).receiveAsync(new AsyncConnectionReceive(connectionState));
+            } else {
+                workers.execute(new ConnectionReceive(connectionState));
+            }
         } finally {
             lock.unlock();
         }
@@ -215,6 +229,14 @@ public class MessageHub implements AsyncStoppable {
             lock.lock();
             try {
                 requestStop();
+                // Wait for the outgoing queues to be drained and for the connections to finish receiving, as this work is not run by the workers
+                while (activeWork > 0) {
+                    try {
+                        workFinished.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
             } finally {
                 lock.unlock();
             }
@@ -293,54 +315,177 @@ public class MessageHub implements AsyncStoppable {
         }
     }
 
-    private class ConnectionDispatch implements Runnable {
-        private final RemoteConnection<InterHubMessage> connection;
-        private final EndPointQueue queue;
+    private class AsyncConnectionReceive implements AsyncReceiveConnection.Handler<InterHubMessage> {
         private final ConnectionState connectionState;
+        private boolean finished;
 
-        private ConnectionDispatch(ConnectionState connectionState) {
-            this.connection = connectionState.getConnection();
-            this.queue = connectionState.getDispatchQueue();
+        AsyncConnectionReceive(ConnectionState connectionState) {
             this.connectionState = connectionState;
         }
 
+        @Override
+        public void messageReceived(InterHubMessage message) {
+            if (finished) {
+                return;
+            }
+            if (message instanceof EndOfStream) {
+                finished();
+                return;
+            }
+            addToIncoming(message);
+        }
+
+        @Override
+        public void messageFailed(RecoverableMessageIOException failure) {
+            if (!finished) {
+                addToIncoming(new StreamFailureMessage(failure));
+            }
+        }
+
+        @Override
+        public void endOfStream(@Nullable Throwable failure) {
+            if (finished) {
+                return;
+            }
+            finished();
+            if (failure != null) {
+                errorHandler.execute(failure);
+            }
+        }
+
+        private void finished() {
+            finished = true;
+            lock.lock();
+            try {
+                connectionState.receiveFinished();
+            } finally {
+                activeWork--;
+                workFinished.signalAll();
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Processes the messages of a queue, using a task that is scheduled only while the queue contains messages. Messages are processed by at most one thread at a time.
+     */
+    private abstract class QueueDrain implements Runnable {
+        private final EndPointQueue queue;
+        private boolean scheduled;
+        private boolean finished;
+
+        QueueDrain(EndPointQueue queue) {
+            this.queue = queue;
+        }
+
+        /**
+         * Must be called while holding the lock.
+         */
+        void start() {
+            activeWork++;
+            queue.setDispatchListener(new Runnable() {
+                @Override
+                public void run() {
+                    schedule();
+                }
+            });
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled && !finished) {
+                scheduled = true;
+                workers.execute(this);
+            }
+        }
+
         public void run() {
             try {
-                List<InterHubMessage> messages = new ArrayList<InterHubMessage>();
+                boolean idle = false;
                 try {
+                    List<InterHubMessage> messages = new ArrayList<InterHubMessage>();
                     while (true) {
                         lock.lock();
                         try {
-                            queue.take(messages);
+                            if (!queue.poll(messages)) {
+                                scheduled = false;
+                                idle = true;
+                                return;
+                            }
                         } finally {
                             lock.unlock();
                         }
-                        for (InterHubMessage message : messages) {
-                            try {
-                                connection.dispatch(message);
-                            } catch (RecoverableMessageIOException e) {
-                                addToIncoming(new StreamFailureMessage(e));
-                            }
-                            if (message instanceof EndOfStream) {
-                                connection.flush();
-                                return;
-                            }
+                        if (!process(messages)) {
+                            return;
                         }
-                        connection.flush();
                         messages.clear();
                     }
                 } finally {
-                    lock.lock();
-                    try {
-                        connectionState.dispatchFinished();
-                    } finally {
-                        lock.unlock();
+                    if (!idle) {
+                        lock.lock();
+                        try {
+                            finished = true;
+                            try {
+                                onFinished(queue);
+                            } finally {
+                                activeWork--;
+                                workFinished.signalAll();
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
                     }
                 }
             } catch (Throwable t) {
                 errorHandler.execute(t);
             }
         }
+
+        /**
+         * Processes a batch of messages.
+         *
+         * @return false when the end of the queue has been reached.
+         */
+        protected abstract boolean process(List<InterHubMessage> messages);
+
+        /**
+         * Called while holding the lock, once no further messages will be processed.
+         */
+        protected abstract void onFinished(EndPointQueue queue);
+    }
+
+    private class ConnectionDispatch extends QueueDrain {
+        private final RemoteConnection<InterHubMessage> connection;
+        private final ConnectionState connectionState;
+
+        private ConnectionDispatch(ConnectionState connectionState) {
+            super(connectionState.getDispatchQueue());
+            this.connection = connectionState.getConnection();
+            this.connectionState = connectionState;
+        }
+
+        @Override
+        protected boolean process(List<InterHubMessage> messages) {
+            for (InterHubMessage message : messages) {
+                try {
+                    connection.dispatch(message);
+                } catch (RecoverableMessageIOException e) {
+                    addToIncoming(new StreamFailureMessage(e));
+                }
+                if (message instanceof EndOfStream) {
+                    connection.flush();
+                    return false;
+                }
+            }
+            // Write all of the messages queued so far before flushing
+            connection.flush();
+            return true;
+        }
+
+        @Override
+        protected void onFinished(EndPointQueue queue) {
+            connectionState.dispatchFinished();
+        }
     }
 
     private class ChannelDispatch<T> implements Dispatch<T> {
@@ -29,15 +29,26 @@ public class EndPointQueue implements Dispatch<InterHubMessage> {
     private final List<InterHubMessage> queue = new ArrayList<InterHubMessage>();
     private final MultiEndPointQueue owner;
     private final Condition condition;
+    private Runnable dispatchListener;
 
     public EndPointQueue(MultiEndPointQueue owner, Condition condition) {
         this.owner = owner;
         this.condition = condition;
     }
 
+    /**
+     * Sets an action to run whenever a message is added to this queue. The action is run while holding the queue lock, so must not block.
+     */
+    public void setDispatchListener(Runnable dispatchListener) {
+        this.dispatchListener = dispatchListener;
+    }
+
     public void dispatch(InterHubMessage message) {
         queue.add(message);
         condition.signalAll();
+        if (dispatchListener != null) {
+            dispatchListener.run();
+        }
     }
 
     public void take(Collection<InterHubMessage> drainTo) {
@@ -55,6 +66,23 @@ public class EndPointQueue implements Dispatch<InterHubMessage> {
         queue.clear();
     }
 
+    /**
+     * Moves the queued messages to the given collection, without waiting for messages to be queued.
+     *
+     * @return true if some messages were moved, false if this queue was empty.
+     */
+    public boolean poll(Collection<InterHubMessage> drainTo) {
+        if (queue.isEmpty()) {
+            owner.empty(this);
+            if (queue.isEmpty()) {
+                return false;
+            }
+        }
+        drainTo.addAll(queue);
+        queue.clear();
+        return true;
+    }
+
     public void stop() {
         owner.stopped(this);
     }
@@ -25,9 +25,11 @@ import java.nio.channels.SocketChannel;
 
 class SocketConnectCompletion implements ConnectCompletion {
     private final SocketChannel socket;
+    private final SocketReceiveLoop receiveLoop;
 
-    public SocketConnectCompletion(SocketChannel socket) {
+    public SocketConnectCompletion(SocketChannel socket, SocketReceiveLoop receiveLoop) {
         this.socket = socket;
+        this.receiveLoop = receiveLoop;
     }
 
     @Override
@@ -36,6 +38,6 @@ class SocketConnectCompletion implements ConnectCompletion {
     }
 
     public <T> RemoteConnection<T> create(StatefulSerializer<T> serializer) {
-        return new SocketConnection<T>(socket, new KryoBackedMessageSerializer(), serializer);
+        return new SocketConnection<T>(socket, new KryoBackedMessageSerializer(), serializer, receiveLoop);
     }
 }
@@ -19,6 +19,7 @@ package org.gradle.internal.remote.internal.inet;
 import com.google.common.base.Objects;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.remote.internal.AsyncReceiveConnection;
 import org.gradle.internal.remote.internal.RecoverableMessageIOException;
 import org.gradle.internal.serialize.FlushableEncoder;
 import org.gradle.internal.serialize.ObjectReader;
@@ -26,10 +27,10 @@ import org.gradle.internal.serialize.ObjectWriter;
 import org.gradle.internal.serialize.StatefulSerializer;
 import org.gradle.internal.remote.internal.MessageIOException;
 import org.gradle.internal.remote.internal.MessageSerializer;
-import org.gradle.internal.remote.internal.RemoteConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -37,20 +38,44 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
-public class SocketConnection<T> implements RemoteConnection<T> {
+/**
+ * A connection over a socket. Each message is written as a frame, that is the length of the encoded message followed by the encoded message, so that a
+ * message can be decoded once all of its bytes have been received, without blocking while waiting for the remainder of the message.
+ */
+public class SocketConnection<T> implements AsyncReceiveConnection<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnection.class);
+    private static final int FRAME_HEADER_LENGTH = 4;
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+    // Stop reading from the socket while this many received bytes are waiting to be decoded
+    private static final int MAX_PENDING_BYTES = 1024 * 1024;
     private final SocketChannel socket;
     private final SocketInetAddress localAddress;
     private final SocketInetAddress remoteAddress;
     private final ObjectWriter<T> objectWriter;
     private final ObjectReader<T> objectReader;
     private final InputStream instr;
+    private final DataInputStream frameInstr;
     private final OutputStream outstr;
+    private final FrameOutputStream frameOutstr = new FrameOutputStream();
+    private final FrameInputStream frames = new FrameInputStream();
     private final FlushableEncoder encoder;
+    private final SocketReceiveLoop receiveLoop;
+    private final CountDownLatch asyncReceiveFinished = new CountDownLatch(1);
+    private final Decoder decoder = new Decoder();
+    private volatile boolean receivingAsync;
+    private volatile Handler<? super T> asyncHandler;
+    // Used only by the receive thread of the receive loop
+    private ByteBuffer receiveBuffer;
 
-    public SocketConnection(SocketChannel socket, MessageSerializer streamSerializer, StatefulSerializer<T> messageSerializer) {
+    public SocketConnection(SocketChannel socket, MessageSerializer streamSerializer, StatefulSerializer<T> messageSerializer, SocketReceiveLoop receiveLoop) {
         this.socket = socket;
+        this.receiveLoop = receiveLoop;
         try {
             // NOTE: we use non-blocking IO as there is no reliable way when using blocking IO to shutdown reads while
             // keeping writes active. For example, Socket.shutdownInput() does not work on Windows.
@@ -64,8 +89,9 @@ public class SocketConnection<T> implements RemoteConnection<T> {
         localAddress = new SocketInetAddress(localSocketAddress.getAddress(), localSocketAddress.getPort());
         InetSocketAddress remoteSocketAddress = (InetSocketAddress) socket.socket().getRemoteSocketAddress();
         remoteAddress = new SocketInetAddress(remoteSocketAddress.getAddress(), remoteSocketAddress.getPort());
-        objectReader = messageSerializer.newReader(streamSerializer.newDecoder(instr));
-        encoder = streamSerializer.newEncoder(outstr);
+        frameInstr = new DataInputStream(instr);
+        objectReader = messageSerializer.newReader(streamSerializer.newDecoder(frames));
+        encoder = streamSerializer.newEncoder(frameOutstr);
         objectWriter = messageSerializer.newWriter(encoder);
     }
 
@@ -74,25 +100,112 @@ public class SocketConnection<T> implements RemoteConnection<T> {
         return "socket connection from " + localAddress + " to " + remoteAddress;
     }
 
+    SocketChannel getChannel() {
+        return socket;
+    }
+
     public T receive() throws MessageIOException {
         try {
+            frames.readFrame(frameInstr);
             return objectReader.read();
         } catch (EOFException e) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Discarding EOFException: {}", e.toString());
             }
             return null;
-        } catch (ObjectStreamException e) {
-            throw new RecoverableMessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
-        } catch (ClassNotFoundException e) {
-            throw new RecoverableMessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
-        } catch (IOException e) {
-            throw new RecoverableMessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
         } catch (Exception e) {
+            if (isRecoverable(e)) {
+                throw new RecoverableMessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
+            }
             throw new MessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
         }
     }
 
+    @Override
+    public void receiveAsync(Handler<? super T> handler) {
+        asyncHandler = handler;
+        receiveBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+        receivingAsync = true;
+        receiveLoop.register(this);
+    }
+
+    /**
+     * Reads whatever is available from the socket without blocking, and hands each complete frame to the decoder. Called by the receive loop.
+     *
+     * @return false when the end of the stream has been reached.
+     */
+    boolean readAvailable(SelectionKey key) throws MessageIOException {
+        while (true) {
+            int nread;
+            try {
+                nread = socket.read(receiveBuffer);
+            } catch (IOException e) {
+                if (isEndOfStream(e)) {
+                    return false;
+                }
+                throw new MessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
+            }
+            if (nread < 0) {
+                return false;
+            }
+            if (nread == 0) {
+                return true;
+            }
+            if (!receiveFrames()) {
+                // Stop reading until the decoder has caught up
+                key.interestOps(0);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return false when reading should be suspended until the decoder has caught up.
+     */
+    private boolean receiveFrames() throws MessageIOException {
+        receiveBuffer.flip();
+        List<byte[]> received = new ArrayList<byte[]>();
+        while (receiveBuffer.remaining() >= FRAME_HEADER_LENGTH) {
+            int length = frameLength();
+            if (receiveBuffer.remaining() - FRAME_HEADER_LENGTH < length) {
+                break;
+            }
+            receiveBuffer.position(receiveBuffer.position() + FRAME_HEADER_LENGTH);
+            byte[] frame = new byte[length];
+            receiveBuffer.get(frame);
+            received.add(frame);
+        }
+        int required = receiveBuffer.remaining() >= FRAME_HEADER_LENGTH ? frameLength() + FRAME_HEADER_LENGTH : FRAME_HEADER_LENGTH;
+        if (required > receiveBuffer.capacity() || (receiveBuffer.capacity() > RECEIVE_BUFFER_SIZE && required <= RECEIVE_BUFFER_SIZE)) {
+            // Make room for a message that is larger than the buffer, or release the room used by such a message once it has been received
+            ByteBuffer resized = ByteBuffer.allocate(Math.max(required, RECEIVE_BUFFER_SIZE));
+            resized.put(receiveBuffer);
+            receiveBuffer = resized;
+        } else {
+            receiveBuffer.compact();
+        }
+        return received.isEmpty() || decoder.received(received);
+    }
+
+    private int frameLength() throws MessageIOException {
+        int length = receiveBuffer.getInt(receiveBuffer.position());
+        if (length < 0) {
+            throw new MessageIOException(String.format("Could not read message from '%s'.", remoteAddress), new StreamCorruptedException("Invalid message length " + length + "."));
+        }
+        return length;
+    }
+
+    /**
+     * Called by the receive loop once it has stopped receiving messages for this connection. The handler is notified once the frames already received have been decoded.
+     */
+    void receiveFinished(@Nullable Throwable failure) {
+        decoder.finished(failure);
+    }
+
+    private static boolean isRecoverable(Exception e) {
+        return e instanceof ObjectStreamException || e instanceof ClassNotFoundException || e instanceof IOException;
+    }
+
     private static boolean isEndOfStream(Exception e) {
         if (e instanceof EOFException) {
             return true;
@@ -114,6 +227,8 @@ public class SocketConnection<T> implements RemoteConnection<T> {
     public void dispatch(T message) throws MessageIOException {
         try {
             objectWriter.write(message);
+            encoder.flush();
+            frameOutstr.writeFrameTo(outstr);
         } catch (ObjectStreamException e) {
             throw new RecoverableMessageIOException(String.format("Could not write message %s to '%s'.", message, remoteAddress), e);
         } catch (ClassNotFoundException e) {
@@ -128,7 +243,6 @@ public class SocketConnection<T> implements RemoteConnection<T> {
     @Override
     public void flush() throws MessageIOException {
         try {
-            encoder.flush();
             outstr.flush();
         } catch (Exception e) {
             throw new MessageIOException(String.format("Could not write '%s'.", remoteAddress), e);
@@ -136,6 +250,16 @@ public class SocketConnection<T> implements RemoteConnection<T> {
     }
 
     public void stop() {
+        if (receivingAsync) {
+            receiveLoop.unregister(this);
+            if (!decoder.isDecodeThread()) {
+                try {
+                    asyncReceiveFinished.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
         CompositeStoppable.stoppable(new Closeable() {
             @Override
             public void close() throws IOException {
@@ -144,6 +268,236 @@ public class SocketConnection<T> implements RemoteConnection<T> {
         }, instr, outstr, socket).stop();
     }
 
+    /**
+     * Decodes the frames received by the receive loop and notifies the handler, using a task that is scheduled only while there are frames to decode. Frames are
+     * decoded by at most one thread at a time.
+     */
+    private class Decoder implements Runnable {
+        private final Object lock = new Object();
+        private final Deque<byte[]> pendingFrames = new ArrayDeque<byte[]>();
+        private int pendingBytes;
+        private boolean readSuspended;
+        private boolean scheduled;
+        private boolean receiveFinished;
+        private Throwable receiveFailure;
+        // Used only by the decoding task
+        private boolean handlerFinished;
+        private volatile Thread decodeThread;
+
+        boolean isDecodeThread() {
+            return Thread.currentThread() == decodeThread;
+        }
+
+        /**
+         * Called by the receive thread.
+         *
+         * @return false when reading should be suspended until the pending frames have been decoded.
+         */
+        boolean received(List<byte[]> frames) {
+            synchronized (lock) {
+                for (byte[] frame : frames) {
+                    pendingFrames.add(frame);
+                    pendingBytes += frame.length;
+                }
+                if (pendingBytes > MAX_PENDING_BYTES) {
+                    readSuspended = true;
+                }
+                schedule();
+                return !readSuspended;
+            }
+        }
+
+        /**
+         * Called by the receive thread.
+         */
+        void finished(@Nullable Throwable failure) {
+            synchronized (lock) {
+                if (receiveFinished) {
+                    return;
+                }
+                receiveFinished = true;
+                receiveFailure = failure;
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (!scheduled) {
+                scheduled = true;
+                receiveLoop.decode(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            decodeThread = Thread.currentThread();
+            try {
+                while (true) {
+                    byte[] frame;
+                    boolean resume = false;
+                    Throwable failure;
+                    synchronized (lock) {
+                        frame = pendingFrames.poll();
+                        if (frame == null && !receiveFinished) {
+                            scheduled = false;
+                            return;
+                        }
+                        if (frame != null) {
+                            pendingBytes -= frame.length;
+                            if (readSuspended && pendingBytes <= MAX_PENDING_BYTES / 2) {
+                                readSuspended = false;
+                                resume = true;
+                            }
+                        }
+                        failure = receiveFailure;
+                    }
+                    if (resume) {
+                        receiveLoop.resume(SocketConnection.this);
+                    }
+                    if (frame == null) {
+                        // All received frames have been decoded, and no further frames will be received. Leave the task scheduled, so that it does not run again
+                        endOfStream(failure);
+                        asyncReceiveFinished.countDown();
+                        return;
+                    }
+                    decode(frame);
+                }
+            } finally {
+                decodeThread = null;
+            }
+        }
+
+        private void decode(byte[] frame) {
+            if (handlerFinished) {
+                return;
+            }
+            try {
+                frames.append(frame);
+                T message;
+                try {
+                    message = objectReader.read();
+                } catch (EOFException e) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Discarding EOFException: {}", e.toString());
+                    }
+                    failed(null);
+                    return;
+                } catch (Exception e) {
+                    if (isRecoverable(e)) {
+                        asyncHandler.messageFailed(new RecoverableMessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e));
+                        return;
+                    }
+                    failed(new MessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e));
+                    return;
+                }
+                asyncHandler.messageReceived(message);
+            } catch (Throwable t) {
+                failed(t);
+            }
+        }
+
+        /**
+         * Stops receiving when no further messages can be decoded.
+         */
+        private void failed(@Nullable Throwable failure) {
+            receiveLoop.unregister(SocketConnection.this);
+            endOfStream(failure);
+        }
+
+        private void endOfStream(@Nullable Throwable failure) {
+            if (handlerFinished) {
+                return;
+            }
+            handlerFinished = true;
+            try {
+                asyncHandler.endOfStream(failure);
+            } catch (Throwable t) {
+                LOGGER.error("Could not notify " + SocketConnection.this + " that receiving has finished.", t);
+            }
+        }
+    }
+
+    /**
+     * Collects the encoded bytes of a message, so that they can be written as a single frame.
+     */
+    private static class FrameOutputStream extends ByteArrayOutputStream {
+        void writeFrameTo(OutputStream outputStream) throws IOException {
+            byte[] header = new byte[]{(byte) (count >>> 24), (byte) (count >>> 16), (byte) (count >>> 8), (byte) count};
+            outputStream.write(header);
+            outputStream.write(buf, 0, count);
+            reset();
+        }
+    }
+
+    /**
+     * Holds the encoded bytes of the frames that have been received but not yet decoded. Never blocks, and signals the end of the stream once all of the bytes
+     * received so far have been read.
+     */
+    private static class FrameInputStream extends InputStream {
+        private byte[] buffer = new byte[4096];
+        private int position;
+        private int limit;
+
+        void readFrame(DataInputStream inputStream) throws IOException {
+            int length = inputStream.readInt();
+            if (length < 0) {
+                throw new StreamCorruptedException("Invalid message length " + length + ".");
+            }
+            ensureCapacity(length);
+            inputStream.readFully(buffer, limit, length);
+            limit += length;
+        }
+
+        void append(byte[] frame) {
+            ensureCapacity(frame.length);
+            System.arraycopy(frame, 0, buffer, limit, frame.length);
+            limit += frame.length;
+        }
+
+        private void ensureCapacity(int length) {
+            if (position == limit) {
+                position = 0;
+                limit = 0;
+            }
+            if (buffer.length - limit >= length) {
+                return;
+            }
+            int remaining = limit - position;
+            byte[] target = remaining + length > buffer.length ? new byte[Math.max(remaining + length, buffer.length * 2)] : buffer;
+            System.arraycopy(buffer, position, target, 0, remaining);
+            buffer = target;
+            position = 0;
+            limit = remaining;
+        }
+
+        @Override
+        public int read() {
+            if (position == limit) {
+                return -1;
+            }
+            return buffer[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] dest, int offset, int max) {
+            if (max == 0) {
+                return 0;
+            }
+            if (position == limit) {
+                return -1;
+            }
+            int count = Math.min(limit - position, max);
+            System.arraycopy(buffer, position, dest, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+    }
+
     private static class SocketInputStream extends InputStream {
         private final Selector selector;
         private final ByteBuffer buffer;
@@ -164,7 +518,7 @@ public class SocketConnection<T> implements RemoteConnection<T> {
             if (nread <= 0) {
                 return nread;
             }
-            return readBuffer[0];
+            return readBuffer[0] & 0xff;
         }
 
         @Override
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Receives the incoming messages of any number of socket connections using a single thread and a selector, so that the number of threads used to receive
+ * messages does not grow with the number of connections.
+ *
+ * <p>The thread only reads the available bytes of each connection. The messages are decoded and the handler of each connection is notified by a separate
+ * task per connection, so that a slow handler does not hold up the other connections.</p>
+ *
+ * <p>The thread is started when a connection is registered, and finishes once no connections remain registered.</p>
+ */
+public class SocketReceiveLoop implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketReceiveLoop.class);
+    private final ExecutorFactory executorFactory;
+    private final Object lock = new Object();
+    private final List<SocketConnection<?>> added = new ArrayList<SocketConnection<?>>();
+    private final List<SocketConnection<?>> removed = new ArrayList<SocketConnection<?>>();
+    private final List<SocketConnection<?>> resumed = new ArrayList<SocketConnection<?>>();
+    private ManagedExecutor executor;
+    private ManagedExecutor decodeExecutor;
+    private Selector selector;
+    private int activeConnections;
+    private boolean running;
+    private boolean stopped;
+
+    public SocketReceiveLoop(ExecutorFactory executorFactory) {
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Starts receiving messages for the given connection. The connection reads from its socket on the receive thread.
+     */
+    void register(SocketConnection<?> connection) {
+        synchronized (lock) {
+            if (stopped) {
+                throw new IllegalStateException(String.format("Cannot receive messages from %s, as the receive loop has been stopped.", connection));
+            }
+            added.add(connection);
+            activeConnections++;
+            if (running) {
+                selector.wakeup();
+                return;
+            }
+            try {
+                selector = Selector.open();
+            } catch (IOException e) {
+                activeConnections--;
+                added.remove(connection);
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            if (executor == null) {
+                executor = executorFactory.create("Socket receive loop");
+                decodeExecutor = executorFactory.create("Socket message decoding");
+            }
+            running = true;
+            executor.execute(new Receiver(selector));
+        }
+    }
+
+    /**
+     * Stops receiving messages for the given connection. The connection is notified that receiving has finished, if it has not already been.
+     */
+    void unregister(SocketConnection<?> connection) {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            removed.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Starts reading from the socket of the given connection again, after the connection stopped reading while its received messages were decoded.
+     */
+    void resume(SocketConnection<?> connection) {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            resumed.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Runs a task that decodes the received messages of a connection.
+     */
+    void decode(Runnable task) {
+        ManagedExecutor decodeExecutor;
+        synchronized (lock) {
+            decodeExecutor = this.decodeExecutor;
+        }
+        decodeExecutor.execute(task);
+    }
+
+    /**
+     * Stops receiving messages for all connections, and blocks until the receive thread and the decoding of the received messages have finished.
+     */
+    @Override
+    public void stop() {
+        ManagedExecutor executor;
+        ManagedExecutor decodeExecutor;
+        synchronized (lock) {
+            stopped = true;
+            if (running) {
+                selector.wakeup();
+            }
+            executor = this.executor;
+            decodeExecutor = this.decodeExecutor;
+        }
+        // The receive thread may still hand messages to the decoding tasks until it has finished
+        CompositeStoppable.stoppable(executor, decodeExecutor).stop();
+    }
+
+    private class Receiver implements Runnable {
+        private final Selector selector;
+        private final Set<SocketConnection<?>> connections = new LinkedHashSet<SocketConnection<?>>();
+
+        Receiver(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                receive();
+            } catch (Throwable t) {
+                LOGGER.error("Could not receive messages.", t);
+                synchronized (lock) {
+                    running = false;
+                    connections.addAll(added);
+                    added.clear();
+                    removed.clear();
+                    resumed.clear();
+                }
+                for (SocketConnection<?> connection : new ArrayList<SocketConnection<?>>(connections)) {
+                    finished(connection, t);
+                }
+            } finally {
+                CompositeStoppable.stoppable(selector).stop();
+            }
+        }
+
+        private void receive() throws IOException {
+            while (true) {
+                List<SocketConnection<?>> toAdd;
+                List<SocketConnection<?>> toRemove;
+                List<SocketConnection<?>> toResume;
+                boolean stopping;
+                synchronized (lock) {
+                    if (activeConnections == 0) {
+                        running = false;
+                        removed.clear();
+                        resumed.clear();
+                        return;
+                    }
+                    toAdd = new ArrayList<SocketConnection<?>>(added);
+                    added.clear();
+                    toRemove = new ArrayList<SocketConnection<?>>(removed);
+                    removed.clear();
+                    toResume = new ArrayList<SocketConnection<?>>(resumed);
+                    resumed.clear();
+                    stopping = stopped;
+                }
+
+                for (SocketConnection<?> connection : toAdd) {
+                    connections.add(connection);
+                    try {
+                        connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+                    } catch (ClosedChannelException e) {
+                        finished(connection, null);
+                    }
+                }
+                for (SocketConnection<?> connection : toRemove) {
+                    finished(connection, null);
+                }
+                for (SocketConnection<?> connection : toResume) {
+                    SelectionKey key = connection.getChannel().keyFor(selector);
+                    if (key != null && key.isValid()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+                if (stopping) {
+                    for (SocketConnection<?> connection : new ArrayList<SocketConnection<?>>(connections)) {
+                        finished(connection, null);
+                    }
+                    continue;
+                }
+
+                selector.select();
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    SocketConnection<?> connection = (SocketConnection<?>) key.attachment();
+                    boolean open;
+                    Throwable failure = null;
+                    try {
+                        open = key.isValid() && connection.readAvailable(key);
+                    } catch (Throwable t) {
+                        open = false;
+                        failure = t;
+                    }
+                    if (!open) {
+                        finished(connection, failure);
+                    }
+                }
+            }
+        }
+
+        private void finished(SocketConnection<?> connection, Throwable failure) {
+            if (!connections.remove(connection)) {
+                return;
+            }
+            SelectionKey key = connection.getChannel().keyFor(selector);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                connection.receiveFinished(failure);
+            } catch (Throwable t) {
+                LOGGER.error("Could not notify " + connection + " that receiving has finished.", t);
+            } finally {
+                synchronized (lock) {
+                    activeConnections--;
+                }
+            }
+        }
+    }
+}
@@ -42,11 +42,17 @@ public class TcpIncomingConnector implements IncomingConnector {
     private final ExecutorFactory executorFactory;
     private final InetAddressFactory addressFactory;
     private final IdGenerator<UUID> idGenerator;
+    private final SocketReceiveLoop receiveLoop;
 
     public TcpIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory addressFactory, IdGenerator<UUID> idGenerator) {
+        this(executorFactory, addressFactory, idGenerator, new SocketReceiveLoop(executorFactory));
+    }
+
+    public TcpIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory addressFactory, IdGenerator<UUID> idGenerator, SocketReceiveLoop receiveLoop) {
         this.executorFactory = executorFactory;
         this.addressFactory = addressFactory;
         this.idGenerator = idGenerator;
+        this.receiveLoop = receiveLoop;
     }
 
     public ConnectionAcceptor accept(Action<ConnectCompletion> action, boolean allowRemote) {
@@ -109,7 +115,7 @@ public class TcpIncomingConnector implements IncomingConnector {
                         }
                         LOGGER.debug("Accepted connection from {} to {}.", socket.socket().getRemoteSocketAddress(), socket.socket().getLocalSocketAddress());
                         try {
-                            action.execute(new SocketConnectCompletion(socket));
+                            action.execute(new SocketConnectCompletion(socket, receiveLoop));
                         } catch (Throwable t) {
                             socket.close();
                             throw t;
@@ -17,6 +17,7 @@
 package org.gradle.internal.remote.internal.inet;
 
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.remote.Address;
 import org.gradle.internal.remote.internal.ConnectCompletion;
 import org.gradle.internal.remote.internal.OutgoingConnector;
@@ -31,6 +32,15 @@ import java.util.List;
 public class TcpOutgoingConnector implements OutgoingConnector {
     private static final Logger LOGGER = LoggerFactory.getLogger(TcpOutgoingConnector.class);
     private static final int CONNECT_TIMEOUT = 10000;
+    private final SocketReceiveLoop receiveLoop;
+
+    public TcpOutgoingConnector() {
+        this(new SocketReceiveLoop(new DefaultExecutorFactory()));
+    }
+
+    public TcpOutgoingConnector(SocketReceiveLoop receiveLoop) {
+        this.receiveLoop = receiveLoop;
+    }
 
     public ConnectCompletion connect(Address destinationAddress) throws org.gradle.internal.remote.internal.ConnectException {
         if (!(destinationAddress instanceof InetEndpoint)) {
@@ -61,7 +71,7 @@ public class TcpOutgoingConnector implements OutgoingConnector {
                     continue;
                 }
                 LOGGER.debug("Connected to address {}.", socketChannel.socket().getRemoteSocketAddress());
-                return new SocketConnectCompletion(socketChannel);
+                return new SocketConnectCompletion(socketChannel, receiveLoop);
             }
             throw new org.gradle.internal.remote.internal.ConnectException(String.format("Could not connect to server %s. Tried addresses: %s.",
                     destinationAddress, candidateAddresses), lastFailure);
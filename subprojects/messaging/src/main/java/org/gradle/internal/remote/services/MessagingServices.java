@@ -29,6 +29,7 @@ import org.gradle.internal.remote.MessagingServer;
 import org.gradle.internal.remote.internal.hub.MessageHubBackedClient;
 import org.gradle.internal.remote.internal.hub.MessageHubBackedServer;
 import org.gradle.internal.remote.internal.inet.InetAddressFactory;
+import org.gradle.internal.remote.internal.inet.SocketReceiveLoop;
 import org.gradle.internal.remote.internal.inet.TcpIncomingConnector;
 import org.gradle.internal.remote.internal.inet.TcpOutgoingConnector;
 
@@ -60,15 +61,20 @@ public class MessagingServices extends DefaultServiceRegistry implements Stoppab
         return new InetAddressFactory();
     }
 
-    protected OutgoingConnector createOutgoingConnector() {
-        return new TcpOutgoingConnector();
+    protected SocketReceiveLoop createSocketReceiveLoop(ExecutorFactory executorFactory) {
+        return new SocketReceiveLoop(executorFactory);
     }
 
-    protected IncomingConnector createIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory inetAddressFactory) {
+    protected OutgoingConnector createOutgoingConnector(SocketReceiveLoop receiveLoop) {
+        return new TcpOutgoingConnector(receiveLoop);
+    }
+
+    protected IncomingConnector createIncomingConnector(ExecutorFactory executorFactory, InetAddressFactory inetAddressFactory, SocketReceiveLoop receiveLoop) {
         return new TcpIncomingConnector(
                 executorFactory,
                 inetAddressFactory,
-                idGenerator
+                idGenerator,
+                receiveLoop
         );
     }
 
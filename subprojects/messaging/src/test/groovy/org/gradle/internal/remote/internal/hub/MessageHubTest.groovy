@@ -19,6 +19,7 @@ package org.gradle.internal.remote.internal.hub
 import org.gradle.api.Action
 import org.gradle.internal.dispatch.BoundedDispatch
 import org.gradle.internal.dispatch.Dispatch
+import org.gradle.internal.remote.internal.AsyncReceiveConnection
 import org.gradle.internal.remote.internal.RemoteConnection
 import org.gradle.internal.remote.internal.TestConnection
 import org.gradle.internal.remote.internal.hub.protocol.ChannelIdentifier
@@ -283,6 +284,28 @@ class MessageHubTest extends ConcurrentSpec {
         instant.message1Received < instant.message2Received
     }
 
+    def "incoming messages pushed by connection are dispatched to handler"() {
+        AsyncReceiveConnection<InterHubMessage> connection = Mock()
+        Dispatch<String> handler = Mock()
+        AsyncReceiveConnection.Handler<InterHubMessage> receiveHandler = null
+
+        given:
+        hub.addHandler("channel", handler)
+
+        when:
+        hub.addConnection(connection)
+        receiveHandler.messageReceived(new ChannelMessage(new ChannelIdentifier("channel"), "message 1"))
+        thread.blockUntil.message1Received
+        receiveHandler.messageReceived(new EndOfStream())
+
+        then:
+        1 * connection.receiveAsync(_) >> { AsyncReceiveConnection.Handler<InterHubMessage> h -> receiveHandler = h }
+        1 * handler.dispatch("message 1") >> {
+            instant.message1Received
+        }
+        0 * connection.receive()
+    }
+
     def "queued incoming messages are dispatched when handler added"() {
         def connection = new TestConnection()
         Dispatch<String> handler = Mock()
@@ -57,6 +57,42 @@ class MultiEndPointQueueTest extends AbstractQueueTest {
         messages == [message]
     }
 
+    def "endpoint can be polled for queued messages without waiting"() {
+        given:
+        def message1 = unicast()
+        def message2 = unicast()
+        def endpoint = queue.newEndpoint()
+        def dispatched = 0
+        endpoint.dispatchListener = { dispatched++ }
+
+        when:
+        def messages = []
+        def result = endpoint.poll(messages)
+
+        then:
+        !result
+        messages.empty
+
+        when:
+        queue.dispatch(message1)
+        queue.dispatch(message2)
+        result = endpoint.poll(messages)
+
+        then:
+        result
+        messages == [message1]
+        dispatched == 1
+
+        when:
+        messages.clear()
+        result = endpoint.poll(messages)
+
+        then:
+        result
+        messages == [message2]
+        dispatched == 2
+    }
+
     def "forwards queued broadcast messages to all endpoints"() {
         given:
         def message1 = unicast()
@@ -17,6 +17,7 @@ package org.gradle.internal.remote.internal.inet
 
 import org.gradle.api.Action
 import org.gradle.internal.id.UUIDGenerator
+import org.gradle.internal.remote.internal.AsyncReceiveConnection
 import org.gradle.internal.remote.internal.ConnectCompletion
 import org.gradle.internal.remote.internal.ConnectException
 import org.gradle.internal.remote.internal.MessageIOException
@@ -34,6 +35,7 @@ import spock.lang.Timeout
 import spock.lang.Unroll
 
 import java.nio.channels.SocketChannel
+import java.util.concurrent.CopyOnWriteArrayList
 
 @Timeout(60)
 class TcpConnectorTest extends ConcurrentSpec {
@@ -223,6 +225,98 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "can receive messages using receive loop"() {
+        def received = new CopyOnWriteArrayList<String>()
+        def handler = Stub(AsyncReceiveConnection.Handler) {
+            messageReceived(_) >> { String message -> received << message }
+            endOfStream(null) >> { instant.finished }
+        }
+        def largeMessage = "x" * 100000
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            connection.dispatch("hello")
+            connection.dispatch(largeMessage)
+            connection.dispatch("bye")
+            connection.stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection.receiveAsync(handler)
+        thread.blockUntil.finished
+
+        then:
+        received == ["hello", largeMessage, "bye"]
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
+    def "handler of one connection can block without holding up other connections"() {
+        def handler1 = Stub(AsyncReceiveConnection.Handler) {
+            messageReceived(_) >> { thread.blockUntil.received2 }
+            endOfStream(null) >> { instant.finished1 }
+        }
+        def handler2 = Stub(AsyncReceiveConnection.Handler) {
+            messageReceived(_) >> { instant.received2 }
+            endOfStream(null) >> { instant.finished2 }
+        }
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            connection.dispatch("hello")
+            connection.stop()
+        } as Action, false)
+
+        def connection1 = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection1.receiveAsync(handler1)
+        def connection2 = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection2.receiveAsync(handler2)
+        thread.blockUntil.finished1
+        thread.blockUntil.finished2
+
+        then:
+        instant.received2 < instant.finished1
+
+        cleanup:
+        connection1?.stop()
+        connection2?.stop()
+        acceptor?.stop()
+    }
+
+    def "receives all messages when handler is slower than the peer"() {
+        def received = new CopyOnWriteArrayList<String>()
+        def handler = Stub(AsyncReceiveConnection.Handler) {
+            messageReceived(_) >> { String message ->
+                Thread.sleep(5)
+                received << message
+            }
+            endOfStream(null) >> { instant.finished }
+        }
+        def messages = (1..50).collect { (it as String) * 100000 }
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            messages.each { connection.dispatch(it) }
+            connection.stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection.receiveAsync(handler)
+        thread.blockUntil.finished
+
+        then:
+        received == messages
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
     def "returns null on failure to receive due to truncated input"() {
         given:
         def incomingSerializer = { Encoder encoder, String value ->
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.internal.serialize.Serializer;
+
+/**
+ * A serializer whose encoded values never exceed a known number of bytes, which allows the values to be stored in fixed size records.
+ *
+ * @see MappedHashIndexedCache
+ */
+public interface BoundedSizeSerializer<T> extends Serializer<T> {
+    /**
+     * The maximum number of bytes written by {@link #write(org.gradle.internal.serialize.Encoder, Object)} for any value.
+     */
+    int getMaxEncodedSize();
+}
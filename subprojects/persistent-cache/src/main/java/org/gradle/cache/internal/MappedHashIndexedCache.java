@@ -0,0 +1,587 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.api.Transformer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.io.MappedByteBuffers;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link PersistentIndexedCache} for small values of bounded size, stored in an open-addressing hash table in a memory-mapped file.
+ *
+ * <p>The table is split into fixed size buckets of {@link #SLOTS_PER_BUCKET} slots. A key is hashed to a single bucket, and a lookup only ever
+ * scans that bucket. Each bucket is guarded by one of a set of striped locks, so that threads working with different keys do not contend with each other.
+ * When a bucket is full, the number of buckets is doubled. Once the table has reached its maximum number of buckets, the least recently written slot
+ * of a full bucket is replaced instead.</p>
+ *
+ * <p>Similar to {@link org.gradle.cache.internal.btree.BTreePersistentIndexedCache}, a key is identified by a hash of its serialized form, rather than being stored.
+ * Each slot carries a version that is odd while the slot is being written and even otherwise. Slots with an odd version, for example left behind by a crashed
+ * process, are ignored.</p>
+ *
+ * <p>The file is held with an exclusive lock for the lifetime of this cache, so at most one process can use it at a time. Use {@link #tryOpen(File, Serializer, BoundedSizeSerializer, int)}
+ * to fall back to some other implementation when the file is in use.</p>
+ *
+ * <p>A mapping that is replaced when the table is resized, or when the cache is closed, is released immediately rather than when the buffer is garbage collected,
+ * so that the address space used by the mappings does not grow with each resize.</p>
+ */
+public class MappedHashIndexedCache<K, V> implements PersistentIndexedCache<K, V>, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedHashIndexedCache.class);
+    static final int SLOTS_PER_BUCKET = 8;
+    private static final int MAGIC = 0x4d484943;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // version (int), key hash (2 x long), value length (short)
+    private static final int SLOT_HEADER_SIZE = 4 + 8 + 8 + 2;
+    private static final int LOCK_STRIPES = 64;
+    // Reused by each thread to hash keys, so that a lookup does not allocate a digest and an encoder
+    private static final ThreadLocal<KeyHasher> KEY_HASHER = new ThreadLocal<KeyHasher>() {
+        @Override
+        protected KeyHasher initialValue() {
+            return new KeyHasher();
+        }
+    };
+
+    private final File file;
+    private final Serializer<K> keySerializer;
+    private final BoundedSizeSerializer<V> valueSerializer;
+    private final int slotSize;
+    private final int maxBucketCount;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock fileLock;
+    private final ReadWriteLock[] locks = new ReadWriteLock[LOCK_STRIPES];
+    // Held exclusively while the table is resized, and shared otherwise
+    private final ReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private MappedByteBuffer buffer;
+    private int bucketCount;
+    private volatile boolean loggedFull;
+
+    private MappedHashIndexedCache(File file, Serializer<K> keySerializer, BoundedSizeSerializer<V> valueSerializer, int initialBucketCount, int maxBucketCount, RandomAccessFile randomAccessFile, FileLock fileLock) throws IOException {
+        this.file = file;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.slotSize = align(SLOT_HEADER_SIZE + valueSerializer.getMaxEncodedSize());
+        this.maxBucketCount = mappableBucketCount(maxBucketCount);
+        this.randomAccessFile = randomAccessFile;
+        this.fileLock = fileLock;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        // Keep the contents when the table has been resized by an earlier instance
+        int existingBucketCount = readValidBucketCount(randomAccessFile);
+        boolean valid = existingBucketCount > 0;
+        this.bucketCount = valid ? existingBucketCount : initialBucketCount;
+        long size = sizeFor(bucketCount);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many buckets requested for " + file);
+        }
+        if (!valid) {
+            randomAccessFile.setLength(0);
+            randomAccessFile.setLength(size);
+        }
+        this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (!valid) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, slotSize);
+            buffer.putInt(12, bucketCount);
+        }
+    }
+
+    /**
+     * Opens the given file, or returns null when the file is locked by another process.
+     *
+     * @param initialBucketCount The number of buckets in a new table. Must be a power of 2.
+     * @param maxBucketCount The number of buckets beyond which the table is not resized. Must be a power of 2.
+     */
+    @Nullable
+    public static <K, V> MappedHashIndexedCache<K, V> tryOpen(File file, Serializer<K> keySerializer, BoundedSizeSerializer<V> valueSerializer, int initialBucketCount, int maxBucketCount) {
+        if (Integer.bitCount(initialBucketCount) != 1 || Integer.bitCount(maxBucketCount) != 1 || maxBucketCount < initialBucketCount) {
+            throw new IllegalArgumentException(String.format("Bucket counts must be powers of 2, found %s and %s.", initialBucketCount, maxBucketCount));
+        }
+        try {
+            file.getParentFile().mkdirs();
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            FileLock fileLock;
+            try {
+                fileLock = randomAccessFile.getChannel().tryLock();
+            } catch (Exception e) {
+                fileLock = null;
+            }
+            if (fileLock == null) {
+                randomAccessFile.close();
+                LOGGER.debug("Hash index {} is in use by another process.", file);
+                return null;
+            }
+            try {
+                return new MappedHashIndexedCache<K, V>(file, keySerializer, valueSerializer, initialBucketCount, maxBucketCount, randomAccessFile, fileLock);
+            } catch (IOException e) {
+                fileLock.release();
+                randomAccessFile.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open hash index %s.", file), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "mapped hash index " + file;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        KeyHasher keyHash = hashKey(key);
+        byte[] encoded = null;
+        tableLock.readLock().lock();
+        try {
+            assertOpen();
+            int bucket = bucketFor(keyHash);
+            ReadWriteLock lock = lockFor(bucket);
+            lock.readLock().lock();
+            try {
+                int slot = findSlot(bucket, keyHash);
+                if (slot >= 0) {
+                    encoded = readValue(slot);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            tableLock.readLock().unlock();
+        }
+        return encoded == null ? null : decode(encoded);
+    }
+
+    @Override
+    public V get(K key, Transformer<? extends V, ? super K> producer) {
+        V value = get(key);
+        if (value == null) {
+            value = producer.transform(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] encoded = encode(value);
+        KeyHasher keyHash = hashKey(key);
+        while (true) {
+            int fullBucketCount;
+            tableLock.readLock().lock();
+            try {
+                assertOpen();
+                int bucket = bucketFor(keyHash);
+                ReadWriteLock lock = lockFor(bucket);
+                lock.writeLock().lock();
+                try {
+                    int slot = findSlot(bucket, keyHash);
+                    if (slot < 0) {
+                        slot = findFreeSlot(bucket);
+                    }
+                    if (slot < 0 && bucketCount >= maxBucketCount) {
+                        slot = selectSlotToReplace(bucket);
+                    }
+                    if (slot >= 0) {
+                        writeSlot(slot, keyHash, encoded);
+                        return;
+                    }
+                    fullBucketCount = bucketCount;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                tableLock.readLock().unlock();
+            }
+            grow(fullBucketCount);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        KeyHasher keyHash = hashKey(key);
+        tableLock.readLock().lock();
+        try {
+            assertOpen();
+            int bucket = bucketFor(keyHash);
+            ReadWriteLock lock = lockFor(bucket);
+            lock.writeLock().lock();
+            try {
+                int slot = findSlot(bucket, keyHash);
+                if (slot >= 0) {
+                    buffer.putInt(slotOffset(slot), 0);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            tableLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Doubles the number of buckets, unless another thread has already done so. The entries of bucket {@code b} either stay in that bucket or move to
+     * bucket {@code b + bucketCount}, which is new and so has room for all of them.
+     *
+     * <p>The new bucket count is written to the header last, so that a table left behind part way through is discarded when next opened, as its length
+     * does not match its header.</p>
+     */
+    private void grow(int fullBucketCount) {
+        tableLock.writeLock().lock();
+        try {
+            if (buffer == null || bucketCount != fullBucketCount) {
+                return;
+            }
+            int newBucketCount = bucketCount * 2;
+            long size = sizeFor(newBucketCount);
+            LOGGER.debug("Resizing hash index {} to {} buckets.", file, newBucketCount);
+            randomAccessFile.setLength(size);
+            MappedByteBuffer newBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            byte[] slotContents = new byte[slotSize];
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                int targetSlot = (bucket + bucketCount) * SLOTS_PER_BUCKET;
+                int firstSlot = bucket * SLOTS_PER_BUCKET;
+                for (int slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+                    int offset = slotOffset(slot);
+                    int version = newBuffer.getInt(offset);
+                    if (version == 0 || (version & 1) != 0 || (newBuffer.getLong(offset + 4) & bucketCount) == 0) {
+                        continue;
+                    }
+                    newBuffer.position(offset);
+                    newBuffer.get(slotContents);
+                    newBuffer.position(slotOffset(targetSlot++));
+                    newBuffer.put(slotContents);
+                    newBuffer.putInt(offset, 0);
+                }
+            }
+            newBuffer.putInt(12, newBucketCount);
+            unmap(buffer);
+            buffer = newBuffer;
+            bucketCount = newBucketCount;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not resize hash index %s.", file), e);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        tableLock.writeLock().lock();
+        try {
+            if (buffer == null) {
+                return;
+            }
+            buffer.force();
+            unmap(buffer);
+            buffer = null;
+            fileLock.release();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the table lock, as the buffer is unmapped when the cache is closed.
+     */
+    private void assertOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException(String.format("Cannot use %s, as it has been closed.", this));
+        }
+    }
+
+    /**
+     * Must be called while holding the table lock exclusively, so that no other thread is using the buffer.
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            MappedByteBuffers.unmap(buffer);
+        } catch (Exception e) {
+            LOGGER.debug("Could not unmap hash index {}.", file, e);
+        }
+    }
+
+    private int findSlot(int bucket, KeyHasher keyHash) {
+        int firstSlot = bucket * SLOTS_PER_BUCKET;
+        for (int slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+            int offset = slotOffset(slot);
+            int version = buffer.getInt(offset);
+            if (version != 0 && (version & 1) == 0 && buffer.getLong(offset + 4) == keyHash.hash && buffer.getLong(offset + 12) == keyHash.check) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an empty or damaged slot, or -1 when the bucket is full.
+     */
+    private int findFreeSlot(int bucket) {
+        int firstSlot = bucket * SLOTS_PER_BUCKET;
+        for (int slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+            int version = buffer.getInt(slotOffset(slot));
+            if (version == 0 || (version & 1) != 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of a full bucket that was written least recently.
+     */
+    private int selectSlotToReplace(int bucket) {
+        if (!loggedFull) {
+            LOGGER.debug("Hash index {} has reached its maximum size, replacing the least recently written entries.", file);
+            loggedFull = true;
+        }
+        int firstSlot = bucket * SLOTS_PER_BUCKET;
+        int candidate = firstSlot;
+        int candidateVersion = Integer.MAX_VALUE;
+        for (int slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+            int version = buffer.getInt(slotOffset(slot));
+            if (version < candidateVersion) {
+                candidate = slot;
+                candidateVersion = version;
+            }
+        }
+        return candidate;
+    }
+
+    private void writeSlot(int slot, KeyHasher keyHash, byte[] encoded) {
+        int offset = slotOffset(slot);
+        int version = nextVersion(slot / SLOTS_PER_BUCKET);
+        buffer.putInt(offset, version - 1);
+        buffer.putLong(offset + 4, keyHash.hash);
+        buffer.putLong(offset + 12, keyHash.check);
+        buffer.putShort(offset + 20, (short) encoded.length);
+        for (int i = 0; i < encoded.length; i++) {
+            buffer.put(offset + SLOT_HEADER_SIZE + i, encoded[i]);
+        }
+        buffer.putInt(offset, version);
+    }
+
+    /**
+     * Versions increase within a bucket, so that they also record the order in which the slots of the bucket were written.
+     */
+    private int nextVersion(int bucket) {
+        int firstSlot = bucket * SLOTS_PER_BUCKET;
+        int max = 0;
+        for (int slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+            max = Math.max(max, buffer.getInt(slotOffset(slot)) & ~1);
+        }
+        if (max >= Integer.MAX_VALUE - 2) {
+            renumber(bucket);
+            return nextVersion(bucket);
+        }
+        return max + 2;
+    }
+
+    /**
+     * Replaces the versions of the slots of the given bucket with 2, 4, 6 and so on, keeping the order in which the slots were written.
+     */
+    private void renumber(int bucket) {
+        int firstSlot = bucket * SLOTS_PER_BUCKET;
+        int[] versions = new int[SLOTS_PER_BUCKET];
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            versions[i] = buffer.getInt(slotOffset(firstSlot + i));
+        }
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            if (versions[i] == 0 || (versions[i] & 1) != 0) {
+                continue;
+            }
+            int olderSlots = 0;
+            for (int j = 0; j < SLOTS_PER_BUCKET; j++) {
+                if (versions[j] != 0 && (versions[j] & 1) == 0 && versions[j] < versions[i]) {
+                    olderSlots++;
+                }
+            }
+            buffer.putInt(slotOffset(firstSlot + i), 2 + 2 * olderSlots);
+        }
+    }
+
+    private byte[] readValue(int slot) {
+        int offset = slotOffset(slot);
+        byte[] encoded = new byte[buffer.getShort(offset + 20)];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = buffer.get(offset + SLOT_HEADER_SIZE + i);
+        }
+        return encoded;
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private int bucketFor(KeyHasher keyHash) {
+        return (int) (keyHash.hash & (bucketCount - 1));
+    }
+
+    private ReadWriteLock lockFor(int bucket) {
+        return locks[bucket & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Returns the hasher of the current thread, holding the hash of the given key until the next key is hashed by this thread.
+     */
+    private KeyHasher hashKey(K key) {
+        KeyHasher hasher = KEY_HASHER.get();
+        try {
+            hasher.hash(keySerializer, key);
+        } catch (Exception e) {
+            // Discard any partially encoded key
+            KEY_HASHER.remove();
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return hasher;
+    }
+
+    private byte[] encode(V value) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+            valueSerializer.write(encoder, value);
+            encoder.flush();
+            byte[] encoded = outputStream.toByteArray();
+            if (encoded.length > valueSerializer.getMaxEncodedSize()) {
+                throw new IllegalArgumentException(String.format("Value for %s encoded to %s bytes, which is larger than the maximum of %s bytes.", this, encoded.length, valueSerializer.getMaxEncodedSize()));
+            }
+            return encoded;
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private V decode(byte[] encoded) {
+        try {
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(encoded)));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Calculates the MD5 hash of the serialized form of a key, reusing the same buffers for each key.
+     */
+    private static class KeyHasher {
+        private final KeyOutputStream outputStream = new KeyOutputStream();
+        private final KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        private final MessageDigest digest;
+        private final byte[] digestBytes = new byte[16];
+        // The low half of the digest, which selects the bucket
+        long hash;
+        // The high half of the digest
+        long check;
+
+        KeyHasher() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        <K> void hash(Serializer<K> keySerializer, K key) throws Exception {
+            outputStream.reset();
+            keySerializer.write(encoder, key);
+            encoder.flush();
+            digest.update(outputStream.buffer(), 0, outputStream.size());
+            digest.digest(digestBytes, 0, digestBytes.length);
+            long hash = readLong(digestBytes, 8);
+            // 0 is never a valid hash, so that a zeroed slot never matches
+            this.hash = hash == 0 ? 1 : hash;
+            this.check = readLong(digestBytes, 0);
+        }
+
+        private static long readLong(byte[] bytes, int offset) {
+            long value = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                value = (value << 8) | (bytes[i] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    private static class KeyOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Returns the given number of buckets, reduced so that the table can still be mapped.
+     */
+    private int mappableBucketCount(int bucketCount) {
+        while (bucketCount > 1 && sizeFor(bucketCount) > Integer.MAX_VALUE) {
+            bucketCount >>>= 1;
+        }
+        return bucketCount;
+    }
+
+    private long sizeFor(int bucketCount) {
+        return HEADER_SIZE + (long) bucketCount * SLOTS_PER_BUCKET * slotSize;
+    }
+
+    /**
+     * Returns the number of buckets of an existing table with the expected layout, or 0 when the file does not contain such a table.
+     */
+    private int readValidBucketCount(RandomAccessFile file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return 0;
+        }
+        file.seek(0);
+        if (file.readInt() != MAGIC || file.readInt() != FORMAT_VERSION || file.readInt() != slotSize) {
+            return 0;
+        }
+        int existingBucketCount = file.readInt();
+        if (Integer.bitCount(existingBucketCount) != 1 || existingBucketCount > maxBucketCount || file.length() != sizeFor(existingBucketCount)) {
+            return 0;
+        }
+        return existingBucketCount;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import org.gradle.api.Transformer
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedHashIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def file = tmpDir.file("cache.idx")
+    MappedHashIndexedCache<String, Long> cache
+
+    def setup() {
+        cache = open()
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "can put, get and remove values"() {
+        expect:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", 12L)
+        cache.put("b", 14L)
+
+        then:
+        cache.get("a") == 12L
+        cache.get("b") == 14L
+
+        when:
+        cache.put("a", 13L)
+        cache.remove("b")
+
+        then:
+        cache.get("a") == 13L
+        cache.get("b") == null
+    }
+
+    def "values survive reopening the file"() {
+        given:
+        cache.put("a", 12L)
+
+        when:
+        cache.close()
+        cache = open()
+
+        then:
+        cache.get("a") == 12L
+    }
+
+    def "cannot be opened while in use by another instance"() {
+        expect:
+        MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(8), 16, 16) == null
+    }
+
+    def "grows when a bucket is full"() {
+        given:
+        cache.close()
+        cache = MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(8), 1, 1024)
+
+        when:
+        (0..<1000).each { cache.put("key" + it, it as Long) }
+
+        then:
+        (0..<1000).every { cache.get("key" + it) == it }
+
+        when:
+        cache.close()
+        cache = MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(8), 1, 1024)
+
+        then:
+        (0..<1000).every { cache.get("key" + it) == it }
+    }
+
+    def "can be used by multiple threads while growing"() {
+        given:
+        cache.close()
+        cache = MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(8), 1, 1024)
+
+        when:
+        def threads = (0..<4).collect { thread ->
+            Thread.start {
+                (0..<250).each { cache.put("key" + thread + "-" + it, it as Long) }
+            }
+        }
+        threads*.join()
+
+        then:
+        (0..<4).every { thread -> (0..<250).every { cache.get("key" + thread + "-" + it) == it } }
+    }
+
+    def "cannot be used once closed"() {
+        given:
+        cache.put("a", 12L)
+        cache.close()
+
+        when:
+        cache.get("a")
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Cannot use mapped hash index ${file}, as it has been closed."
+    }
+
+    def "replaces least recently written entry when bucket is full and table has reached its maximum size"() {
+        given:
+        cache.close()
+        cache = MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(8), 1, 1)
+
+        when:
+        (0..MappedHashIndexedCache.SLOTS_PER_BUCKET).each { cache.put("key" + it, it as Long) }
+
+        then:
+        cache.get("key0") == null
+        (1..MappedHashIndexedCache.SLOTS_PER_BUCKET).every { cache.get("key" + it) == it }
+    }
+
+    def "discards contents when file does not match the requested layout"() {
+        given:
+        cache.put("a", 12L)
+        cache.close()
+
+        when:
+        cache = MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(16), 16, 16)
+
+        then:
+        cache.get("a") == null
+    }
+
+    def "uses producer for missing values"() {
+        expect:
+        cache.get("a", { 12L } as Transformer) == 12L
+        cache.get("a", { 13L } as Transformer) == 12L
+    }
+
+    private MappedHashIndexedCache<String, Long> open() {
+        return MappedHashIndexedCache.tryOpen(file, BaseSerializerFactory.STRING_SERIALIZER, new LongSerializer(8), 16, 16)
+    }
+
+    private static class LongSerializer implements BoundedSizeSerializer<Long> {
+        private final int maxEncodedSize
+
+        LongSerializer(int maxEncodedSize) {
+            this.maxEncodedSize = maxEncodedSize
+        }
+
+        @Override
+        int getMaxEncodedSize() {
+            return maxEncodedSize
+        }
+
+        @Override
+        Long read(Decoder decoder) throws Exception {
+            return decoder.readLong()
+        }
+
+        @Override
+        void write(Encoder encoder, Long value) throws Exception {
+            encoder.writeLong(value)
+        }
+    }
+}
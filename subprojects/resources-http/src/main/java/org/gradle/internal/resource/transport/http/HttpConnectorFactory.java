@@ -37,9 +37,11 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
     );
 
     private SslContextFactory sslContextFactory;
+    private final HttpDirectoryListingCache listingCache;
 
-    public HttpConnectorFactory(SslContextFactory sslContextFactory) {
+    public HttpConnectorFactory(SslContextFactory sslContextFactory, HttpDirectoryListingCache listingCache) {
         this.sslContextFactory = sslContextFactory;
+        this.listingCache = listingCache;
     }
 
     @Override
@@ -60,7 +62,7 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
             .build()
         );
         HttpResourceAccessor accessor = new HttpResourceAccessor(http);
-        HttpResourceLister lister = new HttpResourceLister(accessor);
+        HttpResourceLister lister = new HttpResourceLister(accessor, listingCache);
         HttpResourceUploader uploader = new HttpResourceUploader(http);
         return new DefaultExternalResourceConnector(accessor, lister, uploader);
     }
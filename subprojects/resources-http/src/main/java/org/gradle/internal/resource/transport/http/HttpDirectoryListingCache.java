@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers HTTP directory listings, along with the validators returned by the server, so that a listing can be revalidated with a conditional request
+ * instead of being downloaded and parsed again. Listings are keyed by URI, so they are shared by all repositories and builds using the same URL.
+ *
+ * <p>A cached listing is never used without asking the server first, so the credentials of each repository still apply.</p>
+ */
+public class HttpDirectoryListingCache {
+    private static final int MAX_LISTINGS = 2000;
+    private static final long EXPIRY_MINUTES = 60;
+
+    private final Cache<URI, Listing> listings = CacheBuilder.newBuilder()
+        .maximumSize(MAX_LISTINGS)
+        .expireAfterAccess(EXPIRY_MINUTES, TimeUnit.MINUTES)
+        .build();
+
+    @Nullable
+    public Listing get(URI directory) {
+        return listings.getIfPresent(directory);
+    }
+
+    /**
+     * Remembers the listing of the given directory, when the response can be revalidated.
+     */
+    public void store(URI directory, ExternalResourceMetaData metaData, List<String> paths) {
+        String etag = metaData.getEtag();
+        long lastModified = metaData.getLastModified() == null ? 0 : metaData.getLastModified().getTime();
+        if (etag == null && lastModified <= 0) {
+            listings.invalidate(directory);
+            return;
+        }
+        listings.put(directory, new Listing(etag, lastModified, ImmutableList.copyOf(paths)));
+    }
+
+    public void remove(URI directory) {
+        listings.invalidate(directory);
+    }
+
+    public static class Listing {
+        private final String etag;
+        private final long lastModified;
+        private final List<String> paths;
+
+        private Listing(@Nullable String etag, long lastModified, List<String> paths) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.paths = paths;
+        }
+
+        @Nullable
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+    }
+}
@@ -48,6 +48,22 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
         return null;
     }
 
+    /**
+     * Same as {@link #openResource(URI, boolean)}, except that the server may respond with 304 (Not Modified) and no content when the resource still matches the given validators.
+     */
+    @Nullable
+    public HttpResponseResource openResourceIfModified(final URI uri, boolean revalidate, @Nullable String etag, long lastModified) {
+        String location = uri.toString();
+        LOGGER.debug("Constructing external resource, if modified: {}", location);
+
+        CloseableHttpResponse response = http.performConditionalGet(location, revalidate, etag, lastModified);
+        if (response != null) {
+            return wrapResponse(uri, response);
+        }
+
+        return null;
+    }
+
     /**
      * Same as #getResource except that it always gives access to the response body,
      * irrespective of the returned HTTP status code. Never returns {@code null}.
@@ -16,10 +16,13 @@
 
 package org.gradle.internal.resource.transport.http;
 
+import org.apache.http.HttpStatus;
 import org.gradle.api.resources.ResourceException;
 import org.gradle.internal.resource.ResourceExceptions;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
 import org.gradle.internal.resource.transfer.ExternalResourceLister;
-import org.gradle.internal.resource.transfer.ExternalResourceReadResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -27,24 +30,42 @@ import java.net.URI;
 import java.util.List;
 
 public class HttpResourceLister implements ExternalResourceLister {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpResourceLister.class);
     private HttpResourceAccessor accessor;
+    private final HttpDirectoryListingCache listingCache;
 
     public HttpResourceLister(HttpResourceAccessor accessor) {
+        this(accessor, new HttpDirectoryListingCache());
+    }
+
+    public HttpResourceLister(HttpResourceAccessor accessor, HttpDirectoryListingCache listingCache) {
         this.accessor = accessor;
+        this.listingCache = listingCache;
     }
 
     public List<String> list(final URI directory) {
-        final ExternalResourceReadResponse response = accessor.openResource(directory, true);
+        HttpDirectoryListingCache.Listing cached = listingCache.get(directory);
+        final HttpResponseResource response = cached == null
+            ? accessor.openResource(directory, true)
+            : accessor.openResourceIfModified(directory, true, cached.getEtag(), cached.getLastModified());
         if (response == null) {
+            listingCache.remove(directory);
             return null;
         }
         try {
             try {
-                String contentType = response.getMetaData().getContentType();
+                if (cached != null && response.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    LOGGER.debug("Directory listing of {} has not changed.", directory);
+                    return cached.getPaths();
+                }
+                ExternalResourceMetaData metaData = response.getMetaData();
+                String contentType = metaData.getContentType();
                 ApacheDirectoryListingParser directoryListingParser = new ApacheDirectoryListingParser();
                 InputStream inputStream = response.openStream();
                 try {
-                    return directoryListingParser.parse(directory, inputStream, contentType);
+                    List<String> paths = directoryListingParser.parse(directory, inputStream, contentType);
+                    listingCache.store(directory, metaData, paths);
+                    return paths;
                 } catch (Exception e) {
                     throw new ResourceException(directory, String.format("Unable to parse HTTP directory listing for '%s'.", directory), e);
                 }
@@ -39,8 +39,12 @@ public class HttpResourcesPluginServiceRegistry extends AbstractPluginServiceReg
             return new DefaultSslContextFactory();
         }
 
-        ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory) {
-            return new HttpConnectorFactory(sslContextFactory);
+        HttpDirectoryListingCache createHttpDirectoryListingCache() {
+            return new HttpDirectoryListingCache();
+        }
+
+        ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory, HttpDirectoryListingCache listingCache) {
+            return new HttpConnectorFactory(sslContextFactory, listingCache);
         }
     }
 
@@ -21,9 +21,12 @@ import org.apache.http.ssl.SSLContexts
 import org.gradle.api.artifacts.repositories.PasswordCredentials
 import org.gradle.internal.authentication.AllSchemesAuthentication
 import org.gradle.internal.resource.UriTextResource
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 import spock.lang.Specification
 
 public class HttpClientConfigurerTest extends Specification {
+    @Rule SetSystemProperties systemProperties = new SetSystemProperties()
     HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
     PasswordCredentials credentials = Mock()
     AllSchemesAuthentication authentication = Mock() {
@@ -126,4 +129,29 @@ public class HttpClientConfigurerTest extends Specification {
         httpClientBuilder.defaultRequestConfig.connectTimeout == 10000
         httpClientBuilder.defaultRequestConfig.socketTimeout == 30000
     }
+
+    def "configures connection pool size"() {
+        httpSettings.authenticationSettings >> []
+        httpSettings.sslContextFactory >> sslContextFactory
+
+        when:
+        configurer.configure(httpClientBuilder)
+
+        then:
+        httpClientBuilder.maxConnTotal == 20
+        httpClientBuilder.maxConnPerRoute == 20
+    }
+
+    def "configures connection pool size from system property"() {
+        httpSettings.authenticationSettings >> []
+        httpSettings.sslContextFactory >> sslContextFactory
+        System.setProperty(HttpClientConfigurer.MAX_CONNECTIONS_SYSTEM_PROPERTY, "5")
+
+        when:
+        configurer.configure(httpClientBuilder)
+
+        then:
+        httpClientBuilder.maxConnTotal == 5
+        httpClientBuilder.maxConnPerRoute == 5
+    }
 }
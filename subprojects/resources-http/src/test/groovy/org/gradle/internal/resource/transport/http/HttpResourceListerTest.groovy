@@ -43,4 +43,32 @@ class HttpResourceListerTest extends Specification {
         expect:
         null == lister.list(new URI("http://testrepo"))
     }
+
+    def "revalidates previous listing with a conditional request"() {
+        def listingCache = new HttpDirectoryListingCache()
+        def lister = new HttpResourceLister(accessorMock, listingCache)
+        def uri = new URI("http://testrepo/")
+        HttpResponseResource notModified = Mock()
+
+        when:
+        def first = lister.list(uri)
+
+        then:
+        1 * accessorMock.openResource(uri, true) >> externalResource
+        _ * externalResource.metaData >> metaData
+        _ * metaData.contentType >> "text/html"
+        _ * metaData.etag >> '"abc"'
+        1 * externalResource.openStream() >> new ByteArrayInputStream("<a href='child'/>".bytes)
+        first.size() == 1
+
+        when:
+        def second = lister.list(uri)
+
+        then:
+        1 * accessorMock.openResourceIfModified(uri, true, '"abc"', 0) >> notModified
+        _ * notModified.statusCode >> 304
+        0 * notModified.openStream()
+        1 * notModified.close()
+        second == first
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.id.CompositeIdGenerator;
+
+/**
+ * Collects the output events produced by tests into batches, so that chatty tests send a few large messages to the build process rather than one message per line.
+ * Queued output is sent before any other event, so that the order of events is preserved, when the batch becomes large, and whenever {@link #flush()} is called.
+ *
+ * <p>This processor is thread-safe.</p>
+ */
+public class BatchingTestResultProcessor implements TestResultProcessor {
+    static final int MAX_BATCH_EVENTS = 1000;
+    static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    private final RemoteTestResultProcessor delegate;
+    private TestOutputBatch batch = new TestOutputBatch();
+    private int batchChars;
+
+    public BatchingTestResultProcessor(RemoteTestResultProcessor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void started(TestDescriptorInternal test, TestStartEvent event) {
+        flush();
+        delegate.started(test, event);
+    }
+
+    @Override
+    public synchronized void completed(Object testId, TestCompleteEvent event) {
+        flush();
+        delegate.completed(testId, event);
+    }
+
+    @Override
+    public synchronized void output(Object testId, TestOutputEvent event) {
+        if (!(testId instanceof CompositeIdGenerator.CompositeId) || !(event instanceof DefaultTestOutputEvent)) {
+            flush();
+            delegate.output(testId, event);
+            return;
+        }
+        batch.add((CompositeIdGenerator.CompositeId) testId, (DefaultTestOutputEvent) event);
+        batchChars += event.getMessage().length();
+        if (batch.size() >= MAX_BATCH_EVENTS || batchChars >= MAX_BATCH_CHARS) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void failure(Object testId, Throwable result) {
+        flush();
+        delegate.failure(testId, result);
+    }
+
+    /**
+     * Sends any queued output events.
+     */
+    public synchronized void flush() {
+        if (batch.size() == 0) {
+            return;
+        }
+        if (batch.size() == 1) {
+            delegate.output(batch.getTestId(0), batch.getEvent(0));
+        } else {
+            delegate.output(batch);
+        }
+        batch = new TestOutputBatch();
+        batchChars = 0;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+
+/**
+ * Used by a test worker to send results back to the build process. Allows output events to be sent in batches, rather than as one message per event.
+ *
+ * @see BatchingTestResultProcessor
+ */
+public interface RemoteTestResultProcessor extends TestResultProcessor {
+    /**
+     * Notifies this processor that tests have produced some output. Equivalent to calling {@link #output(Object, org.gradle.api.tasks.testing.TestOutputEvent)} for each event of the batch, in order.
+     */
+    void output(TestOutputBatch batch);
+}
@@ -22,6 +22,9 @@ import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.serialize.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class TestEventSerializer {
     public static SerializerRegistry create() {
         BaseSerializerFactory factory = new BaseSerializerFactory();
@@ -36,6 +39,7 @@ public class TestEventSerializer {
         registry.register(TestStartEvent.class, new TestStartEventSerializer());
         registry.register(TestCompleteEvent.class, new TestCompleteEventSerializer());
         registry.register(DefaultTestOutputEvent.class, new DefaultTestOutputEventSerializer());
+        registry.register(TestOutputBatch.class, new TestOutputBatchSerializer());
         registry.register(Throwable.class, factory.getSerializerFor(Throwable.class));
         return registry;
     }
@@ -140,6 +144,32 @@ public class TestEventSerializer {
         }
     }
 
+    private static class TestOutputBatchSerializer implements Serializer<TestOutputBatch> {
+        private final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
+        private final Serializer<DefaultTestOutputEvent> eventSerializer = new DefaultTestOutputEventSerializer();
+
+        @Override
+        public TestOutputBatch read(Decoder decoder) throws Exception {
+            int size = decoder.readSmallInt();
+            List<CompositeIdGenerator.CompositeId> testIds = new ArrayList<CompositeIdGenerator.CompositeId>(size);
+            List<DefaultTestOutputEvent> events = new ArrayList<DefaultTestOutputEvent>(size);
+            for (int i = 0; i < size; i++) {
+                testIds.add(idSerializer.read(decoder));
+                events.add(eventSerializer.read(decoder));
+            }
+            return new TestOutputBatch(testIds, events);
+        }
+
+        @Override
+        public void write(Encoder encoder, TestOutputBatch value) throws Exception {
+            encoder.writeSmallInt(value.size());
+            for (int i = 0; i < value.size(); i++) {
+                idSerializer.write(encoder, value.getTestId(i));
+                eventSerializer.write(encoder, value.getEvent(i));
+            }
+        }
+    }
+
     private static class DefaultTestSuiteDescriptorSerializer implements Serializer<DefaultTestSuiteDescriptor> {
         final Serializer<CompositeIdGenerator.CompositeId> idSerializer = new IdSerializer();
 
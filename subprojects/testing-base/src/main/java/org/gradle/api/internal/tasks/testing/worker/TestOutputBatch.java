@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.id.CompositeIdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of output events, along with the tests that produced them.
+ */
+public class TestOutputBatch {
+    private final List<CompositeIdGenerator.CompositeId> testIds;
+    private final List<DefaultTestOutputEvent> events;
+
+    public TestOutputBatch() {
+        this(new ArrayList<CompositeIdGenerator.CompositeId>(), new ArrayList<DefaultTestOutputEvent>());
+    }
+
+    TestOutputBatch(List<CompositeIdGenerator.CompositeId> testIds, List<DefaultTestOutputEvent> events) {
+        this.testIds = testIds;
+        this.events = events;
+    }
+
+    public void add(CompositeIdGenerator.CompositeId testId, DefaultTestOutputEvent event) {
+        testIds.add(testId);
+        events.add(event);
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    CompositeIdGenerator.CompositeId getTestId(int index) {
+        return testIds.get(index);
+    }
+
+    DefaultTestOutputEvent getEvent(int index) {
+        return events.get(index);
+    }
+
+    /**
+     * Notifies the given processor of each output event of this batch.
+     */
+    public void dispatchTo(TestResultProcessor processor) {
+        for (int i = 0; i < events.size(); i++) {
+            processor.output(testIds.get(i), events.get(i));
+        }
+    }
+}
@@ -19,13 +19,13 @@ package org.gradle.api.internal.tasks.testing.worker;
 import org.gradle.api.Action;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
-import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.actor.internal.DefaultActorFactory;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedScheduledExecutor;
 import org.gradle.internal.dispatch.ContextClassLoaderProxy;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.id.IdGenerator;
@@ -41,14 +41,16 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.security.AccessControlException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
+    private static final long OUTPUT_FLUSH_INTERVAL_MILLIS = 50;
     private final WorkerTestClassProcessorFactory factory;
     private CountDownLatch completed;
     private TestClassProcessor processor;
-    private TestResultProcessor resultProcessor;
+    private BatchingTestResultProcessor resultProcessor;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
         this.factory = factory;
@@ -91,9 +93,18 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
 
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        this.resultProcessor = new BatchingTestResultProcessor(serverConnection.addOutgoing(RemoteTestResultProcessor.class));
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
+
+        // Send output that has been batched up while a test is running, so that it is not delayed until the test completes
+        ManagedScheduledExecutor outputFlusher = testServices.get(ExecutorFactory.class).createScheduled("Test output flusher", 1);
+        outputFlusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                resultProcessor.flush();
+            }
+        }, OUTPUT_FLUSH_INTERVAL_MILLIS, OUTPUT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -108,7 +119,11 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         try {
             processor.processTestClass(testClass);
         } catch (AccessControlException e) {
-            completed.countDown();
+            try {
+                resultProcessor.flush();
+            } finally {
+                completed.countDown();
+            }
             throw e;
         } finally {
             // Clean the interrupted status
@@ -122,10 +137,14 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         try {
             processor.stop();
         } finally {
-            completed.countDown();
-            // Clean the interrupted status
-            // because some test class processors do work here, e.g. JUnitPlatform
-            Thread.interrupted();
+            try {
+                resultProcessor.flush();
+            } finally {
+                completed.countDown();
+                // Clean the interrupted status
+                // because some test class processors do work here, e.g. JUnitPlatform
+                Thread.interrupted();
+            }
         }
     }
 
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.internal.id.CompositeIdGenerator
+import spock.lang.Specification
+
+class BatchingTestResultProcessorTest extends Specification {
+    def delegate = Mock(RemoteTestResultProcessor)
+    def processor = new BatchingTestResultProcessor(delegate)
+    def testId = new CompositeIdGenerator.CompositeId(1L, 2L)
+
+    def "sends queued output as a batch before other events"() {
+        def completeEvent = new TestCompleteEvent(100L)
+
+        when:
+        processor.output(testId, output("line 1"))
+        processor.output(testId, output("line 2"))
+
+        then:
+        0 * delegate._
+
+        when:
+        processor.completed(testId, completeEvent)
+
+        then:
+        1 * delegate.output({ TestOutputBatch batch -> batch.size() == 2 && batch.getEvent(0).message == "line 1" && batch.getEvent(1).message == "line 2" })
+
+        then:
+        1 * delegate.completed(testId, completeEvent)
+        0 * delegate._
+    }
+
+    def "sends a single queued output event without batching when flushed"() {
+        def event = output("line")
+
+        when:
+        processor.output(testId, event)
+        processor.flush()
+        processor.flush()
+
+        then:
+        1 * delegate.output(testId, event)
+        0 * delegate._
+    }
+
+    def "sends batch when it becomes large"() {
+        when:
+        BatchingTestResultProcessor.MAX_BATCH_EVENTS.times {
+            processor.output(testId, output("line"))
+        }
+
+        then:
+        1 * delegate.output({ TestOutputBatch batch -> batch.size() == BatchingTestResultProcessor.MAX_BATCH_EVENTS })
+        0 * delegate._
+    }
+
+    def "forwards output that cannot be batched in order"() {
+        def otherId = "other-id"
+        def first = output("first")
+        def second = output("second")
+
+        when:
+        processor.output(testId, first)
+        processor.output(otherId, second)
+
+        then:
+        1 * delegate.output(testId, first)
+
+        then:
+        1 * delegate.output(otherId, second)
+        0 * delegate._
+    }
+
+    def output(String message) {
+        return new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, message)
+    }
+}
@@ -162,6 +162,27 @@ class TestEventSerializerTest extends SerializerSpec {
         result.message == "hi"
     }
 
+    def "serializes TestOutputBatch"() {
+        def id1 = new CompositeIdGenerator.CompositeId(1L, 2L)
+        def id2 = new CompositeIdGenerator.CompositeId(1L, 3L)
+        def batch = new TestOutputBatch()
+        batch.add(id1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "out"))
+        batch.add(id2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "err"))
+        def processor = Mock(TestResultProcessor)
+
+        when:
+        def result = serialize(batch)
+        result.dispatchTo(processor)
+
+        then:
+        result.size() == 2
+        1 * processor.output(id1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "out"))
+
+        then:
+        1 * processor.output(id2, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "err"))
+        0 * processor._
+    }
+
     def "serializes Throwable"() {
         def failure = new GradleException("broken", new RuntimeException("cause"))
 
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.IdentityFileResolver;
 import org.gradle.process.CommandLineArgumentProvider;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.process.ProcessForkOptions;
@@ -67,6 +68,25 @@ public class DaemonForkOptionsBuilder {
         return new DaemonForkOptions(buildJavaForkOptions(), classpath, sharedPackages, keepAliveMode);
     }
 
+    /**
+     * Creates a copy of the given options that does not refer to the build that created them, such as to its file resolver, so that the copy can be kept
+     * after the build has finished.
+     */
+    public static DaemonForkOptions detachedCopyOf(DaemonForkOptions options) {
+        JavaForkOptions source = options.getJavaForkOptions();
+        JavaForkOptionsInternal javaForkOptions = new DefaultJavaForkOptions(new IdentityFileResolver());
+        javaForkOptions.setExecutable(source.getExecutable());
+        javaForkOptions.setWorkingDir(source.getWorkingDir());
+        javaForkOptions.setEnvironment(source.getEnvironment());
+        javaForkOptions.setAllJvmArgs(source.getAllJvmArgs());
+        return new DaemonForkOptionsBuilder(new IdentityFileResolver())
+            .javaForkOptions(javaForkOptions)
+            .classpath(ImmutableList.copyOf(options.getClasspath()))
+            .sharedPackages(ImmutableList.copyOf(options.getSharedPackages()))
+            .keepAliveMode(options.getKeepAliveMode())
+            .build();
+    }
+
     private ImmutableJavaForkOptions buildJavaForkOptions() {
         JavaForkOptionsInternal delegate = new DefaultJavaForkOptions(fileResolver);
         javaForkOptions.copyTo(delegate);
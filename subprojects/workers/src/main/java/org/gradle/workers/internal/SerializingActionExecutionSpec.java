@@ -17,14 +17,9 @@
 package org.gradle.workers.internal;
 
 import org.gradle.internal.exceptions.Contextual;
-import org.gradle.internal.io.ClassLoaderObjectInputStream;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 /**
  * Represents a {@link WorkSpec} that contains constructor parameters.
@@ -63,21 +58,16 @@ public class SerializingActionExecutionSpec implements ActionExecutionSpec {
     }
 
     private byte[] serialize(Object[] params) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
-            ObjectOutputStream oos = new ObjectOutputStream(bos);
-            oos.writeObject(params);
+            return WorkerParameterSerializer.serialize(params);
         } catch (IOException e) {
             throw new ParameterSerializationException("Could not serialize parameters", e);
         }
-        return bos.toByteArray();
     }
 
     private Object[] deserialize(ClassLoader classLoader) {
-        ByteArrayInputStream bis = new ByteArrayInputStream(params);
         try {
-            ObjectInputStream ois = new ClassLoaderObjectInputStream(bis, classLoader);
-            return (Object[])ois.readObject();
+            return WorkerParameterSerializer.deserialize(params, classLoader);
         } catch (IOException e) {
             throw new ParameterSerializationException("Could not deserialize parameters", e);
         } catch (ClassNotFoundException e) {
@@ -22,39 +22,78 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Spec;
 import org.gradle.initialization.SessionLifecycleListener;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.logging.LoggingManagerInternal;
 import org.gradle.internal.logging.events.LogLevelChangeEvent;
 import org.gradle.internal.logging.events.OutputEvent;
 import org.gradle.internal.logging.events.OutputEventListener;
+import org.gradle.process.internal.health.memory.MaximumHeapHelper;
+import org.gradle.process.internal.health.memory.MemoryAmount;
+import org.gradle.process.internal.health.memory.OsMemoryInfo;
+import org.gradle.process.internal.health.memory.OsMemoryStatus;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class WorkerDaemonClientsManager implements Stoppable {
 
+    /**
+     * The maximum number of session scoped worker daemons to start in the background at the start of a build. Pre-warming is disabled by default.
+     */
+    public static final String MAX_PREWARMED_DAEMONS_PROPERTY = "org.gradle.workers.internal.max-prewarmed-daemons";
+
     private static final Logger LOGGER = Logging.getLogger(WorkerDaemonClientsManager.class);
+    private static final double MIN_FREE_MEMORY_PERCENTAGE = 0.1D;
 
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
+    // Session scoped daemons used during the current session, in the order they were started
+    private final List<DaemonShape> sessionShapes = new ArrayList<DaemonShape>();
+    // Pre-warmed daemons that have not been used yet
+    private final Map<WorkerDaemonClient, DaemonShape> unusedPrewarmedClients = new IdentityHashMap<WorkerDaemonClient, DaemonShape>();
+    // Pre-warmed daemons that are still starting
+    private final List<StartPrewarmedDaemon> startingPrewarmedDaemons = new ArrayList<StartPrewarmedDaemon>();
+    private List<DaemonShape> previousSessionShapes = Collections.emptyList();
 
     private final WorkerDaemonStarter workerDaemonStarter;
     private final ListenerManager listenerManager;
     private final LoggingManagerInternal loggingManager;
     private final SessionLifecycleListener stopSessionScopeWorkers;
     private final OutputEventListener logLevelChangeEventListener;
+    private final ManagedExecutor prewarmExecutor;
+    private final OsMemoryInfo osMemoryInfo;
+    private final int maxPrewarmedDaemons;
     private LogLevel currentLogLevel;
 
     public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager) {
+        this(workerDaemonStarter, listenerManager, loggingManager, null, null, 0);
+    }
+
+    /**
+     * Creates a manager that starts the session scoped worker daemons used by the previous build in the background when a new build starts, so that
+     * the first work items of the build do not wait for the daemons to start. At most {@code maxPrewarmedDaemons} daemons are started, and only while
+     * the OS has enough free memory for them. Pre-warmed daemons are idle and never used, so they are the first to be expired when memory runs low.
+     */
+    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, @Nullable ExecutorFactory executorFactory, @Nullable OsMemoryInfo osMemoryInfo, int maxPrewarmedDaemons) {
         this.workerDaemonStarter = workerDaemonStarter;
         this.listenerManager = listenerManager;
         this.loggingManager = loggingManager;
+        this.osMemoryInfo = osMemoryInfo;
+        this.maxPrewarmedDaemons = executorFactory == null || osMemoryInfo == null ? 0 : maxPrewarmedDaemons;
+        this.prewarmExecutor = this.maxPrewarmedDaemons > 0 ? executorFactory.create("Worker daemon pre-warming", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)) : null;
         this.stopSessionScopeWorkers = new StopSessionScopedWorkers();
         listenerManager.addListener(stopSessionScopeWorkers);
         this.logLevelChangeEventListener = new LogLevelChangeEventListener();
@@ -74,11 +113,15 @@ public class WorkerDaemonClientsManager implements Stoppable {
                 WorkerDaemonClient candidate = it.next();
                 if (candidate.isCompatibleWith(forkOptions)) {
                     it.remove();
+                    DaemonShape prewarmedShape = unusedPrewarmedClients.remove(candidate);
                     if (candidate.getLogLevel() != currentLogLevel) {
                         // TODO: Send a message to workers to change their log level rather than stopping
                         LOGGER.info("Log level has changed, stopping idle worker daemon with out-of-date log level.");
                         candidate.stop();
                     } else {
+                        if (prewarmedShape != null) {
+                            sessionShapes.add(prewarmedShape);
+                        }
                         return candidate;
                     }
                 }
@@ -88,14 +131,46 @@ public class WorkerDaemonClientsManager implements Stoppable {
     }
 
     public WorkerDaemonClient reserveNewClient(Class<? extends WorkerProtocol<ActionExecutionSpec>> workerProtocolImplementationClass, DaemonForkOptions forkOptions) {
+        WorkerDaemonClient prewarmedClient = reserveStartingPrewarmedClient(workerProtocolImplementationClass, forkOptions);
+        if (prewarmedClient != null) {
+            return prewarmedClient;
+        }
         //allow the daemon to be started concurrently
         WorkerDaemonClient client = workerDaemonStarter.startDaemon(workerProtocolImplementationClass, forkOptions);
         synchronized (lock) {
             allClients.add(client);
+            if (forkOptions.getKeepAliveMode() == KeepAliveMode.SESSION) {
+                sessionShapes.add(new DaemonShape(workerProtocolImplementationClass, DaemonForkOptionsBuilder.detachedCopyOf(forkOptions)));
+            }
         }
         return client;
     }
 
+    /**
+     * Waits for a compatible pre-warmed daemon that is still starting, rather than starting another daemon with the same options.
+     *
+     * @return The client, or null when there is no such daemon or it could not be started.
+     */
+    @Nullable
+    private WorkerDaemonClient reserveStartingPrewarmedClient(Class<? extends WorkerProtocol<ActionExecutionSpec>> workerProtocolImplementationClass, DaemonForkOptions forkOptions) {
+        synchronized (lock) {
+            for (StartPrewarmedDaemon starting : startingPrewarmedDaemons) {
+                if (!starting.reserved && starting.shape.workerProtocolImplementationClass == workerProtocolImplementationClass && starting.shape.forkOptions.isCompatibleWith(forkOptions)) {
+                    starting.reserved = true;
+                    while (!starting.finished) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            throw UncheckedException.throwAsUncheckedException(e);
+                        }
+                    }
+                    return starting.client;
+                }
+            }
+            return null;
+        }
+    }
+
     public void release(WorkerDaemonClient client) {
         synchronized (lock) {
             idleClients.add(client);
@@ -104,10 +179,15 @@ public class WorkerDaemonClientsManager implements Stoppable {
 
     @Override
     public void stop() {
+        if (prewarmExecutor != null) {
+            // Wait for daemons being pre-warmed, so they are stopped below
+            prewarmExecutor.stop();
+        }
         synchronized (lock) {
             stopWorkers(allClients);
             allClients.clear();
             idleClients.clear();
+            unusedPrewarmedClients.clear();
             listenerManager.removeListener(stopSessionScopeWorkers);
             loggingManager.removeOutputEventListener(logLevelChangeEventListener);
         }
@@ -140,16 +220,115 @@ public class WorkerDaemonClientsManager implements Stoppable {
             LOGGER.info("Stopped {} worker daemon(s).", clientsToStop.size());
             idleClients.removeAll(clientsToStop);
             allClients.removeAll(clientsToStop);
+            unusedPrewarmedClients.keySet().removeAll(clientsToStop);
+        }
+    }
+
+    private void prewarmDaemons() {
+        List<DaemonShape> shapes;
+        synchronized (lock) {
+            shapes = previousSessionShapes;
+            previousSessionShapes = Collections.emptyList();
+        }
+        if (shapes.isEmpty()) {
+            return;
+        }
+        OsMemoryStatus memoryStatus;
+        try {
+            memoryStatus = osMemoryInfo.getOsSnapshot();
+        } catch (UnsupportedOperationException e) {
+            LOGGER.debug("Cannot determine the amount of free memory, not pre-warming worker daemons.");
+            return;
+        }
+        long totalMemory = memoryStatus.getTotalPhysicalMemory();
+        long availableMemory = memoryStatus.getFreePhysicalMemory() - (long) (totalMemory * MIN_FREE_MEMORY_PERCENTAGE);
+        int count = 0;
+        for (DaemonShape shape : shapes) {
+            long requiredMemory = getMaxHeapSize(shape.forkOptions, totalMemory);
+            if (count == maxPrewarmedDaemons || requiredMemory > availableMemory) {
+                break;
+            }
+            availableMemory -= requiredMemory;
+            count++;
+            StartPrewarmedDaemon startDaemon = new StartPrewarmedDaemon(shape);
+            synchronized (lock) {
+                startingPrewarmedDaemons.add(startDaemon);
+            }
+            prewarmExecutor.execute(startDaemon);
+        }
+        LOGGER.debug("Pre-warming {} of {} worker daemon(s) used by the previous build.", count, shapes.size());
+    }
+
+    private static long getMaxHeapSize(DaemonForkOptions forkOptions, long osTotalMemory) {
+        long maxHeapSize = MemoryAmount.parseNotation(forkOptions.getJavaForkOptions().getMaxHeapSize());
+        if (maxHeapSize != -1) {
+            return maxHeapSize;
+        }
+        return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
+    }
+
+    private static class DaemonShape {
+        private final Class<? extends WorkerProtocol<ActionExecutionSpec>> workerProtocolImplementationClass;
+        private final DaemonForkOptions forkOptions;
+
+        DaemonShape(Class<? extends WorkerProtocol<ActionExecutionSpec>> workerProtocolImplementationClass, DaemonForkOptions forkOptions) {
+            this.workerProtocolImplementationClass = workerProtocolImplementationClass;
+            this.forkOptions = forkOptions;
+        }
+    }
+
+    private class StartPrewarmedDaemon implements Runnable {
+        private final DaemonShape shape;
+        // The following are guarded by the lock
+        private boolean reserved;
+        private boolean finished;
+        private WorkerDaemonClient client;
+
+        StartPrewarmedDaemon(DaemonShape shape) {
+            this.shape = shape;
+        }
+
+        @Override
+        public void run() {
+            WorkerDaemonClient client = null;
+            try {
+                client = workerDaemonStarter.startDaemon(shape.workerProtocolImplementationClass, shape.forkOptions);
+            } catch (RuntimeException e) {
+                // The daemon will be started again when it is needed, and the failure reported then
+                LOGGER.debug("Could not pre-warm worker daemon with fork options {}.", shape.forkOptions, e);
+            } finally {
+                synchronized (lock) {
+                    startingPrewarmedDaemons.remove(this);
+                    if (client != null) {
+                        allClients.add(client);
+                        if (reserved) {
+                            sessionShapes.add(shape);
+                        } else {
+                            idleClients.add(client);
+                            unusedPrewarmedClients.put(client, shape);
+                        }
+                    }
+                    this.client = client;
+                    finished = true;
+                    lock.notifyAll();
+                }
+            }
         }
     }
 
     private class StopSessionScopedWorkers implements SessionLifecycleListener {
         @Override
-        public void afterStart() { }
+        public void afterStart() {
+            if (prewarmExecutor != null) {
+                prewarmDaemons();
+            }
+        }
 
         @Override
         public void beforeComplete() {
             synchronized (lock) {
+                previousSessionShapes = new ArrayList<DaemonShape>(sessionShapes);
+                sessionShapes.clear();
                 List<WorkerDaemonClient> sessionScopedClients = CollectionUtils.filter(allClients, new Spec<WorkerDaemonClient>() {
                     @Override
                     public boolean isSatisfiedBy(WorkerDaemonClient client) {
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal;
+
+import com.google.common.collect.ImmutableMap;
+import org.gradle.internal.io.ClassLoaderObjectInputStream;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serializes the parameters of a work item. When every parameter is of a common type, such as strings, files and collections of these, the parameters
+ * are written directly. Otherwise, all of the parameters are written using a single Java serialization stream, as they were before.
+ * Values are read back as instances of the same class they were written from.
+ *
+ * <p>Parameters that contain the same collection or map more than once, including collections that contain themselves, are written using Java serialization,
+ * which preserves the shared references.</p>
+ */
+class WorkerParameterSerializer {
+    private static final byte ENCODED = 0;
+    private static final byte JAVA_SERIALIZED = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte INTEGER = 4;
+    private static final byte LONG = 5;
+    private static final byte FILE = 6;
+    private static final byte STRING_ARRAY = 7;
+    private static final byte FILE_ARRAY = 8;
+    private static final byte ARRAY_LIST = 9;
+    private static final byte HASH_SET = 10;
+    private static final byte LINKED_HASH_SET = 11;
+    private static final byte HASH_MAP = 12;
+    private static final byte LINKED_HASH_MAP = 13;
+
+    // Only exact classes are written directly, so that values are not read back as a different type
+    private static final Map<Class<?>, Byte> TAGS = ImmutableMap.<Class<?>, Byte>builder()
+        .put(String.class, STRING)
+        .put(Boolean.class, BOOLEAN)
+        .put(Integer.class, INTEGER)
+        .put(Long.class, LONG)
+        .put(File.class, FILE)
+        .put(String[].class, STRING_ARRAY)
+        .put(File[].class, FILE_ARRAY)
+        .put(ArrayList.class, ARRAY_LIST)
+        .put(HashSet.class, HASH_SET)
+        .put(LinkedHashSet.class, LINKED_HASH_SET)
+        .put(HashMap.class, HASH_MAP)
+        .put(LinkedHashMap.class, LINKED_HASH_MAP)
+        .build();
+
+    private WorkerParameterSerializer() {
+    }
+
+    static byte[] serialize(Object[] params) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!canWriteDirectly(params)) {
+            outputStream.write(JAVA_SERIALIZED);
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+            objectOutputStream.writeObject(params);
+            objectOutputStream.close();
+            return outputStream.toByteArray();
+        }
+        outputStream.write(ENCODED);
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        encoder.writeSmallInt(params.length);
+        for (Object param : params) {
+            writeValue(encoder, param);
+        }
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
+    static Object[] deserialize(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+        if (inputStream.read() == JAVA_SERIALIZED) {
+            return (Object[]) new ClassLoaderObjectInputStream(inputStream, classLoader).readObject();
+        }
+        KryoBackedDecoder decoder = new KryoBackedDecoder(inputStream);
+        Object[] params = new Object[decoder.readSmallInt()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = readValue(decoder);
+        }
+        return params;
+    }
+
+    private static boolean canWriteDirectly(Object[] params) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object param : params) {
+            if (!canWriteDirectly(param, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean canWriteDirectly(Object value, Set<Object> visited) {
+        if (value == null) {
+            return true;
+        }
+        if (!TAGS.containsKey(value.getClass())) {
+            return false;
+        }
+        if (value instanceof Collection) {
+            if (!visited.add(value)) {
+                return false;
+            }
+            for (Object element : (Collection<?>) value) {
+                if (!canWriteDirectly(element, visited)) {
+                    return false;
+                }
+            }
+        } else if (value instanceof Map) {
+            if (!visited.add(value)) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!canWriteDirectly(entry.getKey(), visited) || !canWriteDirectly(entry.getValue(), visited)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void writeValue(Encoder encoder, Object value) throws IOException {
+        if (value == null) {
+            encoder.writeByte(NULL);
+            return;
+        }
+        Byte tag = TAGS.get(value.getClass());
+        encoder.writeByte(tag);
+        switch (tag) {
+            case STRING:
+                encoder.writeString((String) value);
+                break;
+            case BOOLEAN:
+                encoder.writeBoolean((Boolean) value);
+                break;
+            case INTEGER:
+                encoder.writeInt((Integer) value);
+                break;
+            case LONG:
+                encoder.writeLong((Long) value);
+                break;
+            case FILE:
+                encoder.writeString(((File) value).getPath());
+                break;
+            case STRING_ARRAY:
+                String[] strings = (String[]) value;
+                encoder.writeSmallInt(strings.length);
+                for (String string : strings) {
+                    encoder.writeNullableString(string);
+                }
+                break;
+            case FILE_ARRAY:
+                File[] files = (File[]) value;
+                encoder.writeSmallInt(files.length);
+                for (File file : files) {
+                    encoder.writeNullableString(file == null ? null : file.getPath());
+                }
+                break;
+            case ARRAY_LIST:
+            case HASH_SET:
+            case LINKED_HASH_SET:
+                Collection<?> collection = (Collection<?>) value;
+                encoder.writeSmallInt(collection.size());
+                for (Object element : collection) {
+                    writeValue(encoder, element);
+                }
+                break;
+            case HASH_MAP:
+            case LINKED_HASH_MAP:
+                Map<?, ?> map = (Map<?, ?>) value;
+                encoder.writeSmallInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(encoder, entry.getKey());
+                    writeValue(encoder, entry.getValue());
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected tag " + tag);
+        }
+    }
+
+    private static Object readValue(Decoder decoder) throws IOException {
+        byte tag = decoder.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return decoder.readString();
+            case BOOLEAN:
+                return decoder.readBoolean();
+            case INTEGER:
+                return decoder.readInt();
+            case LONG:
+                return decoder.readLong();
+            case FILE:
+                return new File(decoder.readString());
+            case STRING_ARRAY:
+                String[] strings = new String[decoder.readSmallInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = decoder.readNullableString();
+                }
+                return strings;
+            case FILE_ARRAY:
+                File[] files = new File[decoder.readSmallInt()];
+                for (int i = 0; i < files.length; i++) {
+                    String path = decoder.readNullableString();
+                    files[i] = path == null ? null : new File(path);
+                }
+                return files;
+            case ARRAY_LIST:
+                int listSize = decoder.readSmallInt();
+                return readElements(decoder, listSize, new ArrayList<Object>(listSize));
+            case HASH_SET:
+                int setSize = decoder.readSmallInt();
+                return readElements(decoder, setSize, new HashSet<Object>(capacityFor(setSize)));
+            case LINKED_HASH_SET:
+                int linkedSetSize = decoder.readSmallInt();
+                return readElements(decoder, linkedSetSize, new LinkedHashSet<Object>(capacityFor(linkedSetSize)));
+            case HASH_MAP:
+                int mapSize = decoder.readSmallInt();
+                return readEntries(decoder, mapSize, new HashMap<Object, Object>(capacityFor(mapSize)));
+            case LINKED_HASH_MAP:
+                int linkedMapSize = decoder.readSmallInt();
+                return readEntries(decoder, linkedMapSize, new LinkedHashMap<Object, Object>(capacityFor(linkedMapSize)));
+            default:
+                throw new IllegalStateException("Unexpected tag " + tag);
+        }
+    }
+
+    private static <T extends Collection<Object>> T readElements(Decoder decoder, int size, T collection) throws IOException {
+        for (int i = 0; i < size; i++) {
+            collection.add(readValue(decoder));
+        }
+        return collection;
+    }
+
+    private static <T extends Map<Object, Object>> T readEntries(Decoder decoder, int size, T map) throws IOException {
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(decoder);
+            map.put(key, readValue(decoder));
+        }
+        return map;
+    }
+
+    private static int capacityFor(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+}
@@ -17,13 +17,19 @@
 package org.gradle.workers.internal
 
 import org.gradle.api.Transformer
+import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.logging.LogLevel
 import org.gradle.initialization.SessionLifecycleListener
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.event.DefaultListenerManager
 import org.gradle.internal.event.ListenerManager
 import org.gradle.internal.logging.LoggingManagerInternal
 import org.gradle.internal.logging.events.LogLevelChangeEvent
 import org.gradle.internal.logging.events.OutputEventListener
+import org.gradle.process.internal.DefaultJavaForkOptions
+import org.gradle.process.internal.health.memory.OsMemoryInfo
+import org.gradle.process.internal.health.memory.OsMemoryStatusSnapshot
 import org.gradle.util.ConcurrentSpecification
 import spock.lang.Subject
 
@@ -230,4 +236,111 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         0 * client2.stop()
         1 * client3.stop()
     }
+
+    def "starts session-scoped clients used by the previous session when a new session starts"() {
+        listenerManager = new DefaultListenerManager()
+        def executor = Stub(ManagedExecutor) {
+            execute(_) >> { Runnable action -> action.run() }
+        }
+        def executorFactory = Stub(ExecutorFactory) {
+            create(_, _) >> executor
+        }
+        def osMemoryInfo = Stub(OsMemoryInfo) {
+            getOsSnapshot() >> new OsMemoryStatusSnapshot(16L * 1024 * 1024 * 1024, 8L * 1024 * 1024 * 1024)
+        }
+        def sessionOptions = sessionOptions()
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, executorFactory, osMemoryInfo, 4)
+        def client = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+        }
+        def prewarmed = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+        }
+        starter.startDaemon(serverImpl.class, _) >>> [client, prewarmed]
+
+        when:
+        manager.reserveNewClient(serverImpl.class, sessionOptions)
+        listenerManager.getBroadcaster(SessionLifecycleListener).beforeComplete()
+
+        then:
+        1 * client.stop()
+
+        when:
+        listenerManager.getBroadcaster(SessionLifecycleListener).afterStart()
+
+        then:
+        manager.reserveIdleClient(sessionOptions) == prewarmed
+    }
+
+    def "does not start clients when a new session starts and memory is low"() {
+        listenerManager = new DefaultListenerManager()
+        def executorFactory = Stub(ExecutorFactory) {
+            create(_, _) >> Mock(ManagedExecutor)
+        }
+        def osMemoryInfo = Stub(OsMemoryInfo) {
+            getOsSnapshot() >> new OsMemoryStatusSnapshot(16L * 1024 * 1024 * 1024, 1L * 1024 * 1024 * 1024)
+        }
+        def sessionOptions = sessionOptions()
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, executorFactory, osMemoryInfo, 4)
+        starter.startDaemon(serverImpl.class, _) >> Stub(WorkerDaemonClient)
+
+        when:
+        manager.reserveNewClient(serverImpl.class, sessionOptions)
+        listenerManager.getBroadcaster(SessionLifecycleListener).beforeComplete()
+        listenerManager.getBroadcaster(SessionLifecycleListener).afterStart()
+
+        then:
+        manager.reserveIdleClient(sessionOptions) == null
+    }
+
+    def "waits for a compatible pre-warmed client that is still starting instead of starting another client"() {
+        listenerManager = new DefaultListenerManager()
+        Runnable startPrewarmed = null
+        def executor = Stub(ManagedExecutor) {
+            execute(_) >> { Runnable action -> startPrewarmed = action }
+        }
+        def executorFactory = Stub(ExecutorFactory) {
+            create(_, _) >> executor
+        }
+        def osMemoryInfo = Stub(OsMemoryInfo) {
+            getOsSnapshot() >> new OsMemoryStatusSnapshot(16L * 1024 * 1024 * 1024, 8L * 1024 * 1024 * 1024)
+        }
+        def sessionOptions = sessionOptions()
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, executorFactory, osMemoryInfo, 4)
+        def client = Stub(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+        }
+        def prewarmed = Stub(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+        }
+        starter.startDaemon(serverImpl.class, _) >>> [client, prewarmed]
+
+        given:
+        manager.reserveNewClient(serverImpl.class, sessionOptions)
+        listenerManager.getBroadcaster(SessionLifecycleListener).beforeComplete()
+        listenerManager.getBroadcaster(SessionLifecycleListener).afterStart()
+
+        when:
+        start {
+            Thread.sleep(100)
+            startPrewarmed.run()
+        }
+        def reserved = manager.reserveNewClient(serverImpl.class, sessionOptions)
+        finished()
+
+        then:
+        reserved == prewarmed
+        manager.reserveIdleClient(sessionOptions) == null
+    }
+
+    private DaemonForkOptions sessionOptions() {
+        def javaForkOptions = new DefaultJavaForkOptions(TestFiles.resolver())
+        javaForkOptions.maxHeapSize = "512m"
+        return new DaemonForkOptionsBuilder(TestFiles.resolver())
+            .javaForkOptions(javaForkOptions)
+            .keepAliveMode(KeepAliveMode.SESSION)
+            .build()
+    }
 }
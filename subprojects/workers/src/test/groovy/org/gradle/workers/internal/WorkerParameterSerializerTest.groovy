@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class WorkerParameterSerializerTest extends Specification {
+
+    @Unroll
+    def "can serialize #value"() {
+        when:
+        def result = roundTrip([value] as Object[])
+
+        then:
+        result.length == 1
+        result[0] == value
+        result[0]?.getClass() == value?.getClass()
+
+        where:
+        value << [
+            null,
+            "string",
+            true,
+            12,
+            12L,
+            new File("some-file"),
+            new ArrayList([new File("a"), "b", null]),
+            new LinkedHashSet(["a", "b"]),
+            new HashSet([1, 2]),
+            new LinkedHashMap([a: new File("a"), b: ["c"]]),
+            new HashMap([a: 1L]),
+            Collections.singletonList("not-fast-path"),
+            new BigDecimal("1.5")
+        ]
+    }
+
+    def "can serialize arrays"() {
+        when:
+        def result = roundTrip([["a", null] as String[], [new File("a")] as File[]] as Object[])
+
+        then:
+        result[0] == ["a", null] as String[]
+        result[1] == [new File("a")] as File[]
+    }
+
+    def "uses a single Java serialization stream when any parameter cannot be written directly"() {
+        def shared = new ArrayList([new BigDecimal("1.5")])
+
+        when:
+        def result = roundTrip([shared, "string", shared] as Object[])
+
+        then:
+        result[0] == shared
+        result[1] == "string"
+        result[0].is(result[2])
+    }
+
+    def "uses Java serialization when a collection is referenced more than once"() {
+        def shared = new ArrayList(["a"])
+
+        when:
+        def result = roundTrip([shared, new HashMap([b: shared])] as Object[])
+
+        then:
+        result[0] == ["a"]
+        result[0].is(result[1].b)
+    }
+
+    def "can serialize collections that contain themselves"() {
+        def list = new ArrayList()
+        list.add("a")
+        list.add(list)
+
+        when:
+        def result = roundTrip([list] as Object[])
+
+        then:
+        result[0][0] == "a"
+        result[0][1].is(result[0])
+    }
+
+    def "fails to serialize values that are not serializable"() {
+        when:
+        WorkerParameterSerializer.serialize([new Object()] as Object[])
+
+        then:
+        thrown(NotSerializableException)
+    }
+
+    def roundTrip(Object[] params) {
+        return WorkerParameterSerializer.deserialize(WorkerParameterSerializer.serialize(params), getClass().classLoader)
+    }
+}